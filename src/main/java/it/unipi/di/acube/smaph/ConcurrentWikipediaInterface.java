@@ -0,0 +1,139 @@
+package it.unipi.di.acube.smaph;
+
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.datasets.wikipages.MappedWikipediaInterface;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link WikipediaInterface} that keeps the answers of another one in concurrent maps, so that
+ * it can be shared by the concurrent queries of the server and by the workers of
+ * {@link ParallelExtraction}. Lookups that hit the maps take no lock. A lookup that misses them is
+ * forwarded to the backend once per key: concurrent lookups of the same key wait for its answer,
+ * lookups of other keys go on, and no lock is held while the backend answers (possibly with a
+ * remote request). Prefetching forwards to the backend only the keys that are not known yet.
+ */
+public class ConcurrentWikipediaInterface extends WikipediaInterface {
+	/** The maps are cleared when they grow beyond this number of entries. */
+	private static final int MAX_ENTRIES = 1 << 20;
+	private final WikipediaInterface wikiApi;
+	private final ConcurrentHashMap<Integer, CompletableFuture<String>> titles = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, CompletableFuture<Integer>> ids = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, CompletableFuture<Integer>> dereferenced = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Integer, CompletableFuture<Boolean>> redirects = new ConcurrentHashMap<>();
+
+	private interface Lookup<K, V> {
+		V get(K key) throws IOException;
+	}
+
+	private ConcurrentWikipediaInterface(WikipediaInterface wikiApi) {
+		this.wikiApi = wikiApi;
+	}
+
+	/**
+	 * @return a thread-safe view of wikiApi: wikiApi itself if it is already thread-safe (a
+	 *         {@link ConcurrentWikipediaInterface} or an immutable {@link MappedWikipediaInterface}),
+	 *         otherwise a {@link ConcurrentWikipediaInterface} in front of it.
+	 */
+	public static WikipediaInterface of(WikipediaInterface wikiApi) {
+		if (wikiApi == null || wikiApi instanceof ConcurrentWikipediaInterface || wikiApi instanceof MappedWikipediaInterface)
+			return wikiApi;
+		return new ConcurrentWikipediaInterface(wikiApi);
+	}
+
+	private static <K, V> V get(ConcurrentHashMap<K, CompletableFuture<V>> cache, K key, Lookup<K, V> lookup)
+	        throws IOException {
+		CompletableFuture<V> answer = cache.get(key);
+		if (answer == null) {
+			CompletableFuture<V> mine = new CompletableFuture<>();
+			if (cache.size() >= MAX_ENTRIES)
+				cache.clear();
+			answer = cache.putIfAbsent(key, mine);
+			if (answer == null) {
+				try {
+					V value = lookup.get(key);
+					mine.complete(value);
+					return value;
+				} catch (IOException | RuntimeException e) {
+					cache.remove(key, mine);
+					mine.completeExceptionally(e);
+					throw e;
+				}
+			}
+		}
+		try {
+			return answer.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException)
+				throw new IOException(e.getCause());
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	private static <K, V> boolean isKnown(ConcurrentHashMap<K, CompletableFuture<V>> cache, K key) {
+		CompletableFuture<V> answer = cache.get(key);
+		return answer != null && answer.isDone() && !answer.isCompletedExceptionally();
+	}
+
+	@Override
+	public String getTitlebyId(int wid) throws IOException {
+		return get(titles, wid, wikiApi::getTitlebyId);
+	}
+
+	@Override
+	public int getIdByTitle(String title) throws IOException {
+		return get(ids, title, wikiApi::getIdByTitle);
+	}
+
+	@Override
+	public int dereference(int wid) throws IOException {
+		return get(dereferenced, wid, wikiApi::dereference);
+	}
+
+	@Override
+	public boolean isRedirect(int wid) throws IOException {
+		return get(redirects, wid, wikiApi::isRedirect);
+	}
+
+	@Override
+	public void prefetchTitles(List<String> titlesToPrefetch) {
+		List<String> unknown = new Vector<>();
+		for (String title : titlesToPrefetch)
+			if (!isKnown(ids, title))
+				unknown.add(title);
+		if (unknown.isEmpty())
+			return;
+		try {
+			wikiApi.prefetchTitles(unknown);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void prefetchWids(List<Integer> widsToPrefetch) {
+		List<Integer> unknown = new Vector<>();
+		for (int wid : widsToPrefetch)
+			if (!isKnown(titles, wid))
+				unknown.add(wid);
+		if (unknown.isEmpty())
+			return;
+		try {
+			wikiApi.prefetchWids(unknown);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		wikiApi.flush();
+	}
+}
@@ -0,0 +1,156 @@
+package it.unipi.di.acube.smaph;
+
+/**
+ * Levenshtein distance between strings. When the shorter string is ASCII and fits in a machine
+ * word (64 characters), the distance is computed with the bit-parallel algorithm of Myers, in the
+ * formulation of Hyyrö, with one step of a few word operations per character of the longer
+ * string. Otherwise it is computed by dynamic programming on two rows that are reused across
+ * calls (one pair per thread); the bounded variant only evaluates the band of cells within the
+ * bound from the diagonal (Ukkonen) and gives up as soon as the whole band exceeds the bound.
+ */
+public class EditDistance {
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	private static final int WORD_SIZE = 64;
+	private static final int ALPHABET_SIZE = 128;
+
+	private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][64]);
+	private static final ThreadLocal<long[]> PEQ = ThreadLocal.withInitial(() -> new long[ALPHABET_SIZE]);
+
+	private static int[][] rows(int length) {
+		int[][] rows = ROWS.get();
+		if (rows[0].length < length) {
+			rows[0] = new int[Math.max(length, 2 * rows[0].length)];
+			rows[1] = new int[rows[0].length];
+		}
+		return rows;
+	}
+
+	/**
+	 * @return the Levenshtein distance between s and t.
+	 */
+	public static int levenshtein(CharSequence s, CharSequence t) {
+		return levenshtein(s, t, Math.max(s.length(), t.length()));
+	}
+
+	/**
+	 * @param maxDistance
+	 *            the maximum distance of interest.
+	 * @return the Levenshtein distance between s and t if it is not greater than maxDistance,
+	 *         -1 otherwise.
+	 */
+	public static int levenshtein(CharSequence s, CharSequence t, int maxDistance) {
+		if (maxDistance < 0)
+			return -1;
+		if (s.length() > t.length()) {
+			CharSequence tmp = s;
+			s = t;
+			t = tmp;
+		}
+		int n = s.length();
+		int m = t.length();
+		if (m - n > maxDistance)
+			return -1;
+		if (n == 0)
+			return m;
+		if (n <= WORD_SIZE && isAscii(s))
+			return bitParallel(s, t, maxDistance);
+		return banded(s, t, maxDistance);
+	}
+
+	private static boolean isAscii(CharSequence s) {
+		for (int i = 0; i < s.length(); i++)
+			if (s.charAt(i) >= ALPHABET_SIZE)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Myers/Hyyrö bit-parallel distance. Bit i of the vertical delta vectors Pv (+1) and Mv (-1)
+	 * tells the difference between rows i+1 and i of the current column of the dynamic
+	 * programming matrix, the score tracks its last row.
+	 * 
+	 * @param s
+	 *            the pattern, ASCII, with at most 64 characters.
+	 */
+	private static int bitParallel(CharSequence s, CharSequence t, int maxDistance) {
+		int n = s.length();
+		int m = t.length();
+		long[] peq = PEQ.get();
+		for (int i = 0; i < n; i++)
+			peq[s.charAt(i)] |= 1L << i;
+
+		long last = 1L << (n - 1);
+		long pv = n == WORD_SIZE ? -1L : (1L << n) - 1;
+		long mv = 0;
+		int score = n;
+		for (int j = 0; j < m; j++) {
+			char c = t.charAt(j);
+			long eq = c < ALPHABET_SIZE ? peq[c] : 0;
+			long xv = eq | mv;
+			long xh = (((eq & pv) + pv) ^ pv) | eq;
+			long ph = mv | ~(xh | pv);
+			long mh = pv & xh;
+			if ((ph & last) != 0)
+				score++;
+			else if ((mh & last) != 0)
+				score--;
+			if (score - (m - j - 1) > maxDistance) {
+				score = -1;
+				break;
+			}
+			ph = (ph << 1) | 1;
+			mh <<= 1;
+			pv = mh | ~(xv | ph);
+			mv = ph & xv;
+		}
+
+		for (int i = 0; i < n; i++)
+			peq[s.charAt(i)] = 0;
+		return score <= maxDistance ? score : -1;
+	}
+
+	private static int banded(CharSequence s, CharSequence t, int maxDistance) {
+		int n = s.length();
+		int m = t.length();
+		int[][] rows = rows(n + 1);
+		int[] p = rows[0];
+		int[] d = rows[1];
+		int boundary = Math.min(n, maxDistance) + 1;
+		for (int i = 0; i < boundary; i++)
+			p[i] = i;
+		for (int i = boundary; i <= n; i++)
+			p[i] = INFINITY;
+		for (int i = 0; i <= n; i++)
+			d[i] = INFINITY;
+
+		for (int j = 1; j <= m; j++) {
+			char tj = t.charAt(j - 1);
+			int min = Math.max(1, j - maxDistance);
+			int max = j > Integer.MAX_VALUE - maxDistance ? n : Math.min(n, j + maxDistance);
+			if (min > max)
+				return -1;
+			int rowMin = INFINITY;
+			if (min == 1) {
+				d[0] = j;
+				rowMin = j;
+			} else
+				d[min - 1] = INFINITY;
+			for (int i = min; i <= max; i++) {
+				int v;
+				if (s.charAt(i - 1) == tj)
+					v = p[i - 1];
+				else
+					v = 1 + Math.min(Math.min(d[i - 1], p[i]), p[i - 1]);
+				d[i] = v;
+				if (v < rowMin)
+					rowMin = v;
+			}
+			if (rowMin > maxDistance)
+				return -1;
+			int[] tmp = p;
+			p = d;
+			d = tmp;
+		}
+		return p[n] <= maxDistance ? p[n] : -1;
+	}
+}
@@ -0,0 +1,161 @@
+package it.unipi.di.acube.smaph;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Query-scoped memo of the edit distances computed by {@link SmaphUtils}, shared by all the
+ * stages that process the same query (candidate annotation generation, feature extraction,
+ * binding generation). Strings are interned to integer ids and each distance is stored, unboxed,
+ * under the pair of ids; the lower-cased forms of the strings are computed once. The memo is
+ * thread-safe: distances are stored in maps split in stripes, each guarded by its own lock, and
+ * computed without holding any lock, so a distance requested concurrently by two threads may be
+ * computed twice, with the same result.
+ */
+public class EditDistanceMemo {
+	private final ConcurrentHashMap<String, Integer> stringToId = new ConcurrentHashMap<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final StripedMap normEditDistances = new StripedMap();
+	private final StripedMap normEditDistancesLC = new StripedMap();
+	private final StripedMap minEditDists = new StripedMap();
+	private final ConcurrentHashMap<String, String> lcForms = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * A map from pairs of ids to distances, split in stripes. Distances are never NaN, so NaN
+	 * marks missing keys.
+	 */
+	private static class StripedMap {
+		private static final int STRIPES = 16;
+		private final Long2DoubleOpenHashMap[] stripes = new Long2DoubleOpenHashMap[STRIPES];
+
+		StripedMap() {
+			for (int i = 0; i < STRIPES; i++) {
+				stripes[i] = new Long2DoubleOpenHashMap();
+				stripes[i].defaultReturnValue(Double.NaN);
+			}
+		}
+
+		private Long2DoubleOpenHashMap stripe(long key) {
+			return stripes[(int) HashCommon.murmurHash3(key) & (STRIPES - 1)];
+		}
+
+		/**
+		 * @return the distance stored under key, NaN if there is none.
+		 */
+		double get(long key) {
+			Long2DoubleOpenHashMap stripe = stripe(key);
+			synchronized (stripe) {
+				return stripe.get(key);
+			}
+		}
+
+		void put(long key, double value) {
+			Long2DoubleOpenHashMap stripe = stripe(key);
+			synchronized (stripe) {
+				stripe.put(key, value);
+			}
+		}
+	}
+
+	private int id(String str) {
+		Integer id = stringToId.get(str);
+		if (id == null)
+			id = stringToId.computeIfAbsent(str, s -> nextId.getAndIncrement());
+		return id;
+	}
+
+	private long key(String a, String b, boolean symmetric) {
+		long idA = id(a);
+		long idB = id(b);
+		if (symmetric && idA > idB)
+			return (idB << 32) | idA;
+		return (idA << 32) | idB;
+	}
+
+	private double get(StripedMap memo, long key, DoubleSupplier distance) {
+		double value = memo.get(key);
+		if (!Double.isNaN(value)) {
+			hits.increment();
+			return value;
+		}
+		misses.increment();
+		double computed = distance.getAsDouble();
+		memo.put(key, computed);
+		return computed;
+	}
+
+	/**
+	 * @see SmaphUtils#getNormEditDistance(String, String)
+	 */
+	public float getNormEditDistance(String tokenB, String tokenQ) {
+		return (float) get(normEditDistances, key(tokenB, tokenQ, true), () -> SmaphUtils.getNormEditDistance(tokenB, tokenQ));
+	}
+
+	/**
+	 * Same as {@link #getNormEditDistance(String, String)}, but a distance that is not in the
+	 * memo is computed with {@link SmaphUtils#getNormEditDistance(String, String, double)}, that
+	 * gives up as soon as the distance is known to be greater than maxDistance. Only exact
+	 * distances are stored in the memo.
+	 * 
+	 * @return the normalized edit distance between tokenB and tokenQ if it is not greater than
+	 *         maxDistance, 1 otherwise.
+	 */
+	public float getNormEditDistance(String tokenB, String tokenQ, double maxDistance) {
+		long key = key(tokenB, tokenQ, true);
+		double value = normEditDistances.get(key);
+		if (Double.isNaN(value)) {
+			misses.increment();
+			value = SmaphUtils.getNormEditDistance(tokenB, tokenQ, maxDistance);
+			// A distance of 1 may be a bound the computation stopped at.
+			if (value < 1)
+				normEditDistances.put(key, value);
+		} else
+			hits.increment();
+		return value <= maxDistance ? (float) value : 1;
+	}
+
+	private String getLCForm(String str) {
+		String lcForm = lcForms.get(str);
+		if (lcForm == null) {
+			lcForm = SmaphUtils.getLCForm(str);
+			lcForms.putIfAbsent(str, lcForm);
+		}
+		return lcForm;
+	}
+
+	/**
+	 * @see SmaphUtils#getNormEditDistanceLC(String, String)
+	 */
+	public float getNormEditDistanceLC(String tokenB, String tokenQ) {
+		return (float) get(normEditDistancesLC, key(tokenB, tokenQ, true),
+		        () -> SmaphUtils.getNormEditDistance(getLCForm(tokenB), getLCForm(tokenQ)));
+	}
+
+	/**
+	 * @see SmaphUtils#getMinEditDist(String, String)
+	 */
+	public double getMinEditDist(String query, String bold) {
+		return get(minEditDists, key(query, bold, false), () -> SmaphUtils.getMinEditDist(query, bold));
+	}
+
+	/**
+	 * @return the number of distances found in the memo.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return the number of distances that had to be computed.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+}
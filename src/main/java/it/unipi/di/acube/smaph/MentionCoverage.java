@@ -0,0 +1,58 @@
+package it.unipi.di.acube.smaph;
+
+import it.unipi.di.acube.batframework.data.Mention;
+
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * A set of mentions of a query that answers whether another mention overlaps any of them. Mentions
+ * aligned to word tokens (as all candidate annotations are) are represented by their token mask
+ * (see {@link QueryTextContext#getTokenMask(int, int)}), so that the check is a single AND against
+ * the union of the masks; other mentions fall back to {@link Mention#overlaps(Mention)}.
+ */
+public class MentionCoverage {
+	private final QueryTextContext text;
+	private long coveredMask = 0;
+	private final List<Mention> mentions = new Vector<>();
+	private final List<Mention> unmaskedMentions = new Vector<>();
+
+	/**
+	 * @param text
+	 *            the text context of the query, if null all checks fall back to
+	 *            {@link Mention#overlaps(Mention)}.
+	 */
+	public MentionCoverage(QueryTextContext text) {
+		this.text = text;
+	}
+
+	private long mask(Mention m) {
+		return text == null ? 0 : text.getTokenMask(m.getPosition(), m.getPosition() + m.getLength());
+	}
+
+	public void add(Mention m) {
+		long mask = mask(m);
+		if (mask != 0)
+			coveredMask |= mask;
+		else
+			unmaskedMentions.add(m);
+		mentions.add(m);
+	}
+
+	/**
+	 * @return true iff m overlaps any of the mentions added so far.
+	 */
+	public boolean overlaps(Mention m) {
+		long mask = mask(m);
+		if (mask == 0)
+			return overlapsAny(m, mentions);
+		return (mask & coveredMask) != 0 || overlapsAny(m, unmaskedMentions);
+	}
+
+	private static boolean overlapsAny(Mention m, List<Mention> mentions) {
+		for (Mention other : mentions)
+			if (other.overlaps(m))
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,102 @@
+package it.unipi.di.acube.smaph;
+
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the independent per-candidate work of a query (feature extraction and scoring of entities,
+ * annotations and bindings) on a fork-join pool shared by all queries and bounded by the number of
+ * processors. Lists shorter than a cutoff are processed sequentially, where the overhead of
+ * splitting the work would not pay off. Results are returned in the order of the input, so callers
+ * that pick the first best result behave as in a sequential loop.
+ *
+ * The functions run by the workers must only use thread-safe shared objects. In particular, the
+ * {@link WikipediaInterface} of the annotator and of the link-back stages is wrapped in a
+ * {@link ConcurrentWikipediaInterface}, which answers repeated lookups (titles, ids, redirects)
+ * without locks and forwards each missing key to the backend once. The titles of the candidates
+ * are prefetched before each parallel section (see {@link #prefetchTitles}), with one batch
+ * request, so that the workers do not fetch them one by one.
+ */
+public class ParallelExtraction {
+	/** Lists with fewer elements than this are processed in the calling thread. */
+	public static final int SEQUENTIAL_CUTOFF = 8;
+	private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * @param items
+	 *            the elements to process.
+	 * @param f
+	 *            the function to apply to each element. It must be thread-safe.
+	 * @param sequential
+	 *            process the elements in the calling thread, in order (e.g. when a debugger, that
+	 *            records the steps in order, is attached).
+	 * @return the results of f, in the order of items.
+	 */
+	public static <T, R> List<R> map(List<T> items, Function<? super T, ? extends R> f, boolean sequential) {
+		if (sequential || items.size() < SEQUENTIAL_CUTOFF || POOL.getParallelism() <= 1) {
+			List<R> res = new Vector<>(items.size());
+			for (T item : items)
+				res.add(f.apply(item));
+			return res;
+		}
+		return invoke(() -> items.parallelStream().map(f).collect(Collectors.<R> toList()));
+	}
+
+	private static <R> R invoke(Callable<R> task) {
+		try {
+			return POOL.submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Split the range [0, size) in consecutive blocks of SEQUENTIAL_CUTOFF elements and process
+	 * them in parallel, so that each block can reuse the buffers it allocates. Blocks must write
+	 * their results to disjoint positions.
+	 *
+	 * @param block
+	 *            called with the start (inclusive) and end (exclusive) of each block. It must be
+	 *            thread-safe.
+	 */
+	public static void forEachBlock(int size, BiConsumer<Integer, Integer> block) {
+		List<Integer> starts = new Vector<>();
+		for (int start = 0; start < size; start += SEQUENTIAL_CUTOFF)
+			starts.add(start);
+		if (starts.size() <= 1 || POOL.getParallelism() <= 1) {
+			for (int start : starts)
+				block.accept(start, Math.min(start + SEQUENTIAL_CUTOFF, size));
+			return;
+		}
+		invoke(() -> {
+			starts.parallelStream().forEach(start -> block.accept(start, Math.min(start + SEQUENTIAL_CUTOFF, size)));
+			return null;
+		});
+	}
+
+	/**
+	 * Fetch the titles of the given entities, so that the parallel workers find them in the cache
+	 * of wikiApi instead of fetching them one by one.
+	 */
+	public static void prefetchTitles(WikipediaInterface wikiApi, Collection<Integer> wids) {
+		try {
+			wikiApi.prefetchWids(new Vector<>(wids));
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -1,12 +1,19 @@
 package it.unipi.di.acube.smaph;
 
+import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
+import it.unipi.di.acube.smaph.learn.featurePacks.SparseFeatureVector;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class QueryInformation {
 	public boolean includeSourceNormalSearch;
@@ -29,7 +36,38 @@ public class QueryInformation {
 	public Set<Tag> candidatesWS;
 	
 	private Set<Tag> allCandidates = null;
+	private final EditDistanceMemo editDistanceMemo = new EditDistanceMemo();
+	private QueryTextContext textContext = null;
+	private final ConcurrentHashMap<Integer, Map<String, Double>> entityFeatures = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Annotation, SparseFeatureVector> annotationFeatures = new ConcurrentHashMap<>();
+	private Map<String, Double> queryFeatures = null;
+	private Pair<Double, Double> segmentsLpSumAvg = null;
+	private RelatednessMatrix relatednessMatrix = null;
+	private final HashSet<Integer> relatednessEntities = new HashSet<>();
+	private Set<String> usedFeatures = null;
 	
+	/**
+	 * @param usedFeatures
+	 *            the names of the features that the models processing this query read, or null
+	 *            (the default) if all features must be computed. Features that are not used are
+	 *            set to NaN (not set) by the feature packs.
+	 */
+	public void setUsedFeatures(Set<String> usedFeatures) {
+		this.usedFeatures = usedFeatures;
+	}
+
+	/**
+	 * @return true iff at least one of the given features must be computed.
+	 */
+	public boolean isFeatureUsed(String... ftrNames) {
+		if (usedFeatures == null)
+			return true;
+		for (String ftrName : ftrNames)
+			if (usedFeatures.contains(ftrName))
+				return true;
+		return false;
+	}
+
 	public Set<Tag> allCandidates() {
 		if (allCandidates == null){
 			allCandidates= new HashSet<Tag>();
@@ -42,4 +80,114 @@ public class QueryInformation {
 		}
 		return allCandidates;
 	}
+
+	/**
+	 * @return the memo of the edit distances computed while processing this query.
+	 */
+	public EditDistanceMemo getEditDistanceMemo() {
+		return editDistanceMemo;
+	}
+
+	/**
+	 * @param query
+	 *            the query this information refers to.
+	 * @return the text context of the query, built on the first call.
+	 */
+	public synchronized QueryTextContext getTextContext(String query) {
+		if (textContext == null || !textContext.getQuery().equals(query))
+			textContext = new QueryTextContext(query);
+		return textContext;
+	}
+
+	/**
+	 * @param wid
+	 *            a candidate entity.
+	 * @param features
+	 *            computes the entity features of the candidate, called only the first time the
+	 *            features of wid are requested.
+	 * @return the (unmodifiable) entity features of the candidate for this query.
+	 */
+	public Map<String, Double> getEntityFeatures(int wid, Supplier<? extends Map<String, Double>> features) {
+		Map<String, Double> res = entityFeatures.get(wid);
+		if (res == null) {
+			res = Collections.unmodifiableMap(features.get());
+			Map<String, Double> previous = entityFeatures.putIfAbsent(wid, res);
+			if (previous != null)
+				res = previous;
+		}
+		return res;
+	}
+
+	/**
+	 * @param a
+	 *            a candidate annotation, identified by its position, length and concept.
+	 * @param features
+	 *            computes the annotation features of a, called only the first time the
+	 *            features of a are requested.
+	 * @return the annotation features of a for this query.
+	 */
+	public SparseFeatureVector getAnnotationFeatures(Annotation a, Supplier<SparseFeatureVector> features) {
+		SparseFeatureVector res = annotationFeatures.get(a);
+		if (res == null) {
+			res = features.get();
+			SparseFeatureVector previous = annotationFeatures.putIfAbsent(a, res);
+			if (previous != null)
+				res = previous;
+		}
+		return res;
+	}
+
+	/**
+	 * @param features
+	 *            computes the features that only depend on the query, called only the first
+	 *            time they are requested.
+	 * @return the (unmodifiable) features of the query.
+	 */
+	public synchronized Map<String, Double> getQueryFeatures(Supplier<? extends Map<String, Double>> features) {
+		if (queryFeatures == null)
+			queryFeatures = Collections.unmodifiableMap(features.get());
+		return queryFeatures;
+	}
+
+	/**
+	 * @param lpSumAvg
+	 *            computes the sum and average link probability of the query segments, called only
+	 *            the first time they are requested.
+	 * @return the sum and average link probability of the query segments.
+	 */
+	public synchronized Pair<Double, Double> getSegmentsLpSumAvg(Supplier<Pair<Double, Double>> lpSumAvg) {
+		if (segmentsLpSumAvg == null)
+			segmentsLpSumAvg = lpSumAvg.get();
+		return segmentsLpSumAvg;
+	}
+
+	/**
+	 * @param entities
+	 *            the entities whose relatedness is needed.
+	 * @return a relatedness matrix including (at least) all the given entities and those of the
+	 *         previous calls. The matrix is rebuilt only when new entities are requested, without
+	 *         holding the lock of this object, since building it may query the relatedness
+	 *         service.
+	 */
+	public RelatednessMatrix getRelatednessMatrix(Collection<Integer> entities) {
+		while (true) {
+			RelatednessMatrix current;
+			HashSet<Integer> toInclude;
+			synchronized (this) {
+				if (relatednessMatrix != null && relatednessMatrix.containsAll(entities))
+					return relatednessMatrix;
+				relatednessEntities.addAll(entities);
+				current = relatednessMatrix;
+				toInclude = new HashSet<>(relatednessEntities);
+			}
+			RelatednessMatrix built = new RelatednessMatrix(toInclude);
+			synchronized (this) {
+				// Keep the matrix built concurrently by another thread, if any, and extend it if needed.
+				if (relatednessMatrix == current)
+					relatednessMatrix = built;
+				if (relatednessMatrix.containsAll(entities))
+					return relatednessMatrix;
+			}
+		}
+	}
 }
@@ -0,0 +1,177 @@
+package it.unipi.di.acube.smaph;
+
+import it.unipi.di.acube.batframework.utils.Pair;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The text of a query, broken down once in the forms that the stages of the annotation process
+ * (candidate annotation generation, feature extraction, binding generation) read over and over:
+ * whitespace tokens, word token positions, the segments with their strings and lower-cased
+ * forms. Instances are immutable and built once per query, see
+ * {@link QueryInformation#getTextContext(String)}.
+ */
+public class QueryTextContext {
+	private final String query;
+	private final int whitespaceTokens;
+	/** tokenStarts[i] is the number of whitespace tokens starting before position i. */
+	private final int[] tokenStarts;
+	private final List<Pair<Integer, Integer>> tokenPositions;
+	/** Index of the word token starting (ending) at each position of the query, -1 if none. */
+	private final int[] tokenStartingAt, tokenEndingAt;
+	private final List<Pair<Integer, Integer>> segments;
+	private final String[] segmentStrings;
+	private final String[] segmentLCForms;
+	private final HashMap<Pair<Integer, Integer>, Integer> segmentToId = new HashMap<>();
+	private final List<String> lowerCaseSegmentStrings;
+	private final String alphanumericLC;
+
+	public QueryTextContext(String query) {
+		this.query = query;
+		tokenStarts = new int[query.length() + 1];
+		for (int i = 0; i < query.length(); i++)
+			tokenStarts[i + 1] = tokenStarts[i] + (isTokenStart(i) ? 1 : 0);
+		whitespaceTokens = tokenStarts[query.length()];
+
+		tokenPositions = Collections.unmodifiableList(SmaphUtils.findTokensPosition(query));
+		tokenStartingAt = new int[query.length() + 1];
+		tokenEndingAt = new int[query.length() + 1];
+		Arrays.fill(tokenStartingAt, -1);
+		Arrays.fill(tokenEndingAt, -1);
+		for (int i = 0; i < tokenPositions.size(); i++) {
+			tokenStartingAt[tokenPositions.get(i).first] = i;
+			tokenEndingAt[tokenPositions.get(i).second] = i;
+		}
+		segments = Collections.unmodifiableList(SmaphUtils.findSegments(query));
+		segmentStrings = new String[segments.size()];
+		segmentLCForms = new String[segments.size()];
+		for (int i = 0; i < segments.size(); i++) {
+			Pair<Integer, Integer> segment = segments.get(i);
+			segmentStrings[i] = query.substring(segment.first, segment.second);
+			segmentLCForms[i] = SmaphUtils.getLCForm(segmentStrings[i]);
+			segmentToId.put(segment, i);
+		}
+		lowerCaseSegmentStrings = Collections.unmodifiableList(SmaphUtils.findSegmentsStrings(query.toLowerCase()));
+		alphanumericLC = query.replaceAll("[^a-zA-Z0-9]", " ").toLowerCase();
+	}
+
+	private boolean isTokenStart(int i) {
+		return !Character.isWhitespace(query.charAt(i)) && (i == 0 || Character.isWhitespace(query.charAt(i - 1)));
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the number of tokens of the query, as found by {@link SmaphUtils#tokenize(String)}.
+	 */
+	public int getTokenCount() {
+		return whitespaceTokens;
+	}
+
+	/**
+	 * @return the number of tokens of query.substring(start, end), as found by
+	 *         {@link SmaphUtils#tokenize(String)}.
+	 */
+	public int getTokenCount(int start, int end) {
+		if (start >= end)
+			return 0;
+		int count = tokenStarts[end] - tokenStarts[start];
+		// a token cut by start.
+		if (!isTokenStart(start) && !Character.isWhitespace(query.charAt(start)))
+			count++;
+		return count;
+	}
+
+	/**
+	 * @return the word tokens of the query, as found by
+	 *         {@link SmaphUtils#findTokensPosition(String)}.
+	 */
+	public List<Pair<Integer, Integer>> getTokenPositions() {
+		return tokenPositions;
+	}
+
+	/**
+	 * Encodes the span of text between start and end as the bitmask of the word tokens it covers
+	 * (bit i set for the i-th token of {@link #getTokenPositions()}). Two token-aligned spans
+	 * overlap if and only if their masks intersect.
+	 * 
+	 * @return the token mask of the span, or 0 if the span does not start at the beginning and
+	 *         end at the end of a word token, or if it covers tokens beyond the 64th.
+	 */
+	public long getTokenMask(int start, int end) {
+		if (start < 0 || start > end || end > query.length())
+			return 0;
+		int first = tokenStartingAt[start];
+		int last = tokenEndingAt[end];
+		if (first < 0 || last < first || last >= Long.SIZE)
+			return 0;
+		long upTo = last == Long.SIZE - 1 ? -1L : (1L << (last + 1)) - 1;
+		return upTo & (-1L << first);
+	}
+
+	/**
+	 * @return the segments of the query, as found by {@link SmaphUtils#findSegments(String)}.
+	 *         Segments are identified by their position in this list.
+	 */
+	public List<Pair<Integer, Integer>> getSegments() {
+		return segments;
+	}
+
+	public int getSegmentCount() {
+		return segmentStrings.length;
+	}
+
+	/**
+	 * @return the id of segment, -1 if it is not a segment of the query.
+	 */
+	public int getSegmentId(Pair<Integer, Integer> segment) {
+		Integer id = segmentToId.get(segment);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @return the strings of the segments, indexed by segment id.
+	 */
+	public List<String> getSegmentStrings() {
+		return Collections.unmodifiableList(Arrays.asList(segmentStrings));
+	}
+
+	/**
+	 * @return the strings of the segments in the form returned by
+	 *         {@link SmaphUtils#getLCForm(String)}, indexed by segment id.
+	 */
+	public List<String> getSegmentLCForms() {
+		return Collections.unmodifiableList(Arrays.asList(segmentLCForms));
+	}
+
+	public String getSegmentString(int segmentId) {
+		return segmentStrings[segmentId];
+	}
+
+	/**
+	 * @return the segment string in the form returned by {@link SmaphUtils#getLCForm(String)}.
+	 */
+	public String getSegmentLCForm(int segmentId) {
+		return segmentLCForms[segmentId];
+	}
+
+	/**
+	 * @return the segment strings of the lower-cased query, as returned by
+	 *         {@link SmaphUtils#findSegmentsStrings(String)}.
+	 */
+	public List<String> getLowerCaseSegmentStrings() {
+		return lowerCaseSegmentStrings;
+	}
+
+	/**
+	 * @return the query lower-cased, with all non-alphanumeric characters replaced by a space.
+	 */
+	public String getAlphanumericLC() {
+		return alphanumericLC;
+	}
+}
@@ -0,0 +1,85 @@
+package it.unipi.di.acube.smaph;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Query-scoped matrix of the Jaccard and MW relatedness (as computed by
+ * {@link WATRelatednessComputer}) between all pairs of a set of entities. Entities are mapped to
+ * small ids, the matrix is symmetric and filled once: pairs in the relatedness cache are copied
+ * in one pass, the others are fetched in parallel through {@link ParallelExtraction}. Instances are immutable once built, see
+ * {@link QueryInformation#getRelatednessMatrix(Collection)}.
+ */
+public class RelatednessMatrix {
+	private final int[] wids;
+	private final Int2IntOpenHashMap widToId = new Int2IntOpenHashMap();
+	/** Relatedness of pair (i, j), stored in position i * size + j. */
+	private final double[] jaccard, mw;
+
+	public RelatednessMatrix(Collection<Integer> entities) {
+		widToId.defaultReturnValue(-1);
+		IntArrayList widList = new IntArrayList();
+		for (int wid : entities)
+			if (!widToId.containsKey(wid)) {
+				widToId.put(wid, widList.size());
+				widList.add(wid);
+			}
+		wids = widList.toIntArray();
+		int n = wids.length;
+		jaccard = new double[n * n];
+		mw = new double[n * n];
+
+		// Cached pairs are copied in one pass, the others are fetched on the bounded pool of
+		// ParallelExtraction (the requests block on the network).
+		IntArrayList misses = WATRelatednessComputer.copyCachedRelatedness(wids, jaccard, mw);
+		List<double[]> fetched = ParallelExtraction.map(misses, cell -> new double[] {
+		        WATRelatednessComputer.getJaccardRelatedness(wids[cell / n], wids[cell % n]),
+		        WATRelatednessComputer.getMwRelatedness(wids[cell / n], wids[cell % n]) }, false);
+		for (int k = 0; k < misses.size(); k++) {
+			int i = misses.getInt(k) / n, j = misses.getInt(k) % n;
+			jaccard[i * n + j] = jaccard[j * n + i] = fetched.get(k)[0];
+			mw[i * n + j] = mw[j * n + i] = fetched.get(k)[1];
+		}
+	}
+
+	/**
+	 * @return the number of entities in the matrix.
+	 */
+	public int size() {
+		return wids.length;
+	}
+
+	/**
+	 * @return the id of entity wid in the matrix, or -1 if the matrix does not include it.
+	 */
+	public int getId(int wid) {
+		return widToId.get(wid);
+	}
+
+	/**
+	 * @return true iff the matrix includes all the given entities.
+	 */
+	public boolean containsAll(Collection<Integer> entities) {
+		for (int wid : entities)
+			if (!widToId.containsKey(wid))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the Jaccard relatedness between the entities with ids id1 and id2.
+	 */
+	public double getJaccardRelatedness(int id1, int id2) {
+		return jaccard[id1 * wids.length + id2];
+	}
+
+	/**
+	 * @return the MW relatedness between the entities with ids id1 and id2.
+	 */
+	public double getMwRelatedness(int id1, int id2) {
+		return mw[id1 * wids.length + id2];
+	}
+}
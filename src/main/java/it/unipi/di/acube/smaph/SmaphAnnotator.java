@@ -28,8 +28,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -80,7 +78,8 @@ import it.unipi.di.acube.smaph.snippetannotationfilters.SnippetAnnotationFilter;
 
 public class SmaphAnnotator implements Sa2WSystem {
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-	private static final Pattern WIKI_URL_PATTERN = Pattern.compile("https?://en.wikipedia.org/wiki/(.+)");
+	private static final String WIKI_URL_PREFIX_HTTP = "http://en.wikipedia.org/wiki/";
+	private static final String WIKI_URL_PREFIX_HTTPS = "https://en.wikipedia.org/wiki/";
 	private WikipediaInterface wikiApi;
 	private WebsearchApi websearchApi = null;
 	private WAT2Annotator snippetAnnotator;
@@ -137,7 +136,7 @@ public class SmaphAnnotator implements Sa2WSystem {
 		this.entityFilter = entityFilter;
 		this.entityFilterNormalizer = entityFilterNormalizer;
 		this.linkBack = linkBack;
-		this.wikiApi = wikiApi;
+		this.wikiApi = ConcurrentWikipediaInterface.of(wikiApi);
 		this.includeSourceWikiResults = includeSourceWikiResults;
 		this.includeSourceWikiSearchResults = includeSourceWikiSearchResults;
 		this.topKWikiSearch = topKwikiSearch;
@@ -203,19 +202,35 @@ public class SmaphAnnotator implements Sa2WSystem {
 			if (debugger != null) {
 				debugger.addProcessedQuery(query);
 				debugger.addQueryInformation(query, qi);
-			}
-
-			for (Tag candidate : qi.allCandidates()) {
-				if (predictNEonly && !ERDDatasetFilter.entityIsNE(wikiApi, wikiToFreeb, candidate.getConcept()))
-					continue;
-				EntityFeaturePack fp = new EntityFeaturePack(candidate, query, qi, wikiApi, wikiToFreeb);
-				boolean accept = entityFilter.filterEntity(fp, entityFilterNormalizer);
-				if (accept) {
-					acceptedEntities.add(candidate);
+			} else
+				qi.setUsedFeatures(getUsedFeatures());
+
+			List<Tag> candidates = new Vector<>(qi.allCandidates());
+			ParallelExtraction.prefetchTitles(wikiApi, candidates.stream().map(t -> t.getConcept()).collect(Collectors.toList()));
+			List<EntityFeaturePack> candidateFtrs = ParallelExtraction.map(candidates, candidate -> {
+				try {
+					if (predictNEonly && !ERDDatasetFilter.entityIsNE(wikiApi, wikiToFreeb, candidate.getConcept()))
+						return null;
+				} catch (IOException e) {
+					throw new RuntimeException(e);
 				}
-			}
+				return new EntityFeaturePack(candidate, query, qi, wikiApi, wikiToFreeb);
+			}, debugger != null);
+			List<Tag> filteredCandidates = new Vector<>();
+			List<EntityFeaturePack> filteredFtrs = new Vector<>();
+			for (int i = 0; i < candidates.size(); i++)
+				if (candidateFtrs.get(i) != null) {
+					filteredCandidates.add(candidates.get(i));
+					filteredFtrs.add(candidateFtrs.get(i));
+				}
+			boolean[] accepted = entityFilter.filterEntities(filteredFtrs, entityFilterNormalizer);
+			for (int i = 0; i < filteredCandidates.size(); i++)
+				if (accepted[i])
+					acceptedEntities.add(filteredCandidates.get(i));
 			/** Link entities back to query mentions */
 			annotations = linkBack.linkBack(query, acceptedEntities, qi);
+			LOG.debug("Edit distances for query [{}]: {} found in memo, {} computed.", query,
+			        qi.getEditDistanceMemo().getHits(), qi.getEditDistanceMemo().getMisses());
 
 			lastAnnotationTime = Calendar.getInstance().getTimeInMillis() - lastAnnotationTime;
 
@@ -249,6 +264,20 @@ public class SmaphAnnotator implements Sa2WSystem {
 
 	}
 
+	/**
+	 * @return the names of the features read by the entity filter and by the linkback, or null if
+	 *         they may read any feature.
+	 */
+	private Set<String> getUsedFeatures() {
+		Set<String> entityFtrs = new EntityFeaturePack().getSchema().getNames(entityFilter.getUsedFtr());
+		Set<String> linkBackFtrs = linkBack.getUsedFeatures();
+		if (entityFtrs == null || linkBackFtrs == null)
+			return null;
+		Set<String> res = new HashSet<>(entityFtrs);
+		res.addAll(linkBackFtrs);
+		return res;
+	}
+
 	/**
 	 * Turns a Wikipedia URL to the title of the Wikipedia page.
 	 * 
@@ -256,11 +285,17 @@ public class SmaphAnnotator implements Sa2WSystem {
 	 * @return a Wikipedia title, or null if the url is not a Wikipedia page.
 	 */
 	private static String decodeWikiUrl(String encodedWikiUrl) {
-		Matcher matcher = WIKI_URL_PATTERN.matcher(encodedWikiUrl);
-		if (!matcher.matches())
+		int prefixLength;
+		if (encodedWikiUrl.startsWith(WIKI_URL_PREFIX_HTTPS))
+			prefixLength = WIKI_URL_PREFIX_HTTPS.length();
+		else if (encodedWikiUrl.startsWith(WIKI_URL_PREFIX_HTTP))
+			prefixLength = WIKI_URL_PREFIX_HTTP.length();
+		else
+			return null;
+		if (encodedWikiUrl.length() == prefixLength)
 			return null;
 		try {
-			String title = URLDecoder.decode(matcher.group(1), "utf-8");
+			String title = URLDecoder.decode(encodedWikiUrl.substring(prefixLength), "utf-8");
 			if (!SmaphUtils.acceptWikipediaTitle(title))
 				return null;
 			return WikipediaInterface.normalize(title);
@@ -756,8 +791,11 @@ public class SmaphAnnotator implements Sa2WSystem {
 	private List<Triple<Annotation, GreedyFeaturePack, Double>> getGreedyAnnotationToFtrsAndIncrement(String query,
 	        QueryInformation qi, HashSet<Annotation> goldStandardAnn, HashSet<Annotation> greedyPartialSolution,
 	        StrongAnnotationMatch annotationMatch) {
-		List<Annotation> candidates = IndividualLinkback.getAnnotations(query, qi.allCandidates(), anchorMaxED, e2a, wikiApi)
-		        .stream().filter(a -> !greedyPartialSolution.stream().anyMatch(aPS -> aPS.overlaps(a)))
+		MentionCoverage partialSolutionCoverage = new MentionCoverage(qi.getTextContext(query));
+		for (Annotation aPS : greedyPartialSolution)
+			partialSolutionCoverage.add(aPS);
+		List<Annotation> candidates = IndividualLinkback.getAnnotations(query, qi.allCandidates(), anchorMaxED, e2a, wikiApi, qi)
+		        .stream().filter(a -> !partialSolutionCoverage.overlaps(a))
 		        .collect(Collectors.toList());
 
 		double f1Before = new Metrics<Annotation>().getSingleF1(goldStandardAnn, greedyPartialSolution, annotationMatch);
@@ -780,7 +818,7 @@ public class SmaphAnnotator implements Sa2WSystem {
 	        QueryInformation qi, HashSet<Annotation> goldStandardAnn, MatchRelation<Annotation> annotationMatch) {
 
 		List<Triple<Annotation, AnnotationFeaturePack, Boolean>> annAndFtrsAndPresence = new Vector<>();
-		for (Annotation a : IndividualLinkback.getAnnotations(query, qi.allCandidates(), anchorMaxED, e2a, wikiApi)) {
+		for (Annotation a : IndividualLinkback.getAnnotations(query, qi.allCandidates(), anchorMaxED, e2a, wikiApi, qi)) {
 			boolean inGold = false;
 			for (Annotation goldAnn : goldStandardAnn)
 				if (annotationMatch.match(goldAnn, a)) {
@@ -859,7 +897,7 @@ public class SmaphAnnotator implements Sa2WSystem {
 	        double maxAnchorEd, SmaphDebugger debugger) throws Exception {
 		QueryInformation qi = getQueryInformation(query, debugger);
 		List<Annotation> candidateAnnotations = IndividualLinkback.getAnnotations(query, qi.allCandidates(), maxAnchorEd, e2a,
-		        wikiApi);
+		        wikiApi, qi);
 		StrongAnnotationMatch sam = new StrongAnnotationMatch(wikiApi);
 
 		HashSet<ScoredAnnotation> bestBindingScored = new HashSet<>();
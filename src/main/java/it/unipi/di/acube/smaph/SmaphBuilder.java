@@ -5,10 +5,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.apache.commons.math3.util.Pair;
@@ -25,6 +27,7 @@ import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
 import it.unipi.di.acube.smaph.learn.featurePacks.EntityFeaturePack;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.featurePacks.GreedyFeaturePack;
+import it.unipi.di.acube.smaph.learn.models.LibSvmModel;
 import it.unipi.di.acube.smaph.learn.models.entityfilters.EntityFilter;
 import it.unipi.di.acube.smaph.learn.models.entityfilters.LibSvmEntityFilter;
 import it.unipi.di.acube.smaph.learn.models.entityfilters.NoEntityFilter;
@@ -51,16 +54,19 @@ public class SmaphBuilder {
 	public static WAT2Annotator DEFAULT_CACHED_AUX_ANNOTATOR = CachedWAT2Annotator.CachedWAT2AnnotatorBuilder.builder().baseUri("http://localhost:8080/wat-servlet").enableAdditionalInfo().tokenizer("lucene").build();
 	public static WebsearchApi BING_WEBSEARCH_API = null;
 	public static WebsearchApi GOOGLE_WEBSEARCH_API = null;
-	private static Map<URL, FeatureNormalizer> urlToNormalizer = new HashMap<>();
-	private static Map<URL, EntityFilter> urlToEntityFilter = new HashMap<>();
-	private static Map<URL, AnnotationRegressor> urlToAnnotationRegressor = new HashMap<>();
-	private static Map<URL, BindingRegressor> urlToBindingRegressor = new HashMap<>();
+	private static Map<URL, FeatureNormalizer> urlToNormalizer = new ConcurrentHashMap<>();
+	private static Map<URL, EntityFilter> urlToEntityFilter = new ConcurrentHashMap<>();
+	private static Map<URL, AnnotationRegressor> urlToAnnotationRegressor = new ConcurrentHashMap<>();
+	private static Map<URL, BindingRegressor> urlToBindingRegressor = new ConcurrentHashMap<>();
 	public static final int DEFAULT_NORMALSEARCH_RESULTS = 5;
 	public static final int DEFAULT_WIKISEARCH_RESULTS = 10;
 	public static final int DEFAULT_ANNOTATED_SNIPPETS = 15;
 	public static final double DEFAULT_ANNOTATIONFILTER_RATIO = 0.03;
 	public static final double DEFAULT_ANCHOR_MENTION_ED = 0.7;
 	public static final Websearch DEFAULT_WEBSEARCH = Websearch.GOOGLE_CSE;
+	public static final long KERNEL_APPROXIMATION_SEED = 42;
+	private static volatile int kernelApproximationDimensions = 0;
+	private static volatile boolean kernelApproximationRefit = true;
 	
 	public static void initialize(String watGcubeToken){
 		DEFAULT_AUX_ANNOTATOR = WAT2Annotator.WAT2AnnotatorBuilder.builder().gcubeToken(watGcubeToken).enableAdditionalInfo().tokenizer("lucene").build();
@@ -163,6 +169,8 @@ public class SmaphBuilder {
 	public static SmaphAnnotator getSmaph(SmaphVersion v, WikipediaInterface wikiApi, WikipediaToFreebase wikiToFreeb,
 	        WAT2Annotator auxAnnotator, EntityToAnchors e2a, boolean includeS2, Websearch ws, SmaphConfig c, int greedyStepLimit)
 	        throws FileNotFoundException, ClassNotFoundException, IOException {
+		// One lookup cache, shared by the annotator and its link-back.
+		wikiApi = ConcurrentWikipediaInterface.of(wikiApi);
 		URL model = getDefaultModel(v, ws, true, includeS2, true, -1);
 		URL zscore = getDefaultZscoreNormalizer(v, ws, true, includeS2, true, -1);
 
@@ -236,28 +244,137 @@ public class SmaphBuilder {
 		return new Pair<>(regressors, fns);
 	}
 
+	/**
+	 * Tasks that load into the model cache every model (and its normalizer) that
+	 * {@link #getSmaph(SmaphVersion, WikipediaInterface, WikipediaToFreebase, WAT2Annotator, EntityToAnchors, boolean, Websearch, SmaphConfig, int)}
+	 * may need for the given websearch engine, with and without S2. The tasks can be run concurrently;
+	 * models that are not shipped are skipped.
+	 *
+	 * @return the loading tasks, keyed by the name of the resource they load.
+	 */
+	public static Map<String, Runnable> getModelLoaders(Websearch ws) {
+		Map<String, Runnable> loaders = new LinkedHashMap<>();
+		for (boolean includeS2 : new boolean[] { true, false })
+			for (SmaphVersion v : SmaphVersion.values()) {
+				if (v == SmaphVersion.GREEDY) {
+					for (int i = 0;; i++) {
+						URL modelI = getDefaultModel(v, ws, true, includeS2, true, i);
+						if (modelI == null)
+							break;
+						URL zscoreI = getDefaultZscoreNormalizer(v, ws, true, includeS2, true, i);
+						addLoader(loaders, modelI, () -> getCachedAnnotationRegressor(modelI));
+						addLoader(loaders, zscoreI, () -> getCachedFeatureNormalizer(zscoreI, new GreedyFeaturePack()));
+					}
+					continue;
+				}
+				URL model = getDefaultModel(v, ws, true, includeS2, true, -1);
+				URL zscore = getDefaultZscoreNormalizer(v, ws, true, includeS2, true, -1);
+				switch (v) {
+				case ANNOTATION_REGRESSOR:
+					addLoader(loaders, model, () -> getCachedAnnotationRegressor(model));
+					addLoader(loaders, zscore, () -> getCachedFeatureNormalizer(zscore, new GreedyFeaturePack()));
+					break;
+				case ENTITY_FILTER:
+					addLoader(loaders, model, () -> getCachedSvmEntityFilter(model));
+					addLoader(loaders, zscore, () -> getCachedFeatureNormalizer(zscore, new EntityFeaturePack()));
+					break;
+				case COLLECTIVE:
+					addLoader(loaders, model, () -> getCachedBindingRegressor(model));
+					break;
+				default:
+					break;
+				}
+			}
+		return loaders;
+	}
+
+	private static void addLoader(Map<String, Runnable> loaders, URL resource, Runnable loader) {
+		if (resource != null)
+			loaders.put(resource.getPath().substring(resource.getPath().lastIndexOf('/') + 1), loader);
+	}
+
+	/**
+	 * Serve the SVM models (entity filters and annotation regressors) through a random Fourier
+	 * approximation of their kernel, trading a small loss of accuracy for a cost per candidate that
+	 * does not depend on the number of support vectors. Applies to the models already loaded and
+	 * to those loaded afterwards; it should be set before serving queries.
+	 * 
+	 * @param dimensions
+	 *            the number of random features, 0 (the default) to evaluate the models exactly.
+	 * @param refit
+	 *            whether to refit the approximation to the decision values of the exact models.
+	 */
+	public static synchronized void setKernelApproximation(int dimensions, boolean refit) {
+		kernelApproximationDimensions = dimensions;
+		kernelApproximationRefit = refit;
+		urlToEntityFilter.values().forEach(SmaphBuilder::applyKernelApproximation);
+		urlToAnnotationRegressor.values().forEach(SmaphBuilder::applyKernelApproximation);
+	}
+
+	private static <M> M applyKernelApproximation(M model, int dimensions, boolean refit) {
+		if (model instanceof LibSvmModel)
+			((LibSvmModel<?>) model).setKernelApproximation(dimensions, KERNEL_APPROXIMATION_SEED, refit);
+		return model;
+	}
+
+	private static <M> M applyKernelApproximation(M model) {
+		return applyKernelApproximation(model, kernelApproximationDimensions, kernelApproximationRefit);
+	}
+
+	/**
+	 * @return the model cached for url, loading it if needed. Models are loaded (and their kernel
+	 *         approximated, which may take long) outside of the cache, so that loading a model
+	 *         does not block the lookups of the others, and published with putIfAbsent: if two
+	 *         threads load the same model, the first one published is kept.
+	 */
+	private static <M> M getCached(Map<URL, M> cache, URL url, Function<URL, M> load) {
+		M model = cache.get(url);
+		if (model != null)
+			return model;
+		int dimensions;
+		boolean refit;
+		synchronized (SmaphBuilder.class) {
+			dimensions = kernelApproximationDimensions;
+			refit = kernelApproximationRefit;
+		}
+		M loaded = applyKernelApproximation(load.apply(url), dimensions, refit);
+		synchronized (SmaphBuilder.class) {
+			model = cache.putIfAbsent(url, loaded);
+			if (model != null)
+				return model;
+			// The approximation has been changed while the model was loading.
+			if (dimensions != kernelApproximationDimensions || refit != kernelApproximationRefit)
+				applyKernelApproximation(loaded);
+			return loaded;
+		}
+	}
+
 	private static AnnotationRegressor getCachedAnnotationRegressor(URL model) {
-		if (!urlToAnnotationRegressor.containsKey(model))
-			urlToAnnotationRegressor.put(model, LibSvmAnnotationRegressor.fromUrl(model));
-		return urlToAnnotationRegressor.get(model);
+		return getCached(urlToAnnotationRegressor, model, LibSvmAnnotationRegressor::fromUrl);
 	}
 
-	private static EntityFilter getCachedSvmEntityFilter(URL model) throws IOException {
-		if (!urlToEntityFilter.containsKey(model))
-			urlToEntityFilter.put(model, LibSvmEntityFilter.fromUrl(model));
-		return urlToEntityFilter.get(model);
+	private static EntityFilter getCachedSvmEntityFilter(URL model) {
+		return getCached(urlToEntityFilter, model, m -> {
+			try {
+				return LibSvmEntityFilter.fromUrl(m);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
 	}
 
 	private static <T> FeatureNormalizer getCachedFeatureNormalizer(URL zscore, FeaturePack<T> fp) {
-		if (!urlToNormalizer.containsKey(zscore))
-			urlToNormalizer.put(zscore, ZScoreFeatureNormalizer.fromUrl(zscore, fp, false));
-		return urlToNormalizer.get(zscore);
+		return getCached(urlToNormalizer, zscore, z -> ZScoreFeatureNormalizer.fromUrl(z, fp, false));
 	}
 
-	private static BindingRegressor getCachedBindingRegressor(URL model) throws IOException {
-		if (!urlToBindingRegressor.containsKey(model))
-			urlToBindingRegressor.put(model, RankLibBindingRegressor.fromUrl(model));
-		return urlToBindingRegressor.get(model);
+	private static BindingRegressor getCachedBindingRegressor(URL model) {
+		return getCached(urlToBindingRegressor, model, m -> {
+			try {
+				return RankLibBindingRegressor.fromUrl(m);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
 	}
 
 	public static String getDefaultLabel(SmaphVersion v, Websearch ws, boolean s1, boolean s2, boolean s3) {
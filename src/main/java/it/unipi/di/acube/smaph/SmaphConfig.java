@@ -38,12 +38,13 @@ public class SmaphConfig {
 	private String defaultWikipagesStorage;
 	private String defaultEntityToAnchorsStorage;
 	private String defaultWikipediaToFreebaseStorage;
+	private String defaultNamedEntitiesBitset;
 	private String watGcubeToken;
 
 	public SmaphConfig(String defaultStands4UserId, String defaultStands4Cache, String defaultStands4TokenId,
 	        String defaultGoogleApiKey, String defaultGoogleCseId, String defaultBingKey, String defaultWebsearchCache,
 	        String defaultWikipagesStorage, String defaultEntityToAnchorsStorage, String defaultWikipediaToFreebaseStorage,
-	        String watGcubeToken) {
+	        String defaultNamedEntitiesBitset, String watGcubeToken) {
 		this.defaultStands4UserId = defaultStands4UserId;
 		this.defaultStands4Cache = defaultStands4Cache;
 		this.defaultStands4TokenId = defaultStands4TokenId;
@@ -54,6 +55,7 @@ public class SmaphConfig {
 		this.defaultWikipagesStorage = defaultWikipagesStorage;
 		this.defaultEntityToAnchorsStorage = defaultEntityToAnchorsStorage;
 		this.defaultWikipediaToFreebaseStorage = defaultWikipediaToFreebaseStorage;
+		this.defaultNamedEntitiesBitset = defaultNamedEntitiesBitset;
 		this.watGcubeToken = watGcubeToken;
 	}
 
@@ -102,7 +104,7 @@ public class SmaphConfig {
 			        getConfigValue("google-cse", "cse-id", doc), getConfigValue("bing", "key", doc),
 			        getConfigValue("cache", "websearch-cache", doc), getConfigValue("wikipages", "storage", doc),
 			        getConfigValue("entity-to-anchors", "storage", doc), getConfigValue("wikipedia-to-freebase", "storage", doc),
-			        getConfigValue("wat", "gcube-token", doc));
+			        getConfigValue("wikipedia-to-freebase", "named-entities-bitset", doc), getConfigValue("wat", "gcube-token", doc));
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RuntimeException(e);
@@ -144,6 +146,15 @@ public class SmaphConfig {
 		return defaultWikipediaToFreebaseStorage;
 	}
 
+	/**
+	 * @return the named-entity bitset (see
+	 *         {@link it.unipi.di.acube.smaph.datasets.wikitofreebase.NamedEntityBitset}), or null if it
+	 *         is not configured.
+	 */
+	public String getDefaultNamedEntitiesBitset() {
+		return defaultNamedEntitiesBitset == null || defaultNamedEntitiesBitset.isEmpty() ? null : defaultNamedEntitiesBitset;
+	}
+
 	public String getWatGcubeToken() {
 		return watGcubeToken;
 	}
@@ -54,7 +54,6 @@ import org.aksw.gerbil.transfer.nif.data.DocumentImpl;
 import org.aksw.gerbil.transfer.nif.data.NamedEntity;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
 import org.codehaus.jettison.json.JSONObject;
@@ -111,7 +110,7 @@ public class SmaphUtils {
 			float minDist = Float.MAX_VALUE;
 			String bestQToken = null;
 			for (String tokenQ : tokensQ) {
-				float relLev = getNormEditDistance(tokenB, tokenQ);
+				float relLev = getNormEditDistance(tokenB, tokenQ, minDist);
 				if (relLev < minDist) {
 					minDist = relLev;
 					bestQToken = tokenQ;
@@ -134,14 +133,43 @@ public class SmaphUtils {
 	public static float getNormEditDistance(String tokenB, String tokenQ) {
 		if (tokenQ.isEmpty() || tokenB.isEmpty())
 			return 1;
-		int lev = StringUtils.getLevenshteinDistance(tokenB, tokenQ);
+		int lev = EditDistance.levenshtein(tokenB, tokenQ);
 		return (float) lev / (float) Math.max(tokenB.length(), tokenQ.length());
 	}
 
+	/**
+	 * Same as {@link #getNormEditDistance(String, String)}, but gives up computing the distance
+	 * as soon as it is known to be greater than maxDistance.
+	 * 
+	 * @param maxDistance
+	 *            the maximum normalized distance of interest.
+	 * @return the normalized edit distance between tokenB and tokenQ if it is not greater than
+	 *         maxDistance, 1 otherwise.
+	 */
+	public static float getNormEditDistance(String tokenB, String tokenQ, double maxDistance) {
+		if (tokenQ.isEmpty() || tokenB.isEmpty())
+			return 1;
+		int maxLength = Math.max(tokenB.length(), tokenQ.length());
+		// one more edit to stay safe of rounding in the normalization.
+		int bound = maxDistance >= 1 ? maxLength : (int) (maxDistance * maxLength) + 1;
+		int lev = EditDistance.levenshtein(tokenB, tokenQ, bound);
+		if (lev < 0)
+			return 1;
+		return (float) lev / (float) maxLength;
+	}
+
 	public static float getNormEditDistanceLC(String tokenB, String tokenQ) {
-		tokenB = tokenB.replaceAll("\\W+", " ").toLowerCase();
-		tokenQ = tokenQ.replaceAll("\\W+", " ").toLowerCase();
-		return getNormEditDistance(tokenB, tokenQ);
+		return getNormEditDistance(getLCForm(tokenB), getLCForm(tokenQ));
+	}
+
+	/**
+	 * @param token
+	 *            a string.
+	 * @return token lower-cased, with non-word characters replaced by a space, as compared by
+	 *         {@link #getNormEditDistanceLC(String, String)}.
+	 */
+	public static String getLCForm(String token) {
+		return token.replaceAll("\\W+", " ").toLowerCase();
 	}
 
 	public static double weightedGeometricAverage(double[] vals, double[] weights) {
@@ -321,17 +349,13 @@ public class SmaphUtils {
 	 * @return str with all words stemmed.
 	 */
 	private static String stemString(String str, EnglishStemmer stemmer) {
-		String stemmedString = "";
-		String[] words = str.split("\\s+");
-		for (int i = 0; i < words.length; i++) {
-			String word = words[i];
+		StringBuilder stemmedString = new StringBuilder();
+		for (String word : str.split("\\s+")) {
 			stemmer.setCurrent(word);
 			stemmer.stem();
-			stemmedString += stemmer.getCurrent();
-			if (i != words.length)
-				stemmedString += " ";
+			stemmedString.append(stemmer.getCurrent()).append(' ');
 		}
-		return stemmedString;
+		return stemmedString.toString();
 	}
 
 	/**
@@ -407,17 +431,14 @@ public class SmaphUtils {
 		for (Pair<Integer, Integer> startEnd : findTokensPosition(text))
 			words.add(text.substring(startEnd.first, startEnd.second));
 		Vector<String> segments = new Vector<String>();
+		StringBuilder segment = new StringBuilder();
 		for (int start = 0; start < words.size(); start++) {
-			for (int end = 0; end < words.size(); end++){
-				if (start <= end) {
-					String segment = "";
-					for (int i = start; i <= end; i++) {
-						segment += words.get(i);
-						if (i != end)
-							segment += " ";
-					}
-					segments.add(segment);
-				}
+			segment.setLength(0);
+			for (int end = start; end < words.size(); end++) {
+				if (end != start)
+					segment.append(' ');
+				segment.append(words.get(end));
+				segments.add(segment.toString());
 			}
 		}
 		return segments;
@@ -455,7 +476,15 @@ public class SmaphUtils {
 
 	public static List<List<Pair<Integer, Integer>>> getSegmentations(
 			String query, int maxBioSequence) {
-		List<Pair<Integer, Integer>> qTokens = findTokensPosition(query);
+		return getSegmentations(findTokensPosition(query), maxBioSequence);
+	}
+
+	/**
+	 * @param qTokens
+	 *            the token positions of the query, as returned by {@link #findTokensPosition(String)}.
+	 */
+	public static List<List<Pair<Integer, Integer>>> getSegmentations(
+			List<Pair<Integer, Integer>> qTokens, int maxBioSequence) {
 		List<List<Pair<Integer, Integer>>> segmentations = new Vector<>();
 		List<String> bioSequences = getBioSequences(qTokens.size(),
 				maxBioSequence);
@@ -556,10 +585,16 @@ public class SmaphUtils {
 	public static double getFragmentation(List<String> bolds, String bold) {
 		int boldCount = 0;
 		int fragmentsCount = 0;
-		List<String> tokensBold = tokenize(stemString(bold, new EnglishStemmer()));
+		EnglishStemmer stemmer = new EnglishStemmer();
+		List<String> tokensBold = tokenize(stemString(bold, stemmer));
+		HashMap<String, List<String>> boldToTokens = new HashMap<>();
 
 		for (String b : bolds) {
-			List<String> tokensB = tokenize(stemString(b, new EnglishStemmer()));
+			List<String> tokensB = boldToTokens.get(b);
+			if (tokensB == null) {
+				tokensB = tokenize(stemString(b, stemmer));
+				boldToTokens.put(b, tokensB);
+			}
 			if (tokensBold.equals(tokensB))
 				boldCount++;
 			else {
@@ -595,10 +630,16 @@ public class SmaphUtils {
 	public static double getAggregation(List<String> bolds, String bold) {
 		int boldCount = 0;
 		int fragmentsCount = 0;
-		List<String> tokensBold = tokenize(stemString(bold, new EnglishStemmer()));
+		EnglishStemmer stemmer = new EnglishStemmer();
+		List<String> tokensBold = tokenize(stemString(bold, stemmer));
+		HashMap<String, List<String>> boldToTokens = new HashMap<>();
 
 		for (String b : bolds) {
-			List<String> tokensB = tokenize(stemString(b, new EnglishStemmer()));
+			List<String> tokensB = boldToTokens.get(b);
+			if (tokensB == null) {
+				tokensB = tokenize(stemString(b, stemmer));
+				boldToTokens.put(b, tokensB);
+			}
 			if (tokensBold.equals(tokensB))
 				boldCount++;
 			else {
@@ -16,6 +16,7 @@ import org.codehaus.jettison.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import it.unipi.di.acube.batframework.utils.Pair;
 
@@ -38,6 +39,10 @@ public class WATRelatednessComputer implements Serializable {
 	public static void setBaseUri(String watBaseUri){
 		baseUri = watBaseUri;
 	}
+
+	public static String getBaseUri(){
+		return baseUri;
+	}
 	
 	public static void setGcubeToken(String watGcubeToken){
 		gcubeToken = watGcubeToken;
@@ -57,7 +62,13 @@ public class WATRelatednessComputer implements Serializable {
 			new File(resultsCacheFilename).createNewFile();
 			ObjectOutputStream oos = new ObjectOutputStream(
 					new FileOutputStream(resultsCacheFilename));
-			oos.writeObject(instance);
+			synchronized (instance.cacheJaccard) {
+				synchronized (instance.cacheMW) {
+					synchronized (instance.cacheLp) {
+						oos.writeObject(instance);
+					}
+				}
+			}
 			oos.close();
 			LOG.info("Flushing relatedness cache done.");
 		}
@@ -92,19 +103,98 @@ public class WATRelatednessComputer implements Serializable {
 		}
 	}
 
+	/**
+	 * Relatedness is symmetric: pairs are stored (and queried) with the lowest id first.
+	 */
+	private static Pair<Integer, Integer> relatednessKey(int wid1, int wid2) {
+		return wid2 < wid1 ? new Pair<Integer, Integer>(wid2, wid1) : new Pair<Integer, Integer>(wid1, wid2);
+	}
+
+	/**
+	 * Caches persisted before pairs were keyed with the lowest id first hold them in the order
+	 * they were requested, so both orders are looked up. Must be called holding the lock of cache.
+	 * 
+	 * @return the cached relatedness of the pair, or null if it is not cached.
+	 */
+	private static Double getCached(int wid1, int wid2, Object2DoubleOpenHashMap<Pair<Integer, Integer>> cache) {
+		Pair<Integer, Integer> p = relatednessKey(wid1, wid2);
+		if (cache.containsKey(p))
+			return cache.getDouble(p);
+		Pair<Integer, Integer> reversed = new Pair<Integer, Integer>(p.second, p.first);
+		if (cache.containsKey(reversed))
+			return cache.getDouble(reversed);
+		return null;
+	}
+
 	private double getGenericRelatedness(int wid1, int wid2, Object2DoubleOpenHashMap<Pair<Integer,Integer>> cache, String url){
-		if (wid2 < wid1) {
-			int tmp = wid2;
-			wid2 = wid1;
-			wid2 = tmp;
+		Pair <Integer,Integer> p = relatednessKey(wid1, wid2);
+		synchronized (cache) {
+			Double cached = getCached(wid1, wid2, cache);
+			if (cached != null)
+				return cached;
+		}
+		// Query outside the lock, a pair requested concurrently may be queried twice.
+		double rel = queryJsonRel(p.first, p.second, url);
+		synchronized (cache) {
+			cache.put(p, rel);
 		}
-		Pair <Integer,Integer> p = new Pair<Integer,Integer>(wid1,wid2);
-		if (!cache.containsKey(p))
-			cache.put(p, queryJsonRel(wid1, wid2, url));
-			
-		return cache.getDouble(p);
+		return rel;
 	}
-	
+
+	/**
+	 * Copy the cached relatedness of all pairs of wids to rel (pair i, j in positions i * n + j and
+	 * j * n + i), taking the lock of the cache once. The relatedness of an entity with itself is 1.
+	 * 
+	 * @return for each pair i &lt; j, in position i * n + j, whether it was not cached.
+	 */
+	private static boolean[] copyCached(int[] wids, double[] rel, Object2DoubleOpenHashMap<Pair<Integer, Integer>> cache) {
+		int n = wids.length;
+		boolean[] missing = new boolean[n * n];
+		synchronized (cache) {
+			for (int i = 0; i < n; i++) {
+				rel[i * n + i] = 1.0;
+				for (int j = i + 1; j < n; j++) {
+					Double cached = wids[i] == wids[j] ? Double.valueOf(1.0) : getCached(wids[i], wids[j], cache);
+					if (cached == null)
+						missing[i * n + j] = true;
+					else
+						rel[i * n + j] = rel[j * n + i] = cached;
+				}
+			}
+		}
+		return missing;
+	}
+
+	/**
+	 * Copy the cached Jaccard and MW relatedness of all pairs of wids to jaccard and mw (pair i, j
+	 * in positions i * n + j and j * n + i), without querying the service.
+	 * 
+	 * @return the positions i * n + j, with i &lt; j, of the pairs whose Jaccard or MW relatedness
+	 *         is not cached.
+	 */
+	static IntArrayList copyCachedRelatedness(int[] wids, double[] jaccard, double[] mw) {
+		boolean[] missingJaccard = copyCached(wids, jaccard, instance.cacheJaccard);
+		boolean[] missingMW = copyCached(wids, mw, instance.cacheMW);
+		IntArrayList missing = new IntArrayList();
+		for (int cell = 0; cell < missingJaccard.length; cell++)
+			if (missingJaccard[cell] || missingMW[cell])
+				missing.add(cell);
+		return missing;
+	}
+
+	/**
+	 * Cache the relatedness of the pair in the order given, as caches persisted before pairs
+	 * were keyed with the lowest id first did. Only meant for testing.
+	 */
+	static void putCachedRelatedness(int wid1, int wid2, double jaccard, double mw) {
+		synchronized (instance.cacheJaccard) {
+			instance.cacheJaccard.put(new Pair<Integer, Integer>(wid1, wid2), jaccard);
+		}
+		synchronized (instance.cacheMW) {
+			instance.cacheMW.put(new Pair<Integer, Integer>(wid1, wid2), mw);
+		}
+	}
+
 	public static double getJaccardRelatedness(int wid1, int wid2) {
 		if (wid1 == wid2) return 1.0;
 		return instance.getGenericRelatedness(wid1, wid2, instance.cacheJaccard, URL_TEMPLATE_JACCARD);
@@ -116,9 +206,16 @@ public class WATRelatednessComputer implements Serializable {
 	}
 
 	public static double getLp(String anchor) {
-		if (!instance.cacheLp.containsKey(anchor))
-			instance.cacheLp.put(anchor, queryJsonLp(anchor));
-		return instance.cacheLp.get(anchor);
+		Object2DoubleOpenHashMap<String> cache = instance.cacheLp;
+		synchronized (cache) {
+			if (cache.containsKey(anchor))
+				return cache.getDouble(anchor);
+		}
+		double lp = queryJsonLp(anchor);
+		synchronized (cache) {
+			cache.put(anchor, lp);
+		}
+		return lp;
 	}
 
 	private static double queryJsonLp(String anchor) {
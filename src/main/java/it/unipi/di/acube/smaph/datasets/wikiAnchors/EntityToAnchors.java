@@ -1,20 +1,12 @@
 package it.unipi.di.acube.smaph.datasets.wikiAnchors;
 
-import it.unimi.dsi.fastutil.ints.Int2IntArrayMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.smaph.SmaphUtils;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Vector;
 
 import org.codehaus.jettison.json.JSONException;
@@ -30,6 +22,12 @@ public class EntityToAnchors {
 	public static final String DEFAULT_INPUT = "./data/anchors.tsv";
 	public static final String DATASET_FILENAME = "./mapdb/e2a.db";
 
+	static final String ENTITY_TO_ANCHOR_IDS = "entityToAnchorIDs";
+	static final String ENTITY_TO_FREQS = "entityToFreqs";
+	static final String ANCHOR_TO_AID = "anchorToAid";
+	static final String AID_TO_ANCHOR = "aidToAnchor";
+	static final String ANCHOR_TO_OCCURRENCES = "anchorToOccurrences";
+
 	private DB db;
 	/**
 	 * entity -> anchor-IDs
@@ -68,95 +66,13 @@ public class EntityToAnchors {
 
 	private EntityToAnchors(DB db) {
 		this.db = db;
-		entityToAnchorIDs = db.hashMap("entityToAnchorIDs", Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen();
-		entityToFreqs = db.hashMap("entityToFreqs", Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen();
-		anchorToAid = db.hashMap("anchorToAid", Serializer.STRING, Serializer.INTEGER).createOrOpen();
-		aidToAnchor = db.hashMap("aidToAnchor", Serializer.INTEGER, Serializer.STRING).createOrOpen();
-		anchorToOccurrences = db.hashMap("anchorToOccurrences", Serializer.INTEGER, Serializer.INTEGER).createOrOpen();
+		entityToAnchorIDs = db.hashMap(ENTITY_TO_ANCHOR_IDS, Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen();
+		entityToFreqs = db.hashMap(ENTITY_TO_FREQS, Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen();
+		anchorToAid = db.hashMap(ANCHOR_TO_AID, Serializer.STRING, Serializer.INTEGER).createOrOpen();
+		aidToAnchor = db.hashMap(AID_TO_ANCHOR, Serializer.INTEGER, Serializer.STRING).createOrOpen();
+		anchorToOccurrences = db.hashMap(ANCHOR_TO_OCCURRENCES, Serializer.INTEGER, Serializer.INTEGER).createOrOpen();
 	}
 
-	private static void createDB(String file) throws FileNotFoundException,
-			IOException {
-		
-		InputStream inputStream = new FileInputStream(file);
-		BufferedReader buffered = new BufferedReader(new InputStreamReader(
-				inputStream, "UTF-8"));
-
-		logger.info("Building database...");
-		EntityToAnchors mdb = new EntityToAnchors(DBMaker.fileDB(DATASET_FILENAME).fileMmapEnable().closeOnJvmShutdown().make());
-
-		long count = 0;
-		long processedMbs = 0;
-		Int2ObjectOpenHashMap<Int2IntArrayMap> entityToAnchorIDToFreqBuffer = new Int2ObjectOpenHashMap<Int2IntArrayMap>();
-		
-		int lastAnchorId = 0;
-		String line = null;
-		while ((line = buffered.readLine()) != null) {
-			count += line.length();
-			if (count > processedMbs * (10 * 1024 * 1024))
-				logger.info(String.format("Read %d MiB.", 10*(processedMbs++)));
-			
-			String[] tokens = line.split("\t");
-			if (tokens.length != 3){
-				buffered.close();
-				throw new RuntimeException("Read line: [" + line + "] should have three tokens.");
-			}
-			
-			String anchor = tokens[0].toLowerCase();
-			int freq = Integer.parseInt(tokens[2]);
-
-			if (!mdb.anchorToAid.containsKey(anchor)){
-				mdb.anchorToAid.put(anchor, lastAnchorId);
-				mdb.aidToAnchor.put(lastAnchorId, anchor);
-				lastAnchorId++;
-			}
-				
-			Integer aId = mdb.anchorToAid.get(anchor);
-			
-			int pageId = Integer.parseInt(tokens[1]);
-
-			Int2IntArrayMap aidToFreqMap = entityToAnchorIDToFreqBuffer.get(pageId);
-			if (aidToFreqMap == null){
-				aidToFreqMap = new Int2IntArrayMap();
-				entityToAnchorIDToFreqBuffer.put(pageId, aidToFreqMap);
-			}
-			if (!aidToFreqMap.containsKey(aId))
-				aidToFreqMap.put(aId.intValue(), freq);
-			else
-				aidToFreqMap.put(aId.intValue(), freq + aidToFreqMap.get(aId)); //increase the occurrence for anchor by freq (this should only happen for anchors with different case, same content.)
-			
-			if (!mdb.anchorToOccurrences.containsKey(aId))
-				mdb.anchorToOccurrences.put(aId, 0);
-			mdb.anchorToOccurrences.put(aId, mdb.anchorToOccurrences.get(aId) + freq);
-		}
-		buffered.close();
-		logger.info(String.format("Finished reading %s (%.1f MBs)", file, count / 1024.0 / 1024.0));
-		
-		logger.info("Copying entity-to-anchor mappings in db...");
-		int c = 0;
-		for ( int id : entityToAnchorIDToFreqBuffer.keySet()){
-			if (++c % 1000000 == 0)
-				logger.info(String.format("Copied %d entity-to-anchor mappings.", c));
-			Int2IntArrayMap anchorToFreq = entityToAnchorIDToFreqBuffer.get(id);
-			int[] anchors = new int[anchorToFreq.size()];
-			int[] frequencies = new int[anchorToFreq.size()];
-			int idx=0;
-			for (Entry<Integer, Integer> p : anchorToFreq.entrySet()){
-				anchors[idx] = p.getKey();
-				frequencies[idx] = p.getValue();
-				idx++;
-			}
-			mdb.entityToAnchorIDs.put(id, anchors);
-			mdb.entityToFreqs.put(id, frequencies);
-		}
-		
-		logger.info("Committing changes...");
-		mdb.db.commit();
-
-		logger.info("Closing db...");
-		mdb.db.close();
-	}
-	
 	public String idToAnchor(int aId){
 		String anchor = aidToAnchor.get(Integer.valueOf(aId));
 		if (anchor == null)
@@ -262,7 +178,7 @@ public class EntityToAnchors {
 
 	public static void main(String[] args) throws Exception{
 		logger.info("Creating E2A database... ");
-		createDB(args.length > 0 ? args[0] : DEFAULT_INPUT);
+		EntityToAnchorsBuilder.main(args);
 		logger.info("Done.");
 	}
 }
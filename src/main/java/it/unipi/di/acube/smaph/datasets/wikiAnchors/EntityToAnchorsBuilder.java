@@ -0,0 +1,522 @@
+package it.unipi.di.acube.smaph.datasets.wikiAnchors;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the entity-to-anchors database with an external sort, producing the same store read by
+ * {@link EntityToAnchors#fromDB(String)}. The anchors file (anchor, page-id, frequency) is parsed
+ * in parallel into runs sorted by anchor that are spilled to disk. The runs are merged to assign
+ * anchor-IDs and sum anchor occurrences, producing a second set of runs sorted by page-id, whose
+ * merge gives the per-entity anchor lists. All writes to the store happen sequentially, in
+ * batches.
+ */
+public class EntityToAnchorsBuilder {
+	private static Logger logger = LoggerFactory.getLogger(EntityToAnchorsBuilder.class.getName());
+
+	/**
+	 * Number of records held in memory for each sorted run.
+	 */
+	public static final int DEFAULT_RUN_SIZE = 2_000_000;
+
+	/**
+	 * Maximum number of runs merged at once. Runs in excess are merged in intermediate passes.
+	 */
+	public static final int MAX_FAN_IN = 128;
+
+	private static final int WRITE_BATCH = 50_000;
+	private static final long LOG_EVERY_BYTES = 100L * 1024 * 1024;
+	private static final int LOG_EVERY_RECORDS = 1_000_000;
+
+	private final File tmpDir;
+	private final int threads;
+	private final int runSize;
+
+	public EntityToAnchorsBuilder(File tmpDir, int threads, int runSize) {
+		if (threads < 1 || runSize < 1)
+			throw new IllegalArgumentException("threads and runSize must be positive.");
+		this.tmpDir = tmpDir;
+		this.threads = threads;
+		this.runSize = runSize;
+	}
+
+	private static class AnchorRecord {
+		final String anchor;
+		final int wid;
+		int freq;
+
+		AnchorRecord(String anchor, int wid, int freq) {
+			this.anchor = anchor;
+			this.wid = wid;
+			this.freq = freq;
+		}
+	}
+
+	private static class EntityRecord {
+		final int wid;
+		final int aid;
+		final int freq;
+
+		EntityRecord(int wid, int aid, int freq) {
+			this.wid = wid;
+			this.aid = aid;
+			this.freq = freq;
+		}
+	}
+
+	private static final Comparator<AnchorRecord> ANCHOR_ORDER = (a, b) -> {
+		int c = a.anchor.compareTo(b.anchor);
+		return c != 0 ? c : Integer.compare(a.wid, b.wid);
+	};
+
+	private static final Comparator<EntityRecord> ENTITY_ORDER = (a, b) -> {
+		int c = Integer.compare(a.wid, b.wid);
+		return c != 0 ? c : Integer.compare(a.aid, b.aid);
+	};
+
+	private interface RecordCodec<T> {
+		void write(DataOutputStream out, T r) throws IOException;
+
+		T read(DataInputStream in) throws IOException;
+	}
+
+	private interface RecordSink<T> {
+		void accept(T r) throws IOException;
+	}
+
+	private static final RecordCodec<AnchorRecord> ANCHOR_CODEC = new RecordCodec<AnchorRecord>() {
+		@Override
+		public void write(DataOutputStream out, AnchorRecord r) throws IOException {
+			byte[] anchor = r.anchor.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(anchor.length);
+			out.write(anchor);
+			out.writeInt(r.wid);
+			out.writeInt(r.freq);
+		}
+
+		@Override
+		public AnchorRecord read(DataInputStream in) throws IOException {
+			byte[] anchor = new byte[in.readInt()];
+			in.readFully(anchor);
+			return new AnchorRecord(new String(anchor, StandardCharsets.UTF_8), in.readInt(), in.readInt());
+		}
+	};
+
+	private static final RecordCodec<EntityRecord> ENTITY_CODEC = new RecordCodec<EntityRecord>() {
+		@Override
+		public void write(DataOutputStream out, EntityRecord r) throws IOException {
+			out.writeInt(r.wid);
+			out.writeInt(r.aid);
+			out.writeInt(r.freq);
+		}
+
+		@Override
+		public EntityRecord read(DataInputStream in) throws IOException {
+			return new EntityRecord(in.readInt(), in.readInt(), in.readInt());
+		}
+	};
+
+	/**
+	 * A sorted run spilled to disk.
+	 */
+	private static class Run {
+		final File file;
+		final long records;
+
+		Run(File file, long records) {
+			this.file = file;
+			this.records = records;
+		}
+	}
+
+	private static class RunReader<T> implements AutoCloseable {
+		private final DataInputStream in;
+		private final RecordCodec<T> codec;
+		private long left;
+		T head;
+
+		RunReader(Run run, RecordCodec<T> codec) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file), 1 << 16));
+			this.codec = codec;
+			this.left = run.records;
+			advance();
+		}
+
+		boolean advance() throws IOException {
+			head = left-- > 0 ? codec.read(in) : null;
+			return head != null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private <T> Run spill(T[] records, int size, RecordCodec<T> codec) throws IOException {
+		File f = File.createTempFile("e2a-run-", ".bin", tmpDir);
+		f.deleteOnExit();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+			for (int i = 0; i < size; i++)
+				codec.write(out, records[i]);
+		}
+		return new Run(f, size);
+	}
+
+	/**
+	 * Merge the sorted runs, feeding the records to the sink in order. Runs are deleted once
+	 * merged.
+	 */
+	private <T> void merge(List<Run> runs, RecordCodec<T> codec, Comparator<T> order, RecordSink<T> sink)
+	        throws IOException {
+		while (runs.size() > MAX_FAN_IN) {
+			logger.info(String.format("Intermediate merge of %d runs.", runs.size()));
+			List<Run> merged = new Vector<>();
+			for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+				List<Run> group = runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN));
+				File f = File.createTempFile("e2a-run-", ".bin", tmpDir);
+				f.deleteOnExit();
+				long[] count = new long[1];
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16))) {
+					mergeGroup(group, codec, order, r -> {
+						codec.write(out, r);
+						count[0]++;
+					});
+				}
+				merged.add(new Run(f, count[0]));
+			}
+			runs = merged;
+		}
+		mergeGroup(runs, codec, order, sink);
+	}
+
+	private <T> void mergeGroup(List<Run> runs, RecordCodec<T> codec, Comparator<T> order, RecordSink<T> sink)
+	        throws IOException {
+		PriorityQueue<RunReader<T>> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+		        (r1, r2) -> order.compare(r1.head, r2.head));
+		List<RunReader<T>> readers = new Vector<>();
+		try {
+			for (Run run : runs) {
+				RunReader<T> reader = new RunReader<>(run, codec);
+				readers.add(reader);
+				if (reader.head != null)
+					heads.add(reader);
+			}
+			while (!heads.isEmpty()) {
+				RunReader<T> reader = heads.poll();
+				sink.accept(reader.head);
+				if (reader.advance())
+					heads.add(reader);
+			}
+		} finally {
+			for (RunReader<T> reader : readers)
+				reader.close();
+			for (Run run : runs)
+				run.file.delete();
+		}
+	}
+
+	/**
+	 * Parse a batch of lines, sort it, collapse records with the same anchor and page-id, and
+	 * spill it to disk.
+	 */
+	private Run parseAndSpill(List<String> lines) throws IOException {
+		AnchorRecord[] records = new AnchorRecord[lines.size()];
+		for (int i = 0; i < records.length; i++) {
+			String line = lines.get(i);
+			String[] tokens = line.split("\t");
+			if (tokens.length != 3)
+				throw new RuntimeException("Read line: [" + line + "] should have three tokens.");
+			records[i] = new AnchorRecord(tokens[0].toLowerCase(), Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+		}
+		Arrays.sort(records, ANCHOR_ORDER);
+		int size = 0;
+		for (AnchorRecord r : records)
+			if (size > 0 && ANCHOR_ORDER.compare(records[size - 1], r) == 0)
+				records[size - 1].freq += r.freq;
+			else
+				records[size++] = r;
+		return spill(records, size, ANCHOR_CODEC);
+	}
+
+	private List<Run> buildAnchorRuns(String input) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Semaphore inFlight = new Semaphore(threads + 1);
+		List<Future<Run>> futures = new Vector<>();
+		long readBytes = 0;
+		long nextLog = LOG_EVERY_BYTES;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8))) {
+			List<String> batch = new ArrayList<>(runSize);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				readBytes += line.length() + 1;
+				if (readBytes >= nextLog) {
+					logger.info(String.format("Read %d MiB, %d runs spilled.", readBytes / 1024 / 1024, futures.size()));
+					nextLog += LOG_EVERY_BYTES;
+				}
+				batch.add(line);
+				if (batch.size() == runSize) {
+					futures.add(submitBatch(pool, inFlight, batch));
+					batch = new ArrayList<>(runSize);
+				}
+			}
+			if (!batch.isEmpty())
+				futures.add(submitBatch(pool, inFlight, batch));
+
+			List<Run> runs = new Vector<>();
+			for (Future<Run> f : futures)
+				runs.add(f.get());
+			logger.info(String.format("Finished reading %s (%.1f MiB) into %d runs.", input, readBytes / 1024.0 / 1024.0, runs.size()));
+			return runs;
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Future<Run> submitBatch(ExecutorService pool, Semaphore inFlight, List<String> batch) throws InterruptedException {
+		inFlight.acquire();
+		return pool.submit(() -> {
+			try {
+				return parseAndSpill(batch);
+			} finally {
+				inFlight.release();
+			}
+		});
+	}
+
+	/**
+	 * Consumes anchor records sorted by anchor: assigns anchor-IDs in anchor order, writes the
+	 * anchor maps, and spills (page-id, anchor-ID, frequency) runs sorted by page-id.
+	 */
+	private class AnchorSink implements RecordSink<AnchorRecord> {
+		private final HTreeMap<String, Integer> anchorToAid;
+		private final HTreeMap<Integer, String> aidToAnchor;
+		private final HTreeMap<Integer, Integer> anchorToOccurrences;
+		private final HashMap<String, Integer> anchorToAidBatch = new HashMap<>();
+		private final HashMap<Integer, String> aidToAnchorBatch = new HashMap<>();
+		private final HashMap<Integer, Integer> occurrencesBatch = new HashMap<>();
+		private final EntityRecord[] buffer = new EntityRecord[runSize];
+		private int buffered = 0;
+		final List<Run> entityRuns = new Vector<>();
+
+		private String anchor = null;
+		private int aid = -1;
+		private int occurrences = 0;
+		private int wid;
+		private int freq;
+
+		AnchorSink(HTreeMap<String, Integer> anchorToAid, HTreeMap<Integer, String> aidToAnchor,
+		        HTreeMap<Integer, Integer> anchorToOccurrences) {
+			this.anchorToAid = anchorToAid;
+			this.aidToAnchor = aidToAnchor;
+			this.anchorToOccurrences = anchorToOccurrences;
+		}
+
+		@Override
+		public void accept(AnchorRecord r) throws IOException {
+			if (anchor != null && anchor.equals(r.anchor) && wid == r.wid) {
+				freq += r.freq;
+				occurrences += r.freq;
+				return;
+			}
+			if (anchor != null)
+				emitEntity();
+			if (anchor == null || !anchor.equals(r.anchor)) {
+				if (anchor != null)
+					emitAnchor();
+				anchor = r.anchor;
+				aid++;
+				occurrences = 0;
+			}
+			wid = r.wid;
+			freq = r.freq;
+			occurrences += r.freq;
+		}
+
+		private void emitEntity() throws IOException {
+			buffer[buffered++] = new EntityRecord(wid, aid, freq);
+			if (buffered == buffer.length)
+				spillEntities();
+		}
+
+		private void emitAnchor() {
+			anchorToAidBatch.put(anchor, aid);
+			aidToAnchorBatch.put(aid, anchor);
+			occurrencesBatch.put(aid, occurrences);
+			if (anchorToAidBatch.size() == WRITE_BATCH)
+				flushAnchors();
+			if ((aid + 1) % LOG_EVERY_RECORDS == 0)
+				logger.info(String.format("Written %d anchors.", aid + 1));
+		}
+
+		private void flushAnchors() {
+			anchorToAid.putAll(anchorToAidBatch);
+			aidToAnchor.putAll(aidToAnchorBatch);
+			anchorToOccurrences.putAll(occurrencesBatch);
+			anchorToAidBatch.clear();
+			aidToAnchorBatch.clear();
+			occurrencesBatch.clear();
+		}
+
+		private void spillEntities() throws IOException {
+			Arrays.parallelSort(buffer, 0, buffered, ENTITY_ORDER);
+			entityRuns.add(spill(buffer, buffered, ENTITY_CODEC));
+			Arrays.fill(buffer, 0, buffered, null);
+			buffered = 0;
+		}
+
+		void finish() throws IOException {
+			if (anchor != null) {
+				emitEntity();
+				emitAnchor();
+			}
+			flushAnchors();
+			if (buffered > 0)
+				spillEntities();
+			logger.info(String.format("Written %d anchors, %d entity runs spilled.", aid + 1, entityRuns.size()));
+		}
+	}
+
+	/**
+	 * Consumes (page-id, anchor-ID, frequency) records sorted by page-id and writes the entity
+	 * maps.
+	 */
+	private static class EntitySink implements RecordSink<EntityRecord> {
+		private final HTreeMap<Integer, int[]> entityToAnchorIDs;
+		private final HTreeMap<Integer, int[]> entityToFreqs;
+		private final HashMap<Integer, int[]> anchorsBatch = new HashMap<>();
+		private final HashMap<Integer, int[]> freqsBatch = new HashMap<>();
+		private final IntArrayList anchors = new IntArrayList();
+		private final IntArrayList freqs = new IntArrayList();
+		private int wid;
+		private long entities = 0;
+
+		EntitySink(HTreeMap<Integer, int[]> entityToAnchorIDs, HTreeMap<Integer, int[]> entityToFreqs) {
+			this.entityToAnchorIDs = entityToAnchorIDs;
+			this.entityToFreqs = entityToFreqs;
+		}
+
+		@Override
+		public void accept(EntityRecord r) {
+			if (!anchors.isEmpty() && r.wid != wid)
+				emitEntity();
+			wid = r.wid;
+			anchors.add(r.aid);
+			freqs.add(r.freq);
+		}
+
+		private void emitEntity() {
+			anchorsBatch.put(wid, anchors.toIntArray());
+			freqsBatch.put(wid, freqs.toIntArray());
+			anchors.clear();
+			freqs.clear();
+			if (anchorsBatch.size() == WRITE_BATCH)
+				flush();
+			if (++entities % LOG_EVERY_RECORDS == 0)
+				logger.info(String.format("Written %d entity-to-anchor mappings.", entities));
+		}
+
+		private void flush() {
+			entityToAnchorIDs.putAll(anchorsBatch);
+			entityToFreqs.putAll(freqsBatch);
+			anchorsBatch.clear();
+			freqsBatch.clear();
+		}
+
+		void finish() {
+			if (!anchors.isEmpty())
+				emitEntity();
+			flush();
+			logger.info(String.format("Written %d entity-to-anchor mappings.", entities));
+		}
+	}
+
+	public void build(String input, String output) throws IOException {
+		long start = System.currentTimeMillis();
+		logger.info(String.format("Building %s from %s with %d threads, %d records per run.", output, input, threads, runSize));
+
+		List<Run> anchorRuns = buildAnchorRuns(input);
+		logMemory("Parsing");
+
+		DB db = DBMaker.fileDB(output).fileMmapEnable().fileMmapPreclearDisable().closeOnJvmShutdown().make();
+		try {
+			AnchorSink anchorSink = new AnchorSink(
+			        db.hashMap(EntityToAnchors.ANCHOR_TO_AID, Serializer.STRING, Serializer.INTEGER).createOrOpen(),
+			        db.hashMap(EntityToAnchors.AID_TO_ANCHOR, Serializer.INTEGER, Serializer.STRING).createOrOpen(),
+			        db.hashMap(EntityToAnchors.ANCHOR_TO_OCCURRENCES, Serializer.INTEGER, Serializer.INTEGER).createOrOpen());
+			merge(anchorRuns, ANCHOR_CODEC, ANCHOR_ORDER, anchorSink);
+			anchorSink.finish();
+			logMemory("Anchor merge");
+
+			EntitySink entitySink = new EntitySink(
+			        db.hashMap(EntityToAnchors.ENTITY_TO_ANCHOR_IDS, Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen(),
+			        db.hashMap(EntityToAnchors.ENTITY_TO_FREQS, Serializer.INTEGER, Serializer.INT_ARRAY).createOrOpen());
+			merge(anchorSink.entityRuns, ENTITY_CODEC, ENTITY_ORDER, entitySink);
+			entitySink.finish();
+			logMemory("Entity merge");
+
+			logger.info("Committing changes...");
+			db.commit();
+		} finally {
+			logger.info("Closing db...");
+			db.close();
+		}
+		logger.info(String.format("Built %s in %.1f minutes.", output, (System.currentTimeMillis() - start) / 60000.0));
+	}
+
+	private static void logMemory(String phase) {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		logger.info(String.format("%s done. Peak heap usage (sum of pool peaks): %.1f MiB.", phase, peak / 1024.0 / 1024.0));
+	}
+
+	/**
+	 * @param args
+	 *            [input TSV] [output db] [threads] [records per run] [temporary directory]
+	 */
+	public static void main(String[] args) throws Exception {
+		String input = args.length > 0 ? args[0] : EntityToAnchors.DEFAULT_INPUT;
+		String output = args.length > 1 ? args[1] : EntityToAnchors.DATASET_FILENAME;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int runSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUN_SIZE;
+		File tmpDir = new File(args.length > 4 ? args[4] : System.getProperty("java.io.tmpdir"));
+		new EntityToAnchorsBuilder(tmpDir, threads, runSize).build(input, output);
+	}
+}
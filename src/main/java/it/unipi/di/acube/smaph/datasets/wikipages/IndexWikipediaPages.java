@@ -0,0 +1,207 @@
+package it.unipi.di.acube.smaph.datasets.wikipages;
+
+import it.cnr.isti.hpc.log.ProgressLogger;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the index read by {@link MappedWikipediaInterface} from the files written by
+ * data/collapse_wid_title_redirect_anchors.py: titles_wid.tsv (title, page ID) and
+ * redirect_wid.tsv (redirect title, redirect page ID, de-referenced page ID).
+ */
+public class IndexWikipediaPages {
+	private static final Logger logger = LoggerFactory.getLogger(IndexWikipediaPages.class);
+	private static final int KEYS_PER_BUCKET = 4;
+	private static final int MAX_SEED = 1 << 28;
+
+	private static String usage = "java -cp $jar it.unipi.di.acube.smaph.datasets.wikipages.IndexWikipediaPages titles_wid.tsv redirect_wid.tsv wikipedia_pages.idx";
+
+	private final List<String> titles = new Vector<>();
+	private final IntArrayList titleWids = new IntArrayList();
+	private final Object2IntOpenHashMap<String> seenTitles = new Object2IntOpenHashMap<>();
+	private final Int2IntOpenHashMap widToTarget = new Int2IntOpenHashMap();
+	private final Int2IntOpenHashMap widToTitle = new Int2IntOpenHashMap();
+
+	private void add(String title, int wid, int target) {
+		title = MappedWikipediaInterface.normalizeTitle(title);
+		if (seenTitles.containsKey(title)) {
+			logger.warn("Skipping duplicate title {} (page ID {})", title, wid);
+			return;
+		}
+		if (widToTarget.containsKey(wid)) {
+			logger.warn("Skipping duplicate page ID {} (title {})", wid, title);
+			return;
+		}
+		seenTitles.put(title, titles.size());
+		widToTitle.put(wid, titles.size());
+		widToTarget.put(wid, target);
+		titles.add(title);
+		titleWids.add(wid);
+	}
+
+	private void read(String file, boolean redirects) throws IOException {
+		ProgressLogger pl = new ProgressLogger("read {} " + (redirects ? "redirects" : "titles"), 1000000);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split("\t");
+				if (tokens.length != (redirects ? 3 : 2))
+					throw new RuntimeException("Read line: [" + line + "] has a wrong number of tokens.");
+				int wid = Integer.parseInt(tokens[1]);
+				add(tokens[0], wid, redirects ? Integer.parseInt(tokens[2]) : wid);
+				pl.up();
+			}
+		}
+	}
+
+	/**
+	 * Find a seed for each bucket so that all titles land in distinct slots. Buckets are placed
+	 * from the largest to the smallest.
+	 *
+	 * @return the slot of each title.
+	 */
+	private static int[] buildPerfectHash(long[] hashes, int buckets, int[] seeds) {
+		int n = hashes.length;
+		int[] bucketStart = new int[buckets + 1];
+		for (long h : hashes)
+			bucketStart[MappedWikipediaInterface.bucket(h, buckets) + 1]++;
+		int maxBucketSize = 0;
+		for (int b = 0; b < buckets; b++) {
+			maxBucketSize = Math.max(maxBucketSize, bucketStart[b + 1]);
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		int[] bucketKeys = new int[n];
+		int[] fill = Arrays.copyOf(bucketStart, buckets);
+		for (int i = 0; i < n; i++)
+			bucketKeys[fill[MappedWikipediaInterface.bucket(hashes[i], buckets)]++] = i;
+
+		// buckets sorted by decreasing size (counting sort)
+		int[] sizeStart = new int[maxBucketSize + 2];
+		for (int b = 0; b < buckets; b++)
+			sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+		for (int s = 0; s <= maxBucketSize; s++)
+			sizeStart[s + 1] += sizeStart[s];
+		int[] order = new int[buckets];
+		for (int b = 0; b < buckets; b++)
+			order[sizeStart[maxBucketSize - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+
+		int[] slots = new int[n];
+		int[] tentative = new int[maxBucketSize];
+		BitSet taken = new BitSet(n);
+		int placed = 0;
+		for (int b : order) {
+			int from = bucketStart[b], size = bucketStart[b + 1] - from;
+			if (size == 0)
+				break;
+			int seed = 0;
+			search: for (;; seed++) {
+				if (seed == MAX_SEED)
+					throw new RuntimeException("Could not place bucket " + b + " (colliding title hashes?)");
+				for (int j = 0; j < size; j++) {
+					int slot = MappedWikipediaInterface.slot(hashes[bucketKeys[from + j]], seed, n);
+					if (taken.get(slot))
+						continue search;
+					for (int k = 0; k < j; k++)
+						if (tentative[k] == slot)
+							continue search;
+					tentative[j] = slot;
+				}
+				break;
+			}
+			seeds[b] = seed;
+			for (int j = 0; j < size; j++) {
+				taken.set(tentative[j]);
+				slots[bucketKeys[from + j]] = tentative[j];
+			}
+			if ((placed += size) % 1000000 < size)
+				logger.info("Placed {} titles.", placed);
+		}
+		return slots;
+	}
+
+	private void write(String output) throws IOException {
+		int n = titles.size();
+		int buckets = Math.max(1, (n + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET);
+		byte[][] keys = new byte[n][];
+		long[] hashes = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = titles.get(i).getBytes(StandardCharsets.UTF_8);
+			if (keys[i].length > 0xFFFF)
+				throw new RuntimeException("Title too long: " + titles.get(i));
+			hashes[i] = MappedWikipediaInterface.hash(keys[i]);
+		}
+		logger.info("Building perfect hash of {} titles in {} buckets.", n, buckets);
+		int[] seeds = new int[buckets];
+		int[] slots = buildPerfectHash(hashes, buckets, seeds);
+
+		int[] slotToTitle = new int[n];
+		for (int i = 0; i < n; i++)
+			slotToTitle[slots[i]] = i;
+		int[] titleOffsets = new int[n];
+		long poolSize = 0;
+		for (int s = 0; s < n; s++) {
+			titleOffsets[s] = (int) poolSize;
+			poolSize += 2 + keys[slotToTitle[s]].length;
+			if (poolSize > Integer.MAX_VALUE)
+				throw new RuntimeException("Title pool exceeds 2GB.");
+		}
+
+		int[] wids = widToTarget.keySet().toIntArray();
+		Arrays.sort(wids);
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output), 1 << 16))) {
+			out.writeInt(MappedWikipediaInterface.MAGIC);
+			out.writeInt(MappedWikipediaInterface.VERSION);
+			out.writeInt(n);
+			out.writeInt(buckets);
+			out.writeInt(wids.length);
+			out.writeInt((int) poolSize);
+			for (int seed : seeds)
+				out.writeInt(seed);
+			for (int s = 0; s < n; s++)
+				out.writeInt(titleOffsets[s]);
+			for (int s = 0; s < n; s++)
+				out.writeInt(titleWids.getInt(slotToTitle[s]));
+			for (int wid : wids)
+				out.writeInt(wid);
+			for (int wid : wids)
+				out.writeInt(slots[widToTitle.get(wid)]);
+			for (int wid : wids)
+				out.writeInt(widToTarget.get(wid));
+			for (int s = 0; s < n; s++) {
+				byte[] key = keys[slotToTitle[s]];
+				out.writeShort(key.length);
+				out.write(key);
+			}
+		}
+		logger.info("Index of {} titles and {} page IDs written to {}", n, wids.length, output);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			logger.error(usage);
+			System.exit(1);
+		}
+		IndexWikipediaPages builder = new IndexWikipediaPages();
+		builder.read(args[0], false);
+		builder.read(args[1], true);
+		builder.write(args[2]);
+	}
+}
@@ -0,0 +1,209 @@
+package it.unipi.di.acube.smaph.datasets.wikipages;
+
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * A {@link WikipediaInterface} backed by an immutable, memory-mapped index built offline by
+ * {@link IndexWikipediaPages}. Titles (of both pages and redirects) are resolved through a
+ * minimal perfect hash: each title hashes to a bucket, whose seed places it in a distinct slot of
+ * the title table, and the title stored in the slot is compared with the looked-up one. Page IDs
+ * are stored sorted and resolved by binary search to their title and their de-referenced page
+ * ID. Nothing is fetched remotely, so prefetching is a no-op.
+ *
+ * File layout: magic, version, number of titles n, number of buckets b, number of page IDs w,
+ * pool size, int[b] bucket seeds, int[n] title offsets in the pool, int[n] page ID of each title,
+ * int[w] sorted page IDs, int[w] title slot of each page ID, int[w] de-referenced page ID of each
+ * page ID, pool of length-prefixed UTF-8 titles.
+ */
+public class MappedWikipediaInterface extends WikipediaInterface {
+	static final int MAGIC = 0x57504958; // "WPIX"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 24;
+
+	private final int titles;
+	private final int buckets;
+	private final int wids;
+	private final IntBuffer seeds;
+	private final IntBuffer titleOffsets;
+	private final IntBuffer titleWids;
+	private final IntBuffer sortedWids;
+	private final IntBuffer widTitleSlots;
+	private final IntBuffer widTargets;
+	private final ByteBuffer pool;
+
+	public static MappedWikipediaInterface open(String file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+			return new MappedWikipediaInterface(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private MappedWikipediaInterface(ByteBuffer buf) {
+		if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Not a Wikipedia pages index (or unsupported version).");
+		titles = buf.getInt(8);
+		buckets = buf.getInt(12);
+		wids = buf.getInt(16);
+		int poolSize = buf.getInt(20);
+		int pos = HEADER_BYTES;
+		seeds = slice(buf, pos, buckets * 4).asIntBuffer();
+		pos += buckets * 4;
+		titleOffsets = slice(buf, pos, titles * 4).asIntBuffer();
+		pos += titles * 4;
+		titleWids = slice(buf, pos, titles * 4).asIntBuffer();
+		pos += titles * 4;
+		sortedWids = slice(buf, pos, wids * 4).asIntBuffer();
+		pos += wids * 4;
+		widTitleSlots = slice(buf, pos, wids * 4).asIntBuffer();
+		pos += wids * 4;
+		widTargets = slice(buf, pos, wids * 4).asIntBuffer();
+		pos += wids * 4;
+		pool = slice(buf, pos, poolSize);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buf, int pos, int len) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position(pos);
+		dup.limit(pos + len);
+		return dup.slice();
+	}
+
+	/**
+	 * Normalize a Wikipedia title the way the index (and data/collapse_wid_title_redirect_anchors.py)
+	 * does: runs of underscores become a single space and the first character is upper-cased.
+	 */
+	public static String normalizeTitle(String title) {
+		if (title.isEmpty())
+			return title;
+		StringBuilder sb = null;
+		for (int i = 0; i < title.length(); i++) {
+			char c = title.charAt(i);
+			if (c == '_') {
+				if (sb == null)
+					sb = new StringBuilder(title.length()).append(title, 0, i);
+				if (i == 0 || title.charAt(i - 1) != '_')
+					sb.append(' ');
+			} else if (sb != null)
+				sb.append(c);
+		}
+		String res = sb == null ? title : sb.toString();
+		char first = res.charAt(0);
+		char upper = Character.toUpperCase(first);
+		return upper == first ? res : upper + res.substring(1);
+	}
+
+	static long hash(byte[] key) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : key)
+			h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+		return mix(h);
+	}
+
+	static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	static int bucket(long hash, int buckets) {
+		return (int) Long.remainderUnsigned(hash, buckets);
+	}
+
+	static int slot(long hash, int seed, int titles) {
+		return (int) Long.remainderUnsigned(mix(hash ^ ((seed + 1) * 0x9E3779B97F4A7C15L)), titles);
+	}
+
+	private boolean titleEquals(int slot, byte[] key) {
+		int offset = titleOffsets.get(slot);
+		int len = pool.getShort(offset) & 0xFFFF;
+		if (len != key.length)
+			return false;
+		for (int i = 0; i < len; i++)
+			if (pool.get(offset + 2 + i) != key[i])
+				return false;
+		return true;
+	}
+
+	private String titleAt(int slot) {
+		int offset = titleOffsets.get(slot);
+		byte[] bytes = new byte[pool.getShort(offset) & 0xFFFF];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = pool.get(offset + 2 + i);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private int widIndex(int wid) {
+		int lo = 0, hi = wids - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = sortedWids.get(mid);
+			if (v < wid)
+				lo = mid + 1;
+			else if (v > wid)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	@Override
+	public String getTitlebyId(int wid) {
+		int i = widIndex(wid);
+		return i < 0 ? null : titleAt(widTitleSlots.get(i));
+	}
+
+	/**
+	 * @return the page ID of the page or redirect with the given title (not de-referenced), or -1
+	 *         if the title does not exist.
+	 */
+	@Override
+	public int getIdByTitle(String title) {
+		if (title == null || title.isEmpty() || titles == 0)
+			return -1;
+		byte[] key = normalizeTitle(title).getBytes(StandardCharsets.UTF_8);
+		long h = hash(key);
+		int slot = slot(h, seeds.get(bucket(h, buckets)), titles);
+		return titleEquals(slot, key) ? titleWids.get(slot) : -1;
+	}
+
+	/**
+	 * @return the page ID the given page redirects to, the page ID itself if it is not a
+	 *         redirect, or -1 if it is unknown.
+	 */
+	@Override
+	public int dereference(int wid) {
+		int i = widIndex(wid);
+		return i < 0 ? -1 : widTargets.get(i);
+	}
+
+	@Override
+	public boolean isRedirect(int wid) {
+		int i = widIndex(wid);
+		return i >= 0 && widTargets.get(i) != wid;
+	}
+
+	@Override
+	public void prefetchTitles(List<String> titlesToPrefetch) {
+	}
+
+	@Override
+	public void prefetchWids(List<Integer> widsToPrefetch) {
+	}
+
+	@Override
+	public void flush() {
+	}
+}
@@ -0,0 +1,72 @@
+package it.unipi.di.acube.smaph.datasets.wikitofreebase;
+
+import it.cnr.isti.hpc.log.ProgressLogger;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the page-ID to Freebase index read by {@link WidToFreebase}. Mids and page IDs are read
+ * from the triplets file (mid, page ID, title) produced by data/generate_wiki_to_freeb.py, labels
+ * are taken from the title-keyed store built by {@link IndexWikipediaFreebase}.
+ */
+public class IndexWidToFreebase {
+	private static final Logger logger = LoggerFactory.getLogger(IndexWidToFreebase.class);
+
+	private static String usage = "java -cp $jar it.unipi.di.acube.smaph.datasets.wikitofreebase.IndexWidToFreebase triplets freebase.db freebase_wid.idx";
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			logger.error(usage);
+			System.exit(1);
+		}
+
+		Int2LongOpenHashMap widToMid = new Int2LongOpenHashMap();
+		ProgressLogger pl = new ProgressLogger("read {} triplets", 1000000);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split("\t");
+				if (tokens.length < 2)
+					throw new RuntimeException("Read line: [" + line + "] should have at least two tokens.");
+				long mid = WidToFreebase.encodeMid(tokens[0]);
+				int wid = Integer.parseInt(tokens[1]);
+				if (mid < 0)
+					logger.warn("Skipping mid that cannot be packed: {}", tokens[0]);
+				else if (widToMid.containsKey(wid))
+					logger.warn("Skipping duplicate page ID {} (mid {})", wid, tokens[0]);
+				else
+					widToMid.put(wid, mid);
+				pl.up();
+			}
+		}
+
+		int[] wids = widToMid.keySet().toIntArray();
+		Arrays.sort(wids);
+		long[] mids = new long[wids.length];
+		String[] labels = new String[wids.length];
+
+		DB db = DBMaker.fileDB(args[1]).fileMmapEnable().readOnly().closeOnJvmShutdown().make();
+		Map<String, String> midToLabel = db.hashMap("label", Serializer.STRING, Serializer.STRING).createOrOpen();
+		for (int i = 0; i < wids.length; i++) {
+			mids[i] = widToMid.get(wids[i]);
+			labels[i] = midToLabel.get(WidToFreebase.decodeMid(mids[i]));
+		}
+		db.close();
+
+		WidToFreebase.write(args[2], wids, mids, labels);
+		logger.info("{} page IDs indexed, index in {}", wids.length, args[2]);
+	}
+}
@@ -0,0 +1,109 @@
+package it.unipi.di.acube.smaph.datasets.wikitofreebase;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only, memory-mapped bitset over Wikipedia page IDs, telling whether an entity is a named
+ * entity (i.e. has a Freebase mapping). This is what {@link WikipediaToFreebase#hasEntity(int,
+ * it.unipi.di.acube.batframework.utils.WikipediaInterface)} computes, without resolving titles.
+ *
+ * File layout: magic, version, number of bits, long words.
+ */
+public class NamedEntityBitset {
+	private static final Logger logger = LoggerFactory.getLogger(NamedEntityBitset.class);
+	private static final int MAGIC = 0x4E454253; // "NEBS"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 12;
+
+	private final int bits;
+	private final LongBuffer words;
+
+	private static String usage = "java -cp $jar it.unipi.di.acube.smaph.datasets.wikitofreebase.NamedEntityBitset "
+	        + "(freebase_wid.idx | titles_wid.tsv freebase.db) named_entities.bits";
+
+	public static NamedEntityBitset open(String file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+			return new NamedEntityBitset(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private NamedEntityBitset(ByteBuffer buf) {
+		if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Not a named-entity bitset (or unsupported version).");
+		bits = buf.getInt(8);
+		ByteBuffer dup = buf.duplicate();
+		dup.position(HEADER_BYTES);
+		words = dup.slice().asLongBuffer();
+	}
+
+	public boolean contains(int wid) {
+		return wid >= 0 && wid < bits && (words.get(wid >>> 6) & (1L << wid)) != 0;
+	}
+
+	/**
+	 * Write a bitset file with the given page IDs set.
+	 */
+	public static void write(String file, int[] wids) throws IOException {
+		int bits = 0;
+		for (int wid : wids) {
+			if (wid < 0)
+				throw new IllegalArgumentException("Negative page ID " + wid);
+			bits = Math.max(bits, wid + 1);
+		}
+		long[] words = new long[(bits + 63) >>> 6];
+		for (int wid : wids)
+			words[wid >>> 6] |= 1L << wid;
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(bits);
+			for (long w : words)
+				out.writeLong(w);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		IntArrayList wids = new IntArrayList();
+		if (args.length == 2) {
+			WidToFreebase index = WidToFreebase.open(args[0]);
+			for (int i = 0; i < index.size(); i++)
+				wids.add(index.widAt(i));
+		} else if (args.length == 3) {
+			WikipediaToFreebase w2f = WikipediaToFreebase.open(args[1]);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] tokens = line.split("\t");
+					if (tokens.length != 2)
+						throw new RuntimeException("Read line: [" + line + "] should have two tokens.");
+					if (w2f.hasEntity(tokens[0]))
+						wids.add(Integer.parseInt(tokens[1]));
+				}
+			}
+		} else {
+			logger.error(usage);
+			System.exit(1);
+		}
+		String output = args[args.length - 1];
+		write(output, wids.toIntArray());
+		logger.info("{} named entities written to {}", wids.size(), output);
+	}
+}
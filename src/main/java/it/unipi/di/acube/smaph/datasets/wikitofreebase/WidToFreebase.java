@@ -0,0 +1,228 @@
+package it.unipi.di.acube.smaph.datasets.wikitofreebase;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Read-only, memory-mapped mapping from Wikipedia page IDs to Freebase mids and labels.
+ * Page IDs are stored sorted and looked up by binary search. Mids are packed into a long each
+ * (see {@link #encodeMid(String)}), labels are stored once in a shared pool of length-prefixed
+ * UTF-8 strings. The file is built by {@link IndexWidToFreebase}.
+ *
+ * File layout: magic, version, n, int[n] sorted page IDs, long[n] packed mids, int[n] label
+ * offsets in the pool (-1 for no label), pool size, pool bytes.
+ */
+public class WidToFreebase {
+	private static final int MAGIC = 0x57324642; // "W2FB"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 12;
+	private static final String MID_PREFIX = "/m/";
+	private static final int MID_MAX_CHARS = 10;
+
+	private final int size;
+	private final IntBuffer wids;
+	private final LongBuffer mids;
+	private final IntBuffer labelOffsets;
+	private final ByteBuffer pool;
+
+	public static WidToFreebase open(String file) {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel ch = raf.getChannel()) {
+			MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			return new WidToFreebase(buf);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private WidToFreebase(ByteBuffer buf) {
+		if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Not a page-ID to Freebase index (or unsupported version).");
+		size = buf.getInt(8);
+		int pos = HEADER_BYTES;
+		wids = slice(buf, pos, size * 4).asIntBuffer();
+		pos += size * 4;
+		mids = slice(buf, pos, size * 8).asLongBuffer();
+		pos += size * 8;
+		labelOffsets = slice(buf, pos, size * 4).asIntBuffer();
+		pos += size * 4;
+		int poolSize = buf.getInt(pos);
+		pos += 4;
+		pool = slice(buf, pos, poolSize);
+	}
+
+	private static ByteBuffer slice(ByteBuffer buf, int pos, int len) {
+		ByteBuffer dup = buf.duplicate();
+		dup.position(pos);
+		dup.limit(pos + len);
+		return dup.slice();
+	}
+
+	private int indexOf(int wid) {
+		int lo = 0, hi = size - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int v = wids.get(mid);
+			if (v < wid)
+				lo = mid + 1;
+			else if (v > wid)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	public boolean hasEntity(int wid) {
+		return indexOf(wid) >= 0;
+	}
+
+	public String getFreebaseId(int wid) {
+		int i = indexOf(wid);
+		return i < 0 ? null : decodeMid(mids.get(i));
+	}
+
+	public String getLabel(int wid) {
+		int i = indexOf(wid);
+		if (i < 0)
+			return null;
+		int offset = labelOffsets.get(i);
+		if (offset < 0)
+			return null;
+		int len = pool.getShort(offset) & 0xFFFF;
+		byte[] bytes = new byte[len];
+		for (int j = 0; j < len; j++)
+			bytes[j] = pool.get(offset + 2 + j);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the number of page IDs in the index.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the i-th page ID in the index, in increasing order.
+	 */
+	public int widAt(int i) {
+		return wids.get(i);
+	}
+
+	private static int midCharCode(char c) {
+		if (c >= '0' && c <= '9')
+			return 1 + c - '0';
+		if (c >= 'a' && c <= 'z')
+			return 11 + c - 'a';
+		if (c == '_')
+			return 37;
+		return -1;
+	}
+
+	private static char midCodeChar(int code) {
+		if (code <= 10)
+			return (char) ('0' + code - 1);
+		if (code <= 36)
+			return (char) ('a' + code - 11);
+		return '_';
+	}
+
+	/**
+	 * Pack a Freebase mid into a long. The mid can be given as /m/0abc, m/0abc or m.0abc. The
+	 * part after the prefix is stored with 6 bits per character, up to 10 characters.
+	 *
+	 * @return the packed mid, or -1 if the mid cannot be packed.
+	 */
+	public static long encodeMid(String mid) {
+		int start;
+		if (mid.startsWith(MID_PREFIX))
+			start = 3;
+		else if (mid.startsWith("m/") || mid.startsWith("m."))
+			start = 2;
+		else
+			return -1;
+		int len = mid.length() - start;
+		if (len == 0 || len > MID_MAX_CHARS)
+			return -1;
+		long packed = 0;
+		for (int i = 0; i < len; i++) {
+			int code = midCharCode(mid.charAt(start + i));
+			if (code < 0)
+				return -1;
+			packed |= ((long) code) << (6 * i);
+		}
+		return packed;
+	}
+
+	/**
+	 * @return the mid (in the form /m/0abc) packed by {@link #encodeMid(String)}.
+	 */
+	public static String decodeMid(long packed) {
+		StringBuilder sb = new StringBuilder(MID_PREFIX.length() + MID_MAX_CHARS).append(MID_PREFIX);
+		for (; packed != 0; packed >>>= 6)
+			sb.append(midCodeChar((int) (packed & 0x3F)));
+		return sb.toString();
+	}
+
+	/**
+	 * Write an index file.
+	 *
+	 * @param wids
+	 *            page IDs, sorted in increasing order, without duplicates.
+	 * @param mids
+	 *            mids packed with {@link #encodeMid(String)}, aligned with wids.
+	 * @param labels
+	 *            labels (possibly null), aligned with wids.
+	 */
+	public static void write(String file, int[] wids, long[] mids, String[] labels) throws IOException {
+		if (wids.length != mids.length || wids.length != labels.length)
+			throw new IllegalArgumentException("Arrays must have the same length.");
+		HashMap<String, Integer> labelToOffset = new HashMap<>();
+		ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		int[] offsets = new int[wids.length];
+		for (int i = 0; i < wids.length; i++) {
+			if (i > 0 && wids[i] <= wids[i - 1])
+				throw new IllegalArgumentException("Page IDs must be sorted and unique.");
+			if (labels[i] == null) {
+				offsets[i] = -1;
+				continue;
+			}
+			Integer offset = labelToOffset.get(labels[i]);
+			if (offset == null) {
+				byte[] bytes = labels[i].getBytes(StandardCharsets.UTF_8);
+				int len = Math.min(bytes.length, 0xFFFF);
+				offset = poolBytes.size();
+				poolBytes.write(len >>> 8);
+				poolBytes.write(len);
+				poolBytes.write(bytes, 0, len);
+				labelToOffset.put(labels[i], offset);
+			}
+			offsets[i] = offset;
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(wids.length);
+			for (int wid : wids)
+				out.writeInt(wid);
+			for (long mid : mids)
+				out.writeLong(mid);
+			for (int offset : offsets)
+				out.writeInt(offset);
+			out.writeInt(poolBytes.size());
+			poolBytes.writeTo(out);
+		}
+	}
+}
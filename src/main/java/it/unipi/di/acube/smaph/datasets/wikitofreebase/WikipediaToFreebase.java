@@ -31,11 +31,17 @@
  */
 package it.unipi.di.acube.smaph.datasets.wikitofreebase;
 
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
 import java.util.Map;
 
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author Diego Ceccarelli <diego.ceccarelli@isti.cnr.it>
@@ -43,13 +49,61 @@ import org.mapdb.Serializer;
  *         Created on Mar 15, 2014
  */
 public class WikipediaToFreebase {
+	private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	private Map<String, String> map;
 	private Map<String, String> labels;
+	private WidToFreebase widIndex = null;
+	private NamedEntityBitset namedEntities = null;
 
 	public static WikipediaToFreebase open(String file) {
 		return new WikipediaToFreebase(file);
 	}
 
+	/**
+	 * Open the index and attach a named-entity bitset, if given (see
+	 * {@link #withNamedEntityBitset(String)}).
+	 * 
+	 * @param file
+	 *            the MapDB index file.
+	 * @param namedEntitiesBitset
+	 *            the bitset file, or null.
+	 * @return the opened index.
+	 */
+	public static WikipediaToFreebase open(String file, String namedEntitiesBitset) {
+		WikipediaToFreebase w2f = new WikipediaToFreebase(file);
+		if (namedEntitiesBitset != null) {
+			LOG.info("Using named-entity bitset {}", namedEntitiesBitset);
+			w2f.withNamedEntityBitset(namedEntitiesBitset);
+		}
+		return w2f;
+	}
+
+	/**
+	 * Attach a page-ID keyed index (see {@link WidToFreebase}), used by the methods taking a
+	 * Wikipedia page ID instead of resolving the page title.
+	 * 
+	 * @param widIndexFile
+	 *            the index file built by {@link IndexWidToFreebase}.
+	 * @return this object.
+	 */
+	public WikipediaToFreebase withWidIndex(String widIndexFile) {
+		this.widIndex = WidToFreebase.open(widIndexFile);
+		return this;
+	}
+
+	/**
+	 * Attach a precomputed bitset of the page IDs that have a Freebase mapping (see
+	 * {@link NamedEntityBitset}), used by {@link #hasEntity(int, WikipediaInterface)}.
+	 * 
+	 * @param bitsetFile
+	 *            the bitset file built by {@link NamedEntityBitset#main(String[])}.
+	 * @return this object.
+	 */
+	public WikipediaToFreebase withNamedEntityBitset(String bitsetFile) {
+		this.namedEntities = NamedEntityBitset.open(bitsetFile);
+		return this;
+	}
+
 	private WikipediaToFreebase(String file) {
 		DB db = DBMaker.fileDB(file).fileMmapEnable().readOnly().closeOnJvmShutdown().make();
 		map = db.hashMap("index", Serializer.STRING, Serializer.STRING).createOrOpen();
@@ -57,7 +111,7 @@ public class WikipediaToFreebase {
 	}
 
 	public String getLabel(String wikiid) {
-		wikiid = wikiid.replaceAll(" ", "_");
+		wikiid = wikiid.replace(' ', '_');
 		String freebase = map.get(wikiid);
 		if (freebase == null)
 			return null;
@@ -67,16 +121,53 @@ public class WikipediaToFreebase {
 	}
 
 	public boolean hasEntity(String wikilabel) {
-		wikilabel = wikilabel.replaceAll(" ", "_");
+		wikilabel = wikilabel.replace(' ', '_');
 		return map.containsKey(wikilabel);
 	}
 
 	public String getFreebaseId(String wikilabel) {
-		wikilabel = wikilabel.replaceAll(" ", "_");
+		wikilabel = wikilabel.replace(' ', '_');
 		String freebase = map.get(wikilabel);
 		return freebase;
 	}
 
+	public String getLabel(int wid, WikipediaInterface wikiApi) throws IOException {
+		if (widIndex != null)
+			return widIndex.getLabel(wid);
+		String title = wikiApi.getTitlebyId(wid);
+		return title == null ? null : getLabel(title);
+	}
+
+	public boolean hasEntity(int wid, WikipediaInterface wikiApi) throws IOException {
+		if (namedEntities != null)
+			return namedEntities.contains(wid);
+		if (widIndex != null)
+			return widIndex.hasEntity(wid);
+		String title = wikiApi.getTitlebyId(wid);
+		return title != null && hasEntity(title);
+	}
+
+	public String getFreebaseId(int wid, WikipediaInterface wikiApi) throws IOException {
+		if (widIndex != null)
+			return widIndex.getFreebaseId(wid);
+		String title = wikiApi.getTitlebyId(wid);
+		return title == null ? null : getFreebaseId(title);
+	}
+
+	/**
+	 * Same as {@link #getFreebaseId(int, WikipediaInterface)}, for callers that already resolved the
+	 * page title.
+	 * 
+	 * @param title
+	 *            the title of page wid, or null if it has none. Only used if no page-ID index is
+	 *            attached.
+	 */
+	public String getFreebaseId(int wid, String title) {
+		if (widIndex != null)
+			return widIndex.getFreebaseId(wid);
+		return title == null ? null : getFreebaseId(title);
+	}
+
 	public static void main(String[] args) {
 		WikipediaToFreebase w2f = new WikipediaToFreebase("mapdb/freebase.db");
 		System.out.println(w2f.getFreebaseId("Diego_Maradona"));
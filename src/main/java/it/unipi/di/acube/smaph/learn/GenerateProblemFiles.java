@@ -92,7 +92,7 @@ public class GenerateProblemFiles {
 		WATRelatednessComputer.setGcubeToken(c.getWatGcubeToken());
 		WATRelatednessComputer.setCache("relatedness_wat2.cache");
 		wikiApi = new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(c.getWatGcubeToken()).cache().build();
-		wikiToFreeb = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage());
+		wikiToFreeb = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage(), c.getDefaultNamedEntitiesBitset());
 		e2a = EntityToAnchors.fromDB(c.getDefaultEntityToAnchorsStorage());
 
 		Map<String, QueryInformation> qiCache = new HashMap<>();
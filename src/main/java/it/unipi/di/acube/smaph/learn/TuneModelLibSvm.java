@@ -147,7 +147,7 @@ public class TuneModelLibSvm {
 		WATRelatednessComputer.setGcubeToken(c.getWatGcubeToken());
 		WATRelatednessComputer.setCache("relatedness_wat2.cache");
 		wikiApi = new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(c.getWatGcubeToken()).cache().build();
-		w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage());
+		w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage(), c.getDefaultNamedEntitiesBitset());
 		e2a = EntityToAnchors.fromDB(c.getDefaultEntityToAnchorsStorage());
 
 		OptDataset opt = OptDataset.SMAPH_DATASET;
@@ -4,7 +4,9 @@ import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.EditDistanceMemo;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
 import it.unipi.di.acube.smaph.SmaphUtils;
 import it.unipi.di.acube.smaph.WATRelatednessComputer;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
@@ -12,6 +14,7 @@ import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.function.ToDoubleBiFunction;
 
 /**
  * This feature pack represents a set of feature of an annotation, based on the
@@ -38,11 +41,21 @@ public class AnnotationFeaturePack extends FeaturePack<Annotation> {
 		return l;
 	}
 
+	/**
+	 * @return the features of a, computed once per query and shared by all the bindings and greedy
+	 *         steps that include a.
+	 */
+	public static SparseFeatureVector getCachedFeatures(Annotation a, String query, QueryInformation qi,
+	        WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a) {
+		return qi.getAnnotationFeatures(a,
+		        () -> new SparseFeatureVector(getFeaturesStatic(a, query, qi, wikiApi, w2f, e2a), new AnnotationFeaturePack().getSchema()));
+	}
+
 	public static HashMap<String, Double> getFeaturesStatic(Annotation a, String query, QueryInformation qi,
 	        WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a) {
 		Tag entity = new Tag(a.getConcept());
 		String mention = query.substring(a.getPosition(), a.getPosition() + a.getLength());
-		HashMap<String, Double> entityFeatures = EntityFeaturePack.getFeatures(entity, query, qi, wikiApi, w2f);
+		Map<String, Double> entityFeatures = EntityFeaturePack.getCachedFeatures(entity, query, qi, wikiApi, w2f);
 		List<String> bolds = null;
 		if (qi.entityToBoldsSA.containsKey(entity))
 			bolds = qi.entityToBoldsSA.get(entity);
@@ -63,28 +76,45 @@ public class AnnotationFeaturePack extends FeaturePack<Annotation> {
 		else if (title != null)
 			anchorAndOccurrencies = AnnotationFeaturePack.getFakeAnchors(title);
 
+		// Features not used by the models are not computed (set to NaN).
+		EditDistanceMemo memo = qi.getEditDistanceMemo();
 		HashMap<String, Double> features = new HashMap<String, Double>(entityFeatures);
-		features.put("edit_distance_anchor_segment_sqrt", edAnchorsWeightSqrt(mention, anchorAndOccurrencies));
-		features.put("edit_distance_anchor_segment_sqrt_comm", edAnchorsWeightSqrtComm(mention, anchorAndOccurrencies, a.getConcept(), e2a));
-		features.put("min_edit_distance_anchor_segment_sqrt_geometric_0.02", minEdAnchorsWeightSqrtGeom(mention, anchorAndOccurrencies, 0.02));
-		features.put("min_edit_distance_title", minEdTitle(mention, title));
-		features.put("edit_distance_title", (double) SmaphUtils.getNormEditDistanceLC(title, mention));
+		features.put("edit_distance_anchor_segment_sqrt", qi.isFeatureUsed("edit_distance_anchor_segment_sqrt")
+		        ? edAnchorsWeightSqrt(mention, anchorAndOccurrencies, memo) : Double.NaN);
+		features.put("edit_distance_anchor_segment_sqrt_comm", qi.isFeatureUsed("edit_distance_anchor_segment_sqrt_comm")
+		        ? edAnchorsWeightSqrtComm(mention, anchorAndOccurrencies, a.getConcept(), e2a, memo) : Double.NaN);
+		features.put("min_edit_distance_anchor_segment_sqrt_geometric_0.02", qi.isFeatureUsed("min_edit_distance_anchor_segment_sqrt_geometric_0.02")
+		        ? minEdAnchorsWeightSqrtGeom(mention, anchorAndOccurrencies, 0.02, memo) : Double.NaN);
+		features.put("min_edit_distance_title", minEdTitle(mention, title, memo));
+		features.put("edit_distance_title", (double) memo.getNormEditDistanceLC(title, mention));
 		if (bolds != null)
-			features.put("min_edit_distance_bolds", minEdBold(mention, bolds));
+			features.put("min_edit_distance_bolds", minEdBold(mention, bolds, memo));
 		features.put("commonness", e2a.containsId(a.getConcept())? e2a.getCommonness(mention, a.getConcept()) : 1.0);
-		features.put("link_prob", WATRelatednessComputer.getLp(mention));
+		features.put("link_prob", qi.isFeatureUsed("link_prob") ? WATRelatednessComputer.getLp(mention) : Double.NaN);
 		
-		features.put("edit_distance_anchor_segment_sqrt_geometric_0.05", edAnchorsWeightSqrtGeom(mention, anchorAndOccurrencies, 0.05));
-		double expandibilityRight = expandibility(query, a.getPosition(), a.getPosition() + a.getLength(), anchorAndOccurrencies,
-		        true);
-		double expandibilityLeft = expandibility(query, a.getPosition(), a.getPosition() + a.getLength(), anchorAndOccurrencies,
-		        false);
-		features.put("expandibility_sum", expandibilityLeft + expandibilityRight);
+		features.put("edit_distance_anchor_segment_sqrt_geometric_0.05", qi.isFeatureUsed("edit_distance_anchor_segment_sqrt_geometric_0.05")
+		        ? edAnchorsWeightSqrtGeom(mention, anchorAndOccurrencies, 0.05, memo) : Double.NaN);
+		if (qi.isFeatureUsed("expandibility_sum")) {
+			QueryTextContext text = qi.getTextContext(query);
+			double expandibilityRight = expandibility(text, a.getPosition(), a.getPosition() + a.getLength(), anchorAndOccurrencies,
+			        true, memo);
+			double expandibilityLeft = expandibility(text, a.getPosition(), a.getPosition() + a.getLength(), anchorAndOccurrencies,
+			        false, memo);
+			features.put("expandibility_sum", expandibilityLeft + expandibilityRight);
+		} else
+			features.put("expandibility_sum", Double.NaN);
 		return features;
 	}
 
 	public static String expandedMention(String query, int beginning, int end, boolean rightOrLeft) {
-		query = query.replaceAll("[^a-zA-Z0-9]", " ").toLowerCase();
+		return expandedMentionAlphanumericLC(query.replaceAll("[^a-zA-Z0-9]", " ").toLowerCase(), beginning, end, rightOrLeft);
+	}
+
+	/**
+	 * @param query
+	 *            the query, lower-cased and with non-alphanumeric characters replaced by spaces.
+	 */
+	private static String expandedMentionAlphanumericLC(String query, int beginning, int end, boolean rightOrLeft) {
 		int i = rightOrLeft ? end : beginning - 1;
 		int spotted = 0;
 		while (i >= 0 && i < query.length()) {
@@ -103,17 +133,33 @@ public class AnnotationFeaturePack extends FeaturePack<Annotation> {
 
 	public static double expandibility(String query, int beginning, int end, List<Pair<String, Integer>> anchorAndOccurrencies,
 	        boolean rightOrLeft) {
-		String expanded = expandedMention(query, beginning, end, rightOrLeft);
+		return expandibility(expandedMention(query, beginning, end, rightOrLeft), query.substring(beginning, end),
+		        anchorAndOccurrencies, SmaphUtils::getNormEditDistanceLC);
+	}
+
+	public static double expandibility(String query, int beginning, int end, List<Pair<String, Integer>> anchorAndOccurrencies,
+	        boolean rightOrLeft, EditDistanceMemo memo) {
+		return expandibility(expandedMention(query, beginning, end, rightOrLeft), query.substring(beginning, end),
+		        anchorAndOccurrencies, memo::getNormEditDistanceLC);
+	}
+
+	public static double expandibility(QueryTextContext text, int beginning, int end,
+	        List<Pair<String, Integer>> anchorAndOccurrencies, boolean rightOrLeft, EditDistanceMemo memo) {
+		return expandibility(expandedMentionAlphanumericLC(text.getAlphanumericLC(), beginning, end, rightOrLeft),
+		        text.getQuery().substring(beginning, end), anchorAndOccurrencies, memo::getNormEditDistanceLC);
+	}
+
+	private static double expandibility(String expanded, String mention, List<Pair<String, Integer>> anchorAndOccurrencies,
+	        ToDoubleBiFunction<String, String> normEditDistanceLC) {
 		if (expanded == null)
 			return -1.0;
-		String mention = query.substring(beginning, end);
 
 		double edExpandedAnchor = 1.0;
 		double edMentionAnchor = 1.0;
 		for (Pair<String, Integer> p : anchorAndOccurrencies) {
-			edExpandedAnchor = Math.min(edExpandedAnchor, SmaphUtils.getNormEditDistanceLC(expanded, p.first));
+			edExpandedAnchor = Math.min(edExpandedAnchor, normEditDistanceLC.applyAsDouble(expanded, p.first));
 			edMentionAnchor = Math.min(edMentionAnchor,
-			        SmaphUtils.getNormEditDistanceLC(mention, p.first));
+			        normEditDistanceLC.applyAsDouble(mention, p.first));
 		}
 		return edMentionAnchor - edExpandedAnchor;
 	}
@@ -122,56 +168,72 @@ public class AnnotationFeaturePack extends FeaturePack<Annotation> {
 		return Math.min(SmaphUtils.getMinEditDist(title/*.toLowerCase()*/, mention), 1.0);
 	}
 
+	public static double minEdTitle(String mention, String title, EditDistanceMemo memo) {
+		return Math.min(memo.getMinEditDist(title/*.toLowerCase()*/, mention), 1.0);
+	}
+
 	public static double minEdBold(String mention, List<String> bolds) {
+		return minEdBold(mention, bolds, SmaphUtils::getMinEditDist);
+	}
+
+	public static double minEdBold(String mention, List<String> bolds, EditDistanceMemo memo) {
+		return minEdBold(mention, bolds, memo::getMinEditDist);
+	}
+
+	private static double minEdBold(String mention, List<String> bolds, ToDoubleBiFunction<String, String> minEditDist) {
 		double minEDBold = 1.0;
 		for (String bold : bolds) {
-			minEDBold = Math.min(SmaphUtils.getMinEditDist(mention, bold),
+			minEDBold = Math.min(minEditDist.applyAsDouble(mention, bold),
 					minEDBold);
-			minEDBold = Math.min(SmaphUtils.getMinEditDist(bold, mention),
+			minEDBold = Math.min(minEditDist.applyAsDouble(bold, mention),
 					minEDBold);
 		}
 		return minEDBold;
 	}
 
-	private static double edAnchorsWeightSqrt(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies) {
+	private static double edAnchorsWeightSqrt(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, EditDistanceMemo memo) {
 		double num = 0;
 		double denom = 0;
+		String segmentStrLC = segmentStr.toLowerCase();
 		for (Pair<String, Integer> p: anchorAndOccurrencies){
-			num += Math.sqrt(p.second)*SmaphUtils.getNormEditDistance(segmentStr.toLowerCase(), p.first);
+			num += Math.sqrt(p.second)*memo.getNormEditDistance(segmentStrLC, p.first);
 			denom += Math.sqrt(p.second);
 		}
 		return num/denom;
 	}
 
-	private static double edAnchorsWeightSqrtComm(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, int entity, EntityToAnchors e2a) {
+	private static double edAnchorsWeightSqrtComm(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, int entity, EntityToAnchors e2a, EditDistanceMemo memo) {
 		double num = 0;
 		double denom = 0;
+		String segmentStrLC = segmentStr.toLowerCase();
 		for (Pair<String, Integer> p: anchorAndOccurrencies){
-			num += Math.sqrt((e2a.containsId(entity)? e2a.getCommonness(p.first, entity, p.second) : 1.0))*SmaphUtils.getNormEditDistance(segmentStr.toLowerCase(), p.first);
+			num += Math.sqrt((e2a.containsId(entity)? e2a.getCommonness(p.first, entity, p.second) : 1.0))*memo.getNormEditDistance(segmentStrLC, p.first);
 			denom += Math.sqrt(e2a.containsId(entity)? e2a.getCommonness(p.first, entity, p.second) : 1.0);
 		}
 		return num/denom;
 	}
 	
-	private static double minEdAnchorsWeightSqrtGeom(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, double smooth) {
+	private static double minEdAnchorsWeightSqrtGeom(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, double smooth, EditDistanceMemo memo) {
 		double values[] = new double[anchorAndOccurrencies.size()];
 		double weights[] = new double[anchorAndOccurrencies.size()];
+		String segmentStrLC = segmentStr.toLowerCase();
 
 		for (int i = 0; i < anchorAndOccurrencies.size(); i++) {
 			Pair<String, Integer> p = anchorAndOccurrencies.get(i);
-			values[i] = smooth + SmaphUtils.getMinEditDist(segmentStr.toLowerCase(), p.first);
+			values[i] = smooth + memo.getMinEditDist(segmentStrLC, p.first);
 			weights[i] = Math.sqrt(p.second);
 		}
 		return SmaphUtils.weightedGeometricAverage(values, weights);
 	}
 	
-	private static double edAnchorsWeightSqrtGeom(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, double smooth) {
+	private static double edAnchorsWeightSqrtGeom(String segmentStr, List<Pair<String, Integer>> anchorAndOccurrencies, double smooth, EditDistanceMemo memo) {
 		double values[] = new double[anchorAndOccurrencies.size()];
 		double weights[] = new double[anchorAndOccurrencies.size()];
+		String segmentStrLC = segmentStr.toLowerCase();
 
 		for (int i = 0; i < anchorAndOccurrencies.size(); i++) {
 			Pair<String, Integer> p = anchorAndOccurrencies.get(i);
-			values[i] = smooth + SmaphUtils.getNormEditDistanceLC(segmentStr.toLowerCase(), p.first);
+			values[i] = smooth + memo.getNormEditDistanceLC(segmentStrLC, p.first);
 			weights[i] = Math.sqrt(p.second);
 		}
 		return SmaphUtils.weightedGeometricAverage(values, weights);
@@ -203,10 +265,6 @@ public class AnnotationFeaturePack extends FeaturePack<Annotation> {
 
 	@Override
 	public void checkFeatures(HashMap<String, Double> features) {
-		String[] ftrNames = getFeatureNames();
-		for (String ftrName : features.keySet())
-			if (!Arrays.asList(ftrNames).contains(ftrName))
-				throw new RuntimeException("Feature " + ftrName
-						+ " does not exist!");
+		getSchema().check(features);
 	}
 }
@@ -3,7 +3,10 @@ package it.unipi.di.acube.smaph.learn.featurePacks;
 import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.EditDistanceMemo;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
+import it.unipi.di.acube.smaph.RelatednessMatrix;
 import it.unipi.di.acube.smaph.SmaphUtils;
 import it.unipi.di.acube.smaph.WATRelatednessComputer;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
@@ -13,6 +16,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 
 import org.apache.commons.lang3.tuple.Triple;
@@ -20,6 +25,10 @@ import org.apache.commons.lang3.tuple.Triple;
 public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 	private static final long serialVersionUID = 1L;
 	private static String[] ftrNames = null;
+	private static String[][] collapsedFtrNames = null;
+	/** The binding features computed from the relatedness among the entities. */
+	public static final String[] RELATEDNESS_FEATURES = new String[] { "min_relatedness", "max_relatedness",
+	        "avg_relatedness", "min_relatedness_mw", "max_relatedness_mw", "avg_relatedness_mw" };
 	
 	public BindingFeaturePack(
 			HashSet<Annotation> binding, String query,
@@ -73,11 +82,7 @@ public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 
 	@Override
 	public void checkFeatures(HashMap<String, Double> features) {
-		String[] ftrNames = getFeatureNames();
-		for (String ftrName : features.keySet())
-			if (!Arrays.asList(ftrNames).contains(ftrName))
-				throw new RuntimeException("Feature " + ftrName
-						+ " does not exist!");
+		getSchema().check(features);
 	}
 
 	/**
@@ -89,68 +94,96 @@ public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 	 * @return a single representation
 	 */
 	private static HashMap<String, Double> collapseFeatures(
-			List<HashMap<String, Double>> allFtrVects) {
+			List<SparseFeatureVector> allFtrVects) {
+		FeatureSchema annotationSchema = new AnnotationFeaturePack().getSchema();
+		String[][] collapsedNames = getCollapsedFeatureNames(annotationSchema);
+
 		// count feature presence
-		HashMap<String, Integer> ftrCount = new HashMap<>();
-		for (HashMap<String, Double> ftrVectToMerge : allFtrVects)
-			for (String ftrName : ftrVectToMerge.keySet()) {
-				if (!ftrCount.containsKey(ftrName))
-					ftrCount.put(ftrName, 0);
-				ftrCount.put(ftrName, ftrCount.get(ftrName) + 1);
+		int[] ftrCount = new int[annotationSchema.size()];
+		for (SparseFeatureVector ftrVectToMerge : allFtrVects)
+			for (int j = 0; j < ftrVectToMerge.size(); j++)
+				ftrCount[ftrVectToMerge.getPosition(j)]++;
+
+		// compute min, max, avg, count. Sources count features are initialized to 0.0
+		double[] mins = new double[annotationSchema.size()];
+		double[] maxs = new double[annotationSchema.size()];
+		double[] avgs = new double[annotationSchema.size()];
+		Arrays.fill(mins, Double.POSITIVE_INFINITY);
+		Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		for (SparseFeatureVector ftrVectToMerge : allFtrVects)
+			for (int j = 0; j < ftrVectToMerge.size(); j++) {
+				int ftrPos = ftrVectToMerge.getPosition(j);
+				double ftrValue = ftrVectToMerge.getValue(j);
+				if (collapsedNames[ftrPos].length == 1)
+					avgs[ftrPos] = avgs[ftrPos] + ftrValue;
+				else {
+					mins[ftrPos] = Math.min(mins[ftrPos], ftrValue);
+					maxs[ftrPos] = Math.max(maxs[ftrPos], ftrValue);
+					avgs[ftrPos] = avgs[ftrPos] + ftrValue / ftrCount[ftrPos];
+				}
 			}
 
-		// compute min, max, avg, count
 		HashMap<String, Double> entitySetFeatures = new HashMap<>();
-		
-		// Initialize sources count features to 0.0
-		for (String ftrName : new EntityFeaturePack().getFeatureNames())
-			if (ftrName.startsWith("found_")) {
-				String key = "count_" + ftrName;
-				entitySetFeatures.put(key, 0.0);
-			}	
-		
-		for (HashMap<String, Double> ftrVectToMerge : allFtrVects) {
-			for (String ftrName : ftrVectToMerge.keySet()) {
-				if (ftrName.startsWith("found_")) {
-					String key = "count_" + ftrName;
-					entitySetFeatures.put(key, entitySetFeatures.get(key) + ftrVectToMerge.get(ftrName));
-				} else {
-					if (!entitySetFeatures.containsKey("min_" + ftrName))
-						entitySetFeatures.put("min_" + ftrName,
-								Double.POSITIVE_INFINITY);
-					if (!entitySetFeatures.containsKey("max_" + ftrName))
-						entitySetFeatures.put("max_" + ftrName,
-								Double.NEGATIVE_INFINITY);
-					if (!entitySetFeatures.containsKey("avg_" + ftrName))
-						entitySetFeatures.put("avg_" + ftrName, 0.0);
-
-					double ftrValue = ftrVectToMerge.get(ftrName);
-					entitySetFeatures.put("min_" + ftrName, Math.min(
-							entitySetFeatures.get("min_" + ftrName), ftrValue));
-					entitySetFeatures.put("max_" + ftrName, Math.max(
-							entitySetFeatures.get("max_" + ftrName), ftrValue));
-					entitySetFeatures.put("avg_" + ftrName,
-							entitySetFeatures.get("avg_" + ftrName) + ftrValue
-									/ ftrCount.get(ftrName));
-				}
+		for (int ftrPos = 0; ftrPos < collapsedNames.length; ftrPos++)
+			if (collapsedNames[ftrPos].length == 1)
+				entitySetFeatures.put(collapsedNames[ftrPos][0], avgs[ftrPos]);
+			else if (ftrCount[ftrPos] > 0) {
+				entitySetFeatures.put(collapsedNames[ftrPos][0], mins[ftrPos]);
+				entitySetFeatures.put(collapsedNames[ftrPos][1], maxs[ftrPos]);
+				entitySetFeatures.put(collapsedNames[ftrPos][2], avgs[ftrPos]);
 			}
-		}
 		return entitySetFeatures;
 	}
 
+	/**
+	 * @return for each annotation feature, the name of the binding feature counting it (for
+	 *         source features) or the names of the min, max and avg binding features (for the
+	 *         others).
+	 */
+	private static synchronized String[][] getCollapsedFeatureNames(FeatureSchema annotationSchema) {
+		if (collapsedFtrNames == null) {
+			String[][] names = new String[annotationSchema.size()][];
+			for (int i = 0; i < names.length; i++) {
+				String ftrName = annotationSchema.getName(i);
+				if (ftrName.startsWith("found_"))
+					names[i] = new String[] { "count_" + ftrName };
+				else
+					names[i] = new String[] { "min_" + ftrName, "max_" + ftrName, "avg_" + ftrName };
+			}
+			collapsedFtrNames = names;
+		}
+		return collapsedFtrNames;
+	}
+
+	/**
+	 * @param bindingFtrNames
+	 *            names of binding features.
+	 * @return the names of the annotation features the given binding features are computed from.
+	 */
+	public static Set<String> getAggregatedFeatureNames(Set<String> bindingFtrNames) {
+		FeatureSchema annotationSchema = new AnnotationFeaturePack().getSchema();
+		String[][] collapsedNames = getCollapsedFeatureNames(annotationSchema);
+		Set<String> res = new HashSet<>();
+		for (int ftrPos = 0; ftrPos < collapsedNames.length; ftrPos++)
+			for (String collapsedName : collapsedNames[ftrPos])
+				if (bindingFtrNames.contains(collapsedName))
+					res.add(annotationSchema.getName(ftrPos));
+		return res;
+	}
+
 	private static HashMap<String, Double> getFeatures(
 			HashSet<Annotation> binding,
 			String query,
 			QueryInformation qi, WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a, HashMap<Annotation, HashMap<String, Double>> debugAnnotationFeatures, HashMap<String, Double> debugBindingFeatures) {
 		
-		List<HashMap<String, Double>> allAnnotationsFeatures = new Vector<>();
+		List<SparseFeatureVector> allAnnotationsFeatures = new Vector<>();
 		
 		for (Annotation ann : binding) {
-			HashMap<String, Double> annFeatures = AnnotationFeaturePack
-					.getFeaturesStatic(ann, query, qi, wikiApi, w2f, e2a);
+			SparseFeatureVector annFeatures = AnnotationFeaturePack
+					.getCachedFeatures(ann, query, qi, wikiApi, w2f, e2a);
 			allAnnotationsFeatures.add(annFeatures);
 			if (debugAnnotationFeatures != null)
-				debugAnnotationFeatures.put(ann, annFeatures);
+				debugAnnotationFeatures.put(ann, new HashMap<>(annFeatures.getFeatures()));
 		}
 
 /*		HashSet<Tag> selectedEntities = new HashSet<>();
@@ -183,22 +216,41 @@ public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 		features.put("avg_mutual_info", minMaxAvgMI.getRight());
 		features.put("max_mutual_info", minMaxAvgMI.getMiddle());*/
 
-		bindingFeatures.put("query_tokens", (double) SmaphUtils.tokenize(query).size());
+		bindingFeatures.putAll(getQueryFeatures(query, qi));
+		QueryTextContext text = qi.getTextContext(query);
 		bindingFeatures.put("annotation_count", (double) binding.size());
 
 		int coveredTokens = 0;
 		for (Annotation a: binding)
-			coveredTokens += SmaphUtils.tokenize(query.substring(a.getPosition(), a.getPosition()+a.getLength())).size();
-		bindingFeatures.put("covered_tokens", (double)coveredTokens/(double) SmaphUtils.tokenize(query).size());
+			coveredTokens += text.getTokenCount(a.getPosition(), a.getPosition()+a.getLength());
+		bindingFeatures.put("covered_tokens", (double)coveredTokens/(double) text.getTokenCount());
 		
 		/* Add relatedness among entities (only if there are more than two entities)*/
+		if (qi.isFeatureUsed(RELATEDNESS_FEATURES))
+			addRelatednessFeatures(binding, qi, bindingFeatures);
+		
+		if (debugBindingFeatures != null)
+			debugBindingFeatures.putAll(bindingFeatures);
+		
+		return bindingFeatures;
+	}
+
+	private static void addRelatednessFeatures(HashSet<Annotation> binding, QueryInformation qi,
+	        HashMap<String, Double> bindingFeatures) {
+		List<Integer> concepts = new Vector<>(binding.size());
+		for (Annotation a : binding)
+			concepts.add(a.getConcept());
+		RelatednessMatrix relatedness = qi.getRelatednessMatrix(concepts);
+		int[] ids = new int[concepts.size()];
+		for (int i = 0; i < ids.length; i++)
+			ids[i] = relatedness.getId(concepts.get(i));
 		Vector<Double> relatednessPairsJaccard = new Vector<>();
 		Vector<Double> relatednessPairsMW = new Vector<>();
-		for (Annotation a1 : binding)
-			for (Annotation a2 : binding)
-				if (a1.getConcept() != a2.getConcept()){
-					relatednessPairsJaccard.add(WATRelatednessComputer.getJaccardRelatedness(a1.getConcept(), a2.getConcept()));
-					relatednessPairsMW.add(WATRelatednessComputer.getMwRelatedness(a1.getConcept(), a2.getConcept()));
+		for (int id1 : ids)
+			for (int id2 : ids)
+				if (id1 != id2){
+					relatednessPairsJaccard.add(relatedness.getJaccardRelatedness(id1, id2));
+					relatednessPairsMW.add(relatedness.getMwRelatedness(id1, id2));
 				}
 		//If there are no entities or one single entity, their coherence is 1.
 		/*bindingFeatures.put("min_relatedness", 1.0);
@@ -218,26 +270,59 @@ public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 			bindingFeatures.put("max_relatedness_mw", minMaxAvgRelMW.getMiddle());
 			bindingFeatures.put("avg_relatedness_mw", minMaxAvgRelMW.getRight());
 		}
-		
-		Pair<Double, Double> lpSumAndAvg = getLpSumAvg(query);
-		bindingFeatures.put("segments_lp_sum", lpSumAndAvg.first);
-		bindingFeatures.put("segments_lp_avg", lpSumAndAvg.second);
+	}
 
-		bindingFeatures.put("webtotal", qi.webTotalNS);		
-		
-		bindingFeatures.put("bolds_number", (double) qi.allBoldsNS.size());
-		bindingFeatures.put("distinct_bolds", (double) new HashSet<String>(qi.allBoldsNS).size());
-		
-		bindingFeatures.put("bolds_query_mined_avg", boldQueryMinED(qi.allBoldsNS, query));
-		
-		if (debugBindingFeatures != null)
-			debugBindingFeatures.putAll(bindingFeatures);
-		
-		return bindingFeatures;
+	/**
+	 * @param query
+	 *            the query qi refers to.
+	 * @return the binding features that only depend on the query (and not on the binding),
+	 *         computed once per query and shared by all its bindings.
+	 */
+	public static Map<String, Double> getQueryFeatures(String query, QueryInformation qi) {
+		return qi.getQueryFeatures(() -> {
+			QueryTextContext text = qi.getTextContext(query);
+			HashMap<String, Double> queryFeatures = new HashMap<>();
+			queryFeatures.put("query_tokens", (double) text.getTokenCount());
+
+			Pair<Double, Double> lpSumAndAvg = getSegmentsLpSumAvg(query, qi);
+			queryFeatures.put("segments_lp_sum", lpSumAndAvg.first);
+			queryFeatures.put("segments_lp_avg", lpSumAndAvg.second);
+
+			queryFeatures.put("webtotal", qi.webTotalNS);
+
+			// Bolds are only available if the normal search source is enabled.
+			if (qi.allBoldsNS != null) {
+				queryFeatures.put("bolds_number", (double) qi.allBoldsNS.size());
+				queryFeatures.put("distinct_bolds", (double) new HashSet<String>(qi.allBoldsNS).size());
+
+				queryFeatures.put("bolds_query_mined_avg", qi.isFeatureUsed("bolds_query_mined_avg")
+				        ? boldQueryMinED(qi.allBoldsNS, query, qi.getEditDistanceMemo()) : Double.NaN);
+			}
+			return queryFeatures;
+		});
+	}
+
+	/**
+	 * @param query
+	 *            the query qi refers to.
+	 * @return the sum and average link probability of the query segments (NaN if not used),
+	 *         computed once per query. Unlike {@link #getQueryFeatures(String, QueryInformation)},
+	 *         this does not compute the bold features.
+	 */
+	public static Pair<Double, Double> getSegmentsLpSumAvg(String query, QueryInformation qi) {
+		return qi.getSegmentsLpSumAvg(() -> qi.isFeatureUsed("segments_lp_sum", "segments_lp_avg", "segments_lp_ratio")
+		        ? getLpSumAvg(qi.getTextContext(query)) : new Pair<Double, Double>(Double.NaN, Double.NaN));
 	}
 
 	public static Pair<Double, Double> getLpSumAvg(String query) {
-		List<String> segments = SmaphUtils.findSegmentsStrings(query.toLowerCase());
+		return getLpSumAvg(SmaphUtils.findSegmentsStrings(query.toLowerCase()));
+	}
+
+	public static Pair<Double, Double> getLpSumAvg(QueryTextContext text) {
+		return getLpSumAvg(text.getLowerCaseSegmentStrings());
+	}
+
+	private static Pair<Double, Double> getLpSumAvg(List<String> segments) {
 		double sum = 0;
 		int count = 0;
 		for (String s : segments) {
@@ -247,10 +332,10 @@ public class BindingFeaturePack extends FeaturePack<HashSet<Annotation>> {
 		return new Pair<Double, Double>(sum, sum / count);
 	}
 	
-	private static double boldQueryMinED(List<String> bolds, String query) {
+	private static double boldQueryMinED(List<String> bolds, String query, EditDistanceMemo memo) {
 		double sum = 0;
 		for (String bold: bolds)
-			sum += SmaphUtils.getMinEditDist(query, bold.toLowerCase());
+			sum += memo.getMinEditDist(query, bold.toLowerCase());
 		return sum / bolds.size();
 	}
 }
@@ -11,6 +11,7 @@ import it.unipi.di.acube.smaph.main.ERDDatasetFilter;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.commons.lang3.tuple.ImmutableTriple;
@@ -84,11 +85,26 @@ public class EntityFeaturePack extends FeaturePack<Tag> {
 
 	public static HashMap<String, Double> getFeatures(Tag candidate, String query, QueryInformation qi,
 			WikipediaInterface wikiApi, WikipediaToFreebase freeb) {
+		return new HashMap<>(getCachedFeatures(candidate, query, qi, wikiApi, freeb));
+	}
+
+	/**
+	 * @return the features of candidate, computed once per query and shared by all the feature
+	 *         packs that include them. The returned map is unmodifiable.
+	 */
+	public static Map<String, Double> getCachedFeatures(Tag candidate, String query, QueryInformation qi,
+			WikipediaInterface wikiApi, WikipediaToFreebase freeb) {
+		return qi.getEntityFeatures(candidate.getConcept(), () -> computeFeatures(candidate, query, qi, wikiApi, freeb));
+	}
+
+	private static HashMap<String, Double> computeFeatures(Tag candidate, String query, QueryInformation qi,
+			WikipediaInterface wikiApi, WikipediaToFreebase freeb) {
 		int wid = candidate.getConcept();
-		boolean candidateIsNE;
+		Boolean candidateIsNE = null;
 		String title;
 		try {
-			candidateIsNE = ERDDatasetFilter.entityIsNE(wikiApi, freeb, wid);
+			if (qi.isFeatureUsed("a_is_named_entity"))
+				candidateIsNE = ERDDatasetFilter.entityIsNE(wikiApi, freeb, wid);
 			title = wikiApi.getTitlebyId(wid);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -96,12 +112,14 @@ public class EntityFeaturePack extends FeaturePack<Tag> {
 
 		HashMap<String, Double> res = new HashMap<>();
 
-		// Source-independent features
-		res.put("a_editDistanceTitle", SmaphUtils.getMinEditDist(query, title));
+		// Source-independent features (those not used by the models are not computed)
+		res.put("a_editDistanceTitle",
+		        qi.isFeatureUsed("a_editDistanceTitle") ? SmaphUtils.getMinEditDist(query, title) : Double.NaN);
 		res.put("a_webTotal", qi.webTotalNS);
 		res.put("a_wikiWebTotal", qi.webTotalWS);
-		res.put("a_editDistanceNoPar", SmaphUtils.getMinEditDist(query, SmaphUtils.removeTrailingParenthetical(title)));
-		res.put("a_is_named_entity", candidateIsNE ? 1.0 : 0.0);
+		res.put("a_editDistanceNoPar", qi.isFeatureUsed("a_editDistanceNoPar")
+		        ? SmaphUtils.getMinEditDist(query, SmaphUtils.removeTrailingParenthetical(title)) : Double.NaN);
+		res.put("a_is_named_entity", candidateIsNE == null ? Double.NaN : candidateIsNE ? 1.0 : 0.0);
 
 		// Normal search (S2) features
 		if (qi.includeSourceNormalSearch) {
@@ -194,11 +212,17 @@ public class EntityFeaturePack extends FeaturePack<Tag> {
 					ambiguities.add(addInfo.get("ambiguity"));
 				}
 				List<Double> boldEDs = new Vector<>();
-				for (String bold : bolds)
-					boldEDs.add(SmaphUtils.getMinEditDist(query, bold));
+				if (qi.isFeatureUsed("s3_min_min_bold_ed", "s3_max_min_bold_ed", "s3_avg_min_bold_ed"))
+					for (String bold : bolds)
+						boldEDs.add(SmaphUtils.getMinEditDist(query, bold));
+				else
+					boldEDs.add(Double.NaN);
 				List<Double> mentionEDs = new Vector<>();
-				for (String mention : mentions)
-					mentionEDs.add(SmaphUtils.getMinEditDist(query, mention));
+				if (qi.isFeatureUsed("s3_min_min_mention_ed", "s3_max_min_mention_ed", "s3_avg_min_mention_ed"))
+					for (String mention : mentions)
+						mentionEDs.add(SmaphUtils.getMinEditDist(query, mention));
+				else
+					mentionEDs.add(Double.NaN);
 				List<Double> mentionBoldOverlap = new Vector<>();
 				for (int i = 0; i < mentions.size(); i++) {
 					List<String> boldTokens = SmaphUtils.tokenize(bolds.get(i));
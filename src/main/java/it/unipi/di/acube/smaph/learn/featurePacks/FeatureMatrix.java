@@ -0,0 +1,89 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The features of a set of candidates (e.g. all the entities or annotations of a query) that share
+ * a {@link FeatureSchema}, stored in a single array of rows × columns values: row i holds the
+ * features of the i-th candidate, in schema order. Features that are not set are NaN. Matrices let
+ * normalizers and models process all the candidates of a query at once.
+ */
+public class FeatureMatrix {
+	private final FeatureSchema schema;
+	private final int rows;
+	/** Value of feature j of candidate i, stored in position i * columns + j. */
+	private final double[] values;
+
+	/**
+	 * Build a matrix of rows × schema.size() values, all set to 0.
+	 */
+	public FeatureMatrix(FeatureSchema schema, int rows) {
+		this.schema = schema;
+		this.rows = rows;
+		this.values = new double[rows * schema.size()];
+	}
+
+	/**
+	 * Build the matrix of the features of fps, one row per feature pack, in order.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a feature pack has a schema different from schema.
+	 */
+	public FeatureMatrix(FeatureSchema schema, List<? extends FeaturePack<?>> fps) {
+		this(schema, fps.size());
+		int columns = schema.size();
+		for (int i = 0; i < rows; i++) {
+			FeaturePack<?> fp = fps.get(i);
+			if (fp.getSchema() != schema)
+				throw new IllegalArgumentException("Feature pack " + fp.getClass() + " does not match the schema of the matrix.");
+			fp.copyFeatures(values, i * columns);
+		}
+	}
+
+	/**
+	 * @return the matrix of the features of fps, with the schema of the first feature pack. fps must
+	 *         not be empty.
+	 */
+	public static FeatureMatrix of(List<? extends FeaturePack<?>> fps) {
+		return new FeatureMatrix(fps.get(0).getSchema(), fps);
+	}
+
+	public FeatureSchema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * @return the number of candidates.
+	 */
+	public int rows() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of features.
+	 */
+	public int columns() {
+		return schema.size();
+	}
+
+	/**
+	 * @return the value of feature in position column for the candidate in position row, NaN if
+	 *         it is not set.
+	 */
+	public double get(int row, int column) {
+		return values[row * schema.size() + column];
+	}
+
+	public void set(int row, int column, double value) {
+		values[row * schema.size() + column] = value;
+	}
+
+	/**
+	 * @return a copy of the features of the candidate in position row, in schema order.
+	 */
+	public double[] getRow(int row) {
+		int columns = schema.size();
+		return Arrays.copyOfRange(values, row * columns, (row + 1) * columns);
+	}
+}
@@ -1,23 +1,20 @@
 package it.unipi.di.acube.smaph.learn.featurePacks;
 
 import java.io.Serializable;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class FeaturePack <T extends Object> implements Serializable {
 
 	private static final long serialVersionUID = 1L;
+	private static final ConcurrentHashMap<Class<?>, FeatureSchema> schemas = new ConcurrentHashMap<>();
 	private double[] featuresArray;
 
 	public FeaturePack(HashMap<String, Double> features){
 		if (features == null)
 			return;
 		checkFeatures(features);
-		featuresArray = new double[this.getFeatureCount()];
-		
-		for (String ftrName : getFeatureNames())
-			featuresArray[ftrNameToArrayPosition(ftrName)] = features
-					.containsKey(ftrName) ? features.get(ftrName) : Double.NaN;
+		featuresArray = getSchema().toArray(features);
 	}
 	
 	public abstract void checkFeatures(HashMap<String, Double> features);
@@ -28,6 +25,14 @@ public abstract class FeaturePack <T extends Object> implements Serializable {
 	 */
 	public abstract String[] getFeatureNames();
 
+	/**
+	 * @return the schema of the features of this type of feature pack, compiled from
+	 *         {@link #getFeatureNames()} on first use.
+	 */
+	public FeatureSchema getSchema() {
+		return schemas.computeIfAbsent(getClass(), c -> new FeatureSchema(getFeatureNames()));
+	}
+
 	/**
 	 * @param ftrName
 	 *            the feature name
@@ -35,7 +40,7 @@ public abstract class FeaturePack <T extends Object> implements Serializable {
 	 *         feature does not exist.
 	 */
 	public int ftrNameToId(String ftrName) {
-		int idx = Arrays.asList(getFeatureNames()).indexOf(ftrName);
+		int idx = getSchema().getPosition(ftrName);
 		if (idx == -1)
 			return -1;
 		return idx + 1;
@@ -49,11 +54,26 @@ public abstract class FeaturePack <T extends Object> implements Serializable {
 		return featuresArray[ftrNameToArrayPosition(ftrName)];
 	}
 
+	/**
+	 * @return the value of the feature in the given array position, NaN if it is not set.
+	 */
+	public double getFeature(int position) {
+		return featuresArray[position];
+	}
+
+	/**
+	 * Copy the feature array (NaN for the features that are not set) in dst, starting from
+	 * position offset.
+	 */
+	public void copyFeatures(double[] dst, int offset) {
+		System.arraycopy(featuresArray, 0, dst, offset, featuresArray.length);
+	}
+
 	public String ftrIdToName(int featureId) {
-		return getFeatureNames()[featureId - 1];
+		return getSchema().getName(featureId - 1);
 	}
 	public int getFeatureCount() {
-		return getFeatureNames().length;
+		return getSchema().size();
 	}
 
 	public boolean featureIsSet(String ftrName) {
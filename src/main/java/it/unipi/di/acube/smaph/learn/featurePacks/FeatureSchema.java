@@ -0,0 +1,89 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The names of the features of a type of feature pack, compiled into an index from name to
+ * position in the feature array. Schemas are immutable and shared by all the feature packs of the
+ * same type (see {@link FeaturePack#getSchema()}).
+ */
+public class FeatureSchema {
+	private final String[] names;
+	private final Object2IntOpenHashMap<String> nameToPosition;
+
+	public FeatureSchema(String[] names) {
+		this.names = Arrays.copyOf(names, names.length);
+		nameToPosition = new Object2IntOpenHashMap<>(names.length);
+		nameToPosition.defaultReturnValue(-1);
+		for (int i = 0; i < names.length; i++)
+			nameToPosition.put(names[i], i);
+	}
+
+	/**
+	 * @return the number of features.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return the name of the feature in the given position.
+	 */
+	public String getName(int position) {
+		return names[position];
+	}
+
+	/**
+	 * @return the position of the feature in the feature array, or -1 if such a feature does not
+	 *         exist.
+	 */
+	public int getPosition(String ftrName) {
+		return nameToPosition.getInt(ftrName);
+	}
+
+	/**
+	 * @param ftrIds
+	 *            feature ids (positions plus one, as in the models), or null.
+	 * @return the names of the features with the given ids, null if ftrIds is null. Ids that do not
+	 *         correspond to any feature are ignored.
+	 */
+	public Set<String> getNames(int[] ftrIds) {
+		if (ftrIds == null)
+			return null;
+		Set<String> res = new HashSet<>();
+		for (int ftrId : ftrIds)
+			if (ftrId >= 1 && ftrId <= names.length)
+				res.add(names[ftrId - 1]);
+		return res;
+	}
+
+	/**
+	 * @throws RuntimeException
+	 *             if features contains a feature that does not exist.
+	 */
+	public void check(Map<String, Double> features) {
+		for (String ftrName : features.keySet())
+			if (getPosition(ftrName) < 0)
+				throw new RuntimeException("Feature " + ftrName + " does not exist!");
+	}
+
+	/**
+	 * @return the feature array of features, with NaN for the features that are not set.
+	 *         Features that do not exist are ignored.
+	 */
+	public double[] toArray(Map<String, Double> features) {
+		double[] res = new double[names.length];
+		Arrays.fill(res, Double.NaN);
+		for (Map.Entry<String, Double> feature : features.entrySet()) {
+			int position = getPosition(feature.getKey());
+			if (position >= 0)
+				res[position] = feature.getValue();
+		}
+		return res;
+	}
+}
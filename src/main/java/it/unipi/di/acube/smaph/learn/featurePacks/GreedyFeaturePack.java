@@ -11,8 +11,9 @@ import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
+import it.unipi.di.acube.smaph.RelatednessMatrix;
 import it.unipi.di.acube.smaph.SmaphUtils;
-import it.unipi.di.acube.smaph.WATRelatednessComputer;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
 import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
 
@@ -25,6 +26,10 @@ public class GreedyFeaturePack extends FeaturePack<Annotation> {
 	private static String[] ftrNames = null;
 	
 	private static final long serialVersionUID = 1L;
+	/** The features computed from the relatedness among the entities. */
+	public static final String[] RELATEDNESS_FEATURES = new String[] { "max_relatedness_before", "avg_relatedness_before",
+	        "max_relatedness_mw_before", "min_relatedness_mw", "max_relatedness_mw", "min_relatedness_diff",
+	        "avg_relatedness_diff", "min_relatedness_mw_diff", "max_relatedness_mw_diff" };
 
 	public <A extends Annotation> GreedyFeaturePack(Annotation a, String query, QueryInformation qi, HashSet<A> partialSolution,
 	        WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a) {
@@ -34,62 +39,140 @@ public class GreedyFeaturePack extends FeaturePack<Annotation> {
 	public GreedyFeaturePack() {
 		super(null);
 	}
-	
+
+	/**
+	 * @param features
+	 *            the features, as returned by
+	 *            {@link #getFeatures(HashMap, Annotation, PartialSolutionFeatures)}.
+	 */
+	public GreedyFeaturePack(HashMap<String, Double> features) {
+		super(features);
+	}
+
 	public static <A extends Annotation> HashMap<String, Double> getFeaturesStatic(Annotation a, String query,
 	        QueryInformation qi, HashSet<A> partialSolution, WikipediaInterface wikiApi, WikipediaToFreebase w2f,
 	        EntityToAnchors e2a) {
-		HashMap<String, Double> annotationFeatures = AnnotationFeaturePack.getFeaturesStatic(a, query, qi, wikiApi, w2f, e2a);
-
-		int queryTokens = SmaphUtils.tokenize(query).size();
+		RelatednessMatrix relatedness = null;
+		if (qi.isFeatureUsed(RELATEDNESS_FEATURES)) {
+			HashSet<Integer> entities = new HashSet<>();
+			entities.add(a.getConcept());
+			for (Annotation aS : partialSolution)
+				entities.add(aS.getConcept());
+			relatedness = qi.getRelatednessMatrix(entities);
+		}
+		return getFeatures(getSolutionIndependentFeatures(a, query, qi, wikiApi, w2f, e2a), a,
+		        new PartialSolutionFeatures(qi.getTextContext(query), relatedness, partialSolution));
+	}
 
-		int coveredTokensBefore = 0;
-		for (Annotation aS : partialSolution)
-			coveredTokensBefore += SmaphUtils.tokenize(query.substring(aS.getPosition(), aS.getPosition() + aS.getLength()))
-			        .size();
+	/**
+	 * @return the features of annotation a that do not depend on the partial solution, to be
+	 *         completed by {@link #getFeatures(HashMap, Annotation, PartialSolutionFeatures)}.
+	 */
+	public static HashMap<String, Double> getSolutionIndependentFeatures(Annotation a, String query, QueryInformation qi,
+	        WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a) {
+		HashMap<String, Double> annotationFeatures = new HashMap<>(
+		        AnnotationFeaturePack.getCachedFeatures(a, query, qi, wikiApi, w2f, e2a).getFeatures());
 
-		int coveredTokensAnnotation = SmaphUtils.tokenize(query.substring(a.getPosition(), a.getPosition() + a.getLength()))
-		        .size();
+		QueryTextContext text = qi.getTextContext(query);
+		int queryTokens = text.getTokenCount();
+		int coveredTokensAnnotation = text.getTokenCount(a.getPosition(), a.getPosition() + a.getLength());
 
 		// Features: coverage
 		annotationFeatures.put("covered_tokens_incr", (double) coveredTokensAnnotation);
 		annotationFeatures.put("covered_tokens_incr_ratio", ((double) coveredTokensAnnotation) / queryTokens);
-		annotationFeatures.put("covered_tokens_after", (double) coveredTokensAnnotation + coveredTokensBefore);
 
-		Pair<Double, Double> lpSumAndAvg = BindingFeaturePack.getLpSumAvg(query);
+		Pair<Double, Double> lpSumAndAvg = BindingFeaturePack.getSegmentsLpSumAvg(query, qi);
 		annotationFeatures.put("segments_lp_sum", lpSumAndAvg.first);
 		annotationFeatures.put("segments_lp_avg", lpSumAndAvg.second);
-		annotationFeatures.put("segments_lp_ratio", lpSumAndAvg.first / (partialSolution.size() + 1));
+		return annotationFeatures;
+	}
+
+	/**
+	 * Features of a partial solution, shared by all the candidate annotations of a greedy step.
+	 */
+	public static class PartialSolutionFeatures {
+		private final int size;
+		private final int coveredTokens;
+		private final RelatednessMatrix relatedness;
+		/** Ids in the relatedness matrix of the concepts of the partial solution, in iteration order. */
+		private final int[] solutionIds;
+		private double minRelBefore, maxRelBefore, avgRelBefore, minRelMwBefore, maxRelMwBefore;
+
+		/**
+		 * @param relatedness
+		 *            a relatedness matrix including the concepts of the partial solution and of all
+		 *            the candidate annotations these features will be completed with, or null if
+		 *            the relatedness features are not used (they are set to NaN).
+		 */
+		public <A extends Annotation> PartialSolutionFeatures(QueryTextContext text, RelatednessMatrix relatedness,
+		        HashSet<A> partialSolution) {
+			size = partialSolution.size();
+			this.relatedness = relatedness;
+			solutionIds = new int[size];
+			int coveredTokensBefore = 0;
+			int i = 0;
+			for (Annotation aS : partialSolution) {
+				coveredTokensBefore += text.getTokenCount(aS.getPosition(), aS.getPosition() + aS.getLength());
+				solutionIds[i++] = relatedness == null ? -1 : relatedness.getId(aS.getConcept());
+			}
+			coveredTokens = coveredTokensBefore;
+
+			if (partialSolution.size() >= 1 && relatedness != null) {
+				Vector<Double> relatednessPairsJaccardBefore = new Vector<>();
+				Vector<Double> relatednessPairsMWBefore = new Vector<>();
+				for (int i1 = 0; i1 < size; i1++)
+					for (int i2 = 0; i2 < size; i2++)
+						if (i1 != i2) {
+							relatednessPairsJaccardBefore
+							.add(relatedness.getJaccardRelatedness(solutionIds[i1], solutionIds[i2]));
+							relatednessPairsMWBefore.add(relatedness.getMwRelatedness(solutionIds[i1], solutionIds[i2]));
+						}
+
+				Triple<Double, Double, Double> minMaxAvgRelJaccardPS = SmaphUtils.getMinMaxAvg(relatednessPairsJaccardBefore);
+				minRelBefore = minMaxAvgRelJaccardPS.getLeft();
+				maxRelBefore = minMaxAvgRelJaccardPS.getMiddle();
+				avgRelBefore = minMaxAvgRelJaccardPS.getRight();
+
+				Triple<Double, Double, Double> minMaxAvgRelMWPS = SmaphUtils.getMinMaxAvg(relatednessPairsMWBefore);
+				minRelMwBefore = minMaxAvgRelMWPS.getLeft();
+				maxRelMwBefore = minMaxAvgRelMWPS.getMiddle();
+			}
+		}
+	}
+
+	/**
+	 * @param solutionIndependentFeatures
+	 *            the features of a returned by
+	 *            {@link #getSolutionIndependentFeatures(Annotation, String, QueryInformation, WikipediaInterface, WikipediaToFreebase, EntityToAnchors)}
+	 *            (not modified).
+	 * @param partialSolutionFeatures
+	 *            the features of the partial solution.
+	 * @return all the features of a with respect to the partial solution.
+	 */
+	public static HashMap<String, Double> getFeatures(HashMap<String, Double> solutionIndependentFeatures,
+	        Annotation a, PartialSolutionFeatures partialSolutionFeatures) {
+		HashMap<String, Double> annotationFeatures = new HashMap<>(solutionIndependentFeatures);
+		PartialSolutionFeatures ps = partialSolutionFeatures;
+
+		annotationFeatures.put("covered_tokens_after", annotationFeatures.get("covered_tokens_incr") + ps.coveredTokens);
+		annotationFeatures.put("segments_lp_ratio", annotationFeatures.get("segments_lp_sum") / (ps.size + 1));
 		
-		if (partialSolution.size() >= 1) {
+		if (ps.size >= 1 && ps.relatedness == null) {
+			for (String ftrName : RELATEDNESS_FEATURES)
+				annotationFeatures.put(ftrName, Double.NaN);
+		} else if (ps.size >= 1) {
 			// Features: Annotation -- partial solution
-			Vector<Double> relatednessPairsJaccardBefore = new Vector<>();
-			Vector<Double> relatednessPairsMWBefore = new Vector<>();
-			for (Annotation a1 : partialSolution)
-				for (Annotation a2 : partialSolution)
-					if (a1 != a2) {
-						relatednessPairsJaccardBefore
-						.add(WATRelatednessComputer.getJaccardRelatedness(a1.getConcept(), a2.getConcept()));
-						relatednessPairsMWBefore.add(WATRelatednessComputer.getMwRelatedness(a1.getConcept(), a2.getConcept()));
-					}
-
-			Triple<Double, Double, Double> minMaxAvgRelJaccardPS = SmaphUtils.getMinMaxAvg(relatednessPairsJaccardBefore);
-			double minRelBefore = minMaxAvgRelJaccardPS.getLeft();
-			double maxRelBefore = minMaxAvgRelJaccardPS.getMiddle();
-			double avgRelBefore = minMaxAvgRelJaccardPS.getRight();
-			annotationFeatures.put("max_relatedness_before", maxRelBefore);
-			annotationFeatures.put("avg_relatedness_before", avgRelBefore);
-
-			Triple<Double, Double, Double> minMaxAvgRelMWPS = SmaphUtils.getMinMaxAvg(relatednessPairsMWBefore);
-			double minRelMwBefore = minMaxAvgRelMWPS.getLeft();
-			double maxRelMwBefore = minMaxAvgRelMWPS.getMiddle();
-			annotationFeatures.put("max_relatedness_mw_before", maxRelMwBefore);
+			annotationFeatures.put("max_relatedness_before", ps.maxRelBefore);
+			annotationFeatures.put("avg_relatedness_before", ps.avgRelBefore);
+			annotationFeatures.put("max_relatedness_mw_before", ps.maxRelMwBefore);
 
 			// Features: partial solution
 			Vector<Double> relatednessPairsJaccardThisA = new Vector<>();
 			Vector<Double> relatednessPairsMWThisA = new Vector<>();
-			for (Annotation aS : partialSolution) {
-				relatednessPairsJaccardThisA.add(WATRelatednessComputer.getJaccardRelatedness(a.getConcept(), aS.getConcept()));
-				relatednessPairsMWThisA.add(WATRelatednessComputer.getMwRelatedness(a.getConcept(), aS.getConcept()));
+			int id = ps.relatedness.getId(a.getConcept());
+			for (int idS : ps.solutionIds) {
+				relatednessPairsJaccardThisA.add(ps.relatedness.getJaccardRelatedness(id, idS));
+				relatednessPairsMWThisA.add(ps.relatedness.getMwRelatedness(id, idS));
 			}
 
 			Triple<Double, Double, Double> minMaxAvgRelJaccard = SmaphUtils.getMinMaxAvg(relatednessPairsJaccardThisA);
@@ -103,13 +186,13 @@ public class GreedyFeaturePack extends FeaturePack<Annotation> {
 			annotationFeatures.put("max_relatedness_mw", maxRelMW);
 			
 			// Features: difference wrt partial solution
-			double newMinRelatedness = Math.min(minRel, minRelBefore);
-			double newMinRelatednessMw = Math.min(minRelMW, minRelMwBefore);
-			double newMaxRelatednessMw = Math.max(maxRelMW, maxRelMwBefore);
-			annotationFeatures.put("min_relatedness_diff", newMinRelatedness - minRelBefore);
-			annotationFeatures.put("avg_relatedness_diff", avgRel - avgRelBefore);
-			annotationFeatures.put("min_relatedness_mw_diff", newMinRelatednessMw - minRelMwBefore);
-			annotationFeatures.put("max_relatedness_mw_diff", newMaxRelatednessMw - maxRelMwBefore);
+			double newMinRelatedness = Math.min(minRel, ps.minRelBefore);
+			double newMinRelatednessMw = Math.min(minRelMW, ps.minRelMwBefore);
+			double newMaxRelatednessMw = Math.max(maxRelMW, ps.maxRelMwBefore);
+			annotationFeatures.put("min_relatedness_diff", newMinRelatedness - ps.minRelBefore);
+			annotationFeatures.put("avg_relatedness_diff", avgRel - ps.avgRelBefore);
+			annotationFeatures.put("min_relatedness_mw_diff", newMinRelatednessMw - ps.minRelMwBefore);
+			annotationFeatures.put("max_relatedness_mw_diff", newMaxRelatednessMw - ps.maxRelMwBefore);
 		} else {
 			// In case the partial solution is empty (first step), these features get the same values and will be discarded.
 			annotationFeatures.put("max_relatedness_before", 0.0);
@@ -157,10 +240,6 @@ public class GreedyFeaturePack extends FeaturePack<Annotation> {
 
 	@Override
 	public void checkFeatures(HashMap<String, Double> features) {
-		String[] ftrNames = getFeatureNames();
-		for (String ftrName : features.keySet())
-			if (!Arrays.asList(ftrNames).contains(ftrName))
-				throw new RuntimeException("Feature " + ftrName
-						+ " does not exist!");
+		getSchema().check(features);
 	}
 }
@@ -0,0 +1,62 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A set of features compiled against a {@link FeatureSchema}: the positions of the features that
+ * are set and their values, next to the original map. Instances are immutable, so they can be
+ * computed once and aggregated many times (e.g. the features of an annotation, shared by all the
+ * bindings that include it).
+ */
+public class SparseFeatureVector {
+	private final Map<String, Double> features;
+	private final int[] positions;
+	private final double[] values;
+
+	/**
+	 * @throws RuntimeException
+	 *             if features contains a feature that does not exist in schema.
+	 */
+	public SparseFeatureVector(Map<String, Double> features, FeatureSchema schema) {
+		this.features = Collections.unmodifiableMap(features);
+		positions = new int[features.size()];
+		values = new double[features.size()];
+		int i = 0;
+		for (Map.Entry<String, Double> ftr : features.entrySet()) {
+			positions[i] = schema.getPosition(ftr.getKey());
+			if (positions[i] < 0)
+				throw new RuntimeException("Feature " + ftr.getKey() + " does not exist!");
+			values[i] = ftr.getValue();
+			i++;
+		}
+	}
+
+	/**
+	 * @return the (unmodifiable) features.
+	 */
+	public Map<String, Double> getFeatures() {
+		return features;
+	}
+
+	/**
+	 * @return the number of features that are set.
+	 */
+	public int size() {
+		return positions.length;
+	}
+
+	/**
+	 * @return the schema position of the i-th feature that is set.
+	 */
+	public int getPosition(int i) {
+		return positions[i];
+	}
+
+	/**
+	 * @return the value of the i-th feature that is set.
+	 */
+	public double getValue(int i) {
+		return values[i];
+	}
+}
@@ -0,0 +1,144 @@
+package it.unipi.di.acube.smaph.learn.models;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+/**
+ * A libsvm model with an RBF kernel, compiled into a dense matrix of its support vectors over the
+ * features they reference (the columns of the model), their coefficients, gamma and rho. A
+ * candidate is a dense vector over the same columns, 0 for the features it does not provide.
+ * Prediction is a loop over primitive arrays that returns the same value as svm.svm_predict: the
+ * squared distances are summed in order of feature id, as libsvm does when merging sparse vectors,
+ * and the kernel values are summed in order of support vector. Instances are immutable.
+ */
+public class CompiledRbfModel {
+	private final int svmType;
+	/** Feature ids of the columns, in ascending order. */
+	private final int[] columns;
+	/** Value of support vector i for column j, stored in position i * columns.length + j. */
+	private final double[] supportVectors;
+	private final double[] coefs;
+	private final double gamma;
+	private final double rho;
+	private final int[] labels;
+
+	private CompiledRbfModel(svm_model model, int[] columns) {
+		this.svmType = model.param.svm_type;
+		this.columns = columns;
+		this.supportVectors = new double[model.l * columns.length];
+		for (int i = 0; i < model.l; i++)
+			for (svm_node node : model.SV[i])
+				supportVectors[i * columns.length + Arrays.binarySearch(columns, node.index)] = node.value;
+		this.coefs = Arrays.copyOf(model.sv_coef[0], model.l);
+		this.gamma = model.param.gamma;
+		this.rho = model.rho[0];
+		this.labels = model.label == null ? null : Arrays.copyOf(model.label, model.label.length);
+	}
+
+	/**
+	 * @return the compiled model, or null if the model is not supported: its kernel is not RBF,
+	 *         it is a classifier of more than two classes, or its support vectors are not sorted by
+	 *         feature id (in which case libsvm would not merge them correctly).
+	 */
+	public static CompiledRbfModel compile(svm_model model) {
+		if (model.param.kernel_type != svm_parameter.RBF)
+			return null;
+		boolean classifier = model.param.svm_type == svm_parameter.C_SVC || model.param.svm_type == svm_parameter.NU_SVC;
+		if (classifier && model.nr_class != 2)
+			return null;
+		TreeSet<Integer> columns = new TreeSet<>();
+		for (int i = 0; i < model.l; i++)
+			for (int j = 0; j < model.SV[i].length; j++) {
+				if (j > 0 && model.SV[i][j].index <= model.SV[i][j - 1].index)
+					return null;
+				columns.add(model.SV[i][j].index);
+			}
+		return new CompiledRbfModel(model, columns.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * @return the number of columns of the model.
+	 */
+	public int getDimension() {
+		return columns.length;
+	}
+
+	/**
+	 * @return the column of feature ftrId, -1 if the model does not read it.
+	 */
+	public int getColumn(int ftrId) {
+		int column = Arrays.binarySearch(columns, ftrId);
+		return column < 0 ? -1 : column;
+	}
+
+	/**
+	 * @param x
+	 *            the candidate, as a dense vector over the columns of the model.
+	 * @return the value that svm.svm_predict returns for the candidate: the decision value for
+	 *         regression models, the predicted label for classifiers.
+	 */
+	public double predict(double[] x) {
+		return toPrediction(decisionValue(x));
+	}
+
+	/**
+	 * @return the decision value of the model for candidate x (a dense vector over the columns of
+	 *         the model).
+	 */
+	public double decisionValue(double[] x) {
+		int dimension = columns.length;
+		double sum = 0;
+		for (int i = 0, offset = 0; i < coefs.length; i++, offset += dimension) {
+			double dist = 0;
+			for (int j = 0; j < dimension; j++) {
+				double d = x[j] - supportVectors[offset + j];
+				dist += d * d;
+			}
+			sum += coefs[i] * Math.exp(-gamma * dist);
+		}
+		return sum - rho;
+	}
+
+	/**
+	 * @return the value that svm.svm_predict returns for a candidate with the given decision
+	 *         value.
+	 */
+	double toPrediction(double decisionValue) {
+		switch (svmType) {
+		case svm_parameter.ONE_CLASS:
+			return decisionValue > 0 ? 1 : -1;
+		case svm_parameter.C_SVC:
+		case svm_parameter.NU_SVC:
+			return decisionValue > 0 ? labels[0] : labels[1];
+		default:
+			return decisionValue;
+		}
+	}
+
+	int getSupportVectorCount() {
+		return coefs.length;
+	}
+
+	/**
+	 * @return a copy of the i-th support vector, as a dense vector over the columns of the model.
+	 */
+	double[] getSupportVector(int i) {
+		return Arrays.copyOfRange(supportVectors, i * columns.length, (i + 1) * columns.length);
+	}
+
+	double getCoef(int i) {
+		return coefs[i];
+	}
+
+	double getGamma() {
+		return gamma;
+	}
+
+	double getRho() {
+		return rho;
+	}
+}
@@ -0,0 +1,254 @@
+package it.unipi.di.acube.smaph.learn.models;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ciir.umass.edu.learning.Ranker;
+import ciir.umass.edu.learning.tree.Ensemble;
+import ciir.umass.edu.learning.tree.LambdaMART;
+import ciir.umass.edu.learning.tree.RegressionTree;
+import ciir.umass.edu.learning.tree.Split;
+
+/**
+ * A RankLib tree ensemble (MART or LambdaMART), compiled into flat arrays of node features,
+ * thresholds, children and leaf outputs. Evaluation is a loop over primitive arrays that returns
+ * the same value as Ranker.eval on the DataPoint built by {@link RankLibModel#ftrVectToString}:
+ * feature values go through the same "%.16f" formatting and float parsing (see
+ * {@link #toRankLibValue(double)}), NaN values read as 0, a node sends a value to its left child
+ * if it is lower than or equal to the threshold, and the tree outputs are summed in float, in
+ * order of tree. Instances are immutable.
+ *
+ * {@link #getBestIndex(List)} finds the best of a set of candidates without evaluating all trees
+ * for all of them: a candidate is dropped as soon as its partial score, plus the highest output
+ * the remaining trees can give, falls below the best score found so far.
+ */
+public class CompiledTreeEnsemble {
+	private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	/** Number of trees evaluated for all candidates, to decide in which order to complete them. */
+	private static final int WARMUP_TREES = 16;
+	/** Feature ids (1-based) read by the ensemble, in ascending order. */
+	private final int[] columns;
+	/** Column of the feature tested by each node, -1 for leaves. */
+	private final int[] nodeColumns;
+	private final float[] thresholds;
+	private final int[] left;
+	private final int[] right;
+	private final double[] outputs;
+	/** Root node of each tree. */
+	private final int[] roots;
+	private final float[] weights;
+	/** Highest weighted output of trees t, t+1, ..., summed, in position t. */
+	private final double[] remainingMax;
+	/** Highest absolute weighted output of trees t, t+1, ..., summed, in position t. */
+	private final double[] remainingAbs;
+
+	private CompiledTreeEnsemble(int[] columns, int[] nodeColumns, float[] thresholds, int[] left, int[] right,
+	        double[] outputs, int[] roots, float[] weights) {
+		this.columns = columns;
+		this.nodeColumns = nodeColumns;
+		this.thresholds = thresholds;
+		this.left = left;
+		this.right = right;
+		this.outputs = outputs;
+		this.roots = roots;
+		this.weights = weights;
+		this.remainingMax = new double[roots.length + 1];
+		this.remainingAbs = new double[roots.length + 1];
+		for (int t = roots.length - 1; t >= 0; t--) {
+			int end = t + 1 < roots.length ? roots[t + 1] : nodeColumns.length;
+			double max = Double.NEGATIVE_INFINITY, abs = 0;
+			for (int n = roots[t]; n < end; n++)
+				if (nodeColumns[n] == -1) {
+					max = Math.max(max, outputs[n] * weights[t]);
+					abs = Math.max(abs, Math.abs(outputs[n] * weights[t]));
+				}
+			remainingMax[t] = remainingMax[t + 1] + max;
+			remainingAbs[t] = remainingAbs[t + 1] + abs;
+		}
+	}
+
+	/**
+	 * @return the compiled ensemble, or null if the ranker is not supported (it is not a MART or
+	 *         LambdaMART ranker, or its trees could not be read).
+	 */
+	public static CompiledTreeEnsemble compile(Ranker ranker) {
+		if (!(ranker instanceof LambdaMART))
+			return null;
+		Ensemble ensemble = ((LambdaMART) ranker).getEnsemble();
+		try {
+			Field rootField = RegressionTree.class.getDeclaredField("root");
+			Field featureField = Split.class.getDeclaredField("featureID");
+			Field thresholdField = Split.class.getDeclaredField("threshold");
+			rootField.setAccessible(true);
+			featureField.setAccessible(true);
+			thresholdField.setAccessible(true);
+
+			List<Split> nodes = new ArrayList<>();
+			int[] roots = new int[ensemble.treeCount()];
+			float[] weights = new float[ensemble.treeCount()];
+			for (int t = 0; t < ensemble.treeCount(); t++) {
+				roots[t] = nodes.size();
+				weights[t] = ensemble.getWeight(t);
+				nodes.add((Split) rootField.get(ensemble.getTree(t)));
+				// Nodes are numbered in breadth-first order, children come after their parent.
+				for (int n = roots[t]; n < nodes.size(); n++)
+					if (featureField.getInt(nodes.get(n)) != -1) {
+						nodes.add(nodes.get(n).getLeft());
+						nodes.add(nodes.get(n).getRight());
+					}
+			}
+
+			TreeSet<Integer> columnSet = new TreeSet<>();
+			for (Split node : nodes)
+				if (featureField.getInt(node) != -1)
+					columnSet.add(featureField.getInt(node));
+			int[] columns = columnSet.stream().mapToInt(Integer::intValue).toArray();
+
+			int[] nodeColumns = new int[nodes.size()];
+			float[] thresholds = new float[nodes.size()];
+			int[] left = new int[nodes.size()];
+			int[] right = new int[nodes.size()];
+			double[] outputs = new double[nodes.size()];
+			for (int t = 0; t < roots.length; t++) {
+				int end = t + 1 < roots.length ? roots[t + 1] : nodes.size();
+				int child = roots[t] + 1;
+				for (int n = roots[t]; n < end; n++) {
+					Split node = nodes.get(n);
+					int ftrId = featureField.getInt(node);
+					if (ftrId == -1) {
+						nodeColumns[n] = -1;
+						outputs[n] = node.getOutput();
+					} else {
+						nodeColumns[n] = Arrays.binarySearch(columns, ftrId);
+						thresholds[n] = thresholdField.getFloat(node);
+						left[n] = child++;
+						right[n] = child++;
+					}
+				}
+			}
+			return new CompiledTreeEnsemble(columns, nodeColumns, thresholds, left, right, outputs, roots, weights);
+		} catch (ReflectiveOperationException | SecurityException e) {
+			LOG.warn("Could not compile the RankLib ensemble, falling back to the RankLib ranker.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the number of trees of the ensemble.
+	 */
+	public int getTreeCount() {
+		return roots.length;
+	}
+
+	/**
+	 * @param ftrVect
+	 *            the features of the candidate, feature id i in position i - 1.
+	 * @return the value that Ranker.eval returns for the DataPoint of the candidate.
+	 */
+	public double eval(double[] ftrVect) {
+		return eval(toColumns(ftrVect), 0, roots.length, 0);
+	}
+
+	/**
+	 * @param ftrVects
+	 *            the features of the candidates, feature id i in position i - 1.
+	 * @return the index of the candidate with the highest {@link #eval(double[])} value (the first
+	 *         one, in case of ties), or -1 if there is none higher than negative infinity.
+	 */
+	public int getBestIndex(List<double[]> ftrVects) {
+		int warmup = Math.min(WARMUP_TREES, roots.length);
+		float[][] xs = new float[ftrVects.size()][];
+		float[] partialScores = new float[ftrVects.size()];
+		for (int i = 0; i < xs.length; i++) {
+			xs[i] = toColumns(ftrVects.get(i));
+			partialScores[i] = eval(xs[i], 0, warmup, 0);
+		}
+
+		// Candidates with a high partial score are completed first, so that the others are dropped early.
+		Integer[] order = new Integer[xs.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingDouble((Integer i) -> -partialScores[i]));
+
+		int best = -1;
+		float bestScore = Float.NEGATIVE_INFINITY;
+		for (int i : order) {
+			float score = partialScores[i];
+			int t = warmup;
+			while (t < roots.length && !isBelow(score, t, bestScore)) {
+				score = eval(xs[i], t, t + 1, score);
+				t++;
+			}
+			if (t == roots.length && (score > bestScore || score == bestScore && best != -1 && i < best)) {
+				best = i;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return whether a candidate with a partial score of score after the first t trees is
+	 *         certainly below bestScore once all trees are evaluated. The bound includes the
+	 *         rounding errors of the float sum.
+	 */
+	private boolean isBelow(float score, int t, float bestScore) {
+		double roundingError = (roots.length - t + 1) * 0x1p-23 * (Math.abs(score) + remainingAbs[t]);
+		return score + remainingMax[t] + roundingError < bestScore;
+	}
+
+	private float[] toColumns(double[] ftrVect) {
+		if (columns.length > 0 && columns[columns.length - 1] > ftrVect.length)
+			throw new IllegalArgumentException(String.format("The model reads feature %d, the vector has %d features.",
+			        columns[columns.length - 1], ftrVect.length));
+		float[] x = new float[columns.length];
+		for (int j = 0; j < columns.length; j++)
+			x[j] = toRankLibValue(ftrVect[columns[j] - 1]);
+		return x;
+	}
+
+	/**
+	 * @return score plus the outputs of trees from ... to - 1 for candidate x.
+	 */
+	private float eval(float[] x, int from, int to, float score) {
+		for (int t = from; t < to; t++) {
+			int n = roots[t];
+			while (nodeColumns[n] != -1)
+				n = x[nodeColumns[n]] <= thresholds[n] ? left[n] : right[n];
+			score = (float) (score + outputs[n] * weights[t]);
+		}
+		return score;
+	}
+
+	/**
+	 * @return the value RankLib reads for a feature value written by
+	 *         {@link RankLibModel#ftrVectToString}: the value rounded to 16 decimal digits, parsed
+	 *         as a float, 0 if unknown (NaN). This is (float) value unless value is so close to a
+	 *         number halfway between two floats that the decimal rounding could change side, or so
+	 *         small that the decimal rounding could change it, in which case the value is formatted
+	 *         and parsed as RankLib does.
+	 */
+	static float toRankLibValue(double value) {
+		if (Double.isNaN(value))
+			return 0;
+		float f = (float) value;
+		if (value == 0 || Double.isInfinite(value))
+			return f;
+		// Distance from the decimal written by String.format, with some slack.
+		double margin = 2 * (Math.ulp(value) + 1e-16);
+		if (Math.abs(f) < Float.MAX_VALUE && Math.abs(value) > 1e-6
+		        && Math.abs(value - ((double) f + Math.nextDown(f)) / 2) > margin
+		        && Math.abs(value - ((double) f + Math.nextUp(f)) / 2) > margin)
+			return f;
+		float parsed = Float.parseFloat(String.format("%.16f", value));
+		return Float.isNaN(parsed) ? 0 : parsed;
+	}
+}
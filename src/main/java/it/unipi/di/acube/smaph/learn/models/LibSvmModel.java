@@ -20,8 +20,16 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
 import java.net.URL;
+import java.util.Collections;
+import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unipi.di.acube.smaph.ParallelExtraction;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureMatrix;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 import libsvm.svm;
@@ -36,8 +44,13 @@ import libsvm.svm_node;
  */
 public abstract class LibSvmModel<T> implements Serializable {
 	private static final long serialVersionUID = 1L;
+	private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	private svm_model model;
 	private URL modelURL;
+	private transient int[] usedFtr;
+	private transient CompiledRbfModel compiledModel;
+	private transient boolean compiled;
+	private transient RandomFourierRbfModel approximatedModel;
 
 	public static svm_node[] featuresArrayToNode(double[] ftrArray, int[] pickedFtrsI) {
 		svm_node[] ftrVect = new svm_node[pickedFtrsI.length];
@@ -56,23 +69,128 @@ public abstract class LibSvmModel<T> implements Serializable {
 
 	public LibSvmModel(svm_model model) {
 		this.model = model;
+		compile();
+	}
+
+	private synchronized void compile() {
+		compiledModel = CompiledRbfModel.compile(model);
+		compiled = true;
+		approximatedModel = null;
+	}
+
+	/**
+	 * Serve predictions through a random Fourier approximation of the kernel (see
+	 * {@link RandomFourierRbfModel}) instead of the exact model. Models that cannot be compiled
+	 * (see {@link CompiledRbfModel#compile(svm_model)}) are always evaluated exactly.
+	 * 
+	 * @param dimensions
+	 *            the number of random features, 0 to evaluate the exact model.
+	 * @param seed
+	 *            the seed of the random features.
+	 * @param refit
+	 *            whether to refit the approximation to the decision values of the exact model.
+	 */
+	public void setKernelApproximation(int dimensions, long seed, boolean refit) {
+		CompiledRbfModel compiledModel = getCompiledModel();
+		RandomFourierRbfModel approximatedModel = null;
+		if (dimensions > 0 && compiledModel == null)
+			LOG.warn("Model {} can not be approximated, it will be evaluated exactly.", modelURL);
+		else if (dimensions > 0)
+			approximatedModel = RandomFourierRbfModel.fromModel(compiledModel, dimensions, seed, refit);
+		synchronized (this) {
+			this.approximatedModel = approximatedModel;
+		}
+	}
+
+	private synchronized RandomFourierRbfModel getApproximatedModel() {
+		return approximatedModel;
+	}
+
+	/**
+	 * @return the model compiled into dense arrays, null if it cannot be compiled. Models are
+	 *         compiled when they are loaded, or on first use if they have been deserialized.
+	 */
+	private synchronized CompiledRbfModel getCompiledModel() {
+		if (!compiled)
+			compile();
+		return compiledModel;
 	}
 
 	public boolean predict(FeaturePack<T> fp, FeatureNormalizer fn) {
 		return predictScore(fp, fn) > 0.0;
 	}
 
-	private int[] getUsedFtr() {
-		svm_node[] firstSv = model.SV[0];
-		int[] res = new int[firstSv.length];
-		for (int i = 0; i < res.length; i++)
-			res[i] = firstSv[i].index;
-		return res;
+	/**
+	 * @return the ids of the features read by the model (those referenced by its support vectors).
+	 */
+	public int[] getUsedFtr() {
+		if (usedFtr == null) {
+			svm_node[] firstSv = model.SV[0];
+			int[] res = new int[firstSv.length];
+			for (int i = 0; i < res.length; i++)
+				res[i] = firstSv[i].index;
+			usedFtr = res;
+		}
+		return usedFtr;
 	}
 
 	public <T2 extends T> double predictScore(FeaturePack<T2> fp, FeatureNormalizer fn) {
-		svm_node[] ftrVect = featuresArrayToNode(fn.ftrToNormalizedFtrArray(fp), getUsedFtr());
-		return svm.svm_predict(model, ftrVect);
+		return predictScores(Collections.singletonList(fp), fn)[0];
+	}
+
+	/**
+	 * @param fps
+	 *            not-yet-normalized features of the candidates.
+	 * @return the scores of the candidates, in the order of fps.
+	 */
+	public double[] predictScores(List<? extends FeaturePack<? extends T>> fps, FeatureNormalizer fn) {
+		if (fps.isEmpty())
+			return new double[0];
+		return predictScores(FeatureMatrix.of(fps), fn);
+	}
+
+	/**
+	 * @param ftrs
+	 *            not-yet-normalized features of the candidates, one per row.
+	 * @return the scores of the candidates, in the order of the rows.
+	 */
+	public double[] predictScores(FeatureMatrix ftrs, FeatureNormalizer fn) {
+		int[] pickedFtrsI = getUsedFtr();
+		int[] pickedPositions = new int[pickedFtrsI.length];
+		for (int i = 0; i < pickedFtrsI.length; i++)
+			pickedPositions[i] = pickedFtrsI[i] - 1;
+		double[] scores = new double[ftrs.rows()];
+		CompiledRbfModel compiledModel = getCompiledModel();
+		RandomFourierRbfModel approximatedModel = getApproximatedModel();
+		if (compiledModel != null) {
+			int[] pickedColumns = new int[pickedFtrsI.length];
+			for (int i = 0; i < pickedFtrsI.length; i++)
+				pickedColumns[i] = compiledModel.getColumn(pickedFtrsI[i]);
+			ParallelExtraction.forEachBlock(scores.length, (start, end) -> {
+				// Buffers are allocated once per block and refilled for each candidate. Only the
+				// features read by the model are normalized, the other columns stay 0.
+				double[] normalizedFtrs = new double[pickedPositions.length];
+				double[] x = new double[compiledModel.getDimension()];
+				for (int row = start; row < end; row++) {
+					fn.normalize(ftrs, row, pickedPositions, normalizedFtrs);
+					for (int i = 0; i < pickedColumns.length; i++)
+						x[pickedColumns[i]] = normalizedFtrs[i];
+					scores[row] = approximatedModel != null ? approximatedModel.predict(x) : compiledModel.predict(x);
+				}
+			});
+			return scores;
+		}
+		ParallelExtraction.forEachBlock(scores.length, (start, end) -> {
+			double[] normalizedFtrs = new double[pickedPositions.length];
+			svm_node[] ftrVect = featuresArrayToNode(new double[ftrs.columns()], pickedFtrsI);
+			for (int row = start; row < end; row++) {
+				fn.normalize(ftrs, row, pickedPositions, normalizedFtrs);
+				for (int i = 0; i < ftrVect.length; i++)
+					ftrVect[i].value = normalizedFtrs[i];
+				scores[row] = svm.svm_predict(model, ftrVect);
+			}
+		});
+		return scores;
 	}
 
 	public String getModel() {
@@ -81,10 +199,12 @@ public abstract class LibSvmModel<T> implements Serializable {
 
 	public void setModel(URL modelFile) {
 		this.modelURL = modelFile;
+		this.usedFtr = null;
 		try {
 			this.model = svm.svm_load_model(new BufferedReader(new InputStreamReader(modelURL.openStream(), "ascii")));
 			if (this.model == null)
 				throw new RuntimeException("Could not load model file.");
+			compile();
 		} catch (IOException e) {
 			e.printStackTrace();
 			throw new RuntimeException(e);
@@ -0,0 +1,170 @@
+package it.unipi.di.acube.smaph.learn.models;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Random;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An approximation of a {@link CompiledRbfModel} through random Fourier features: the RBF kernel
+ * exp(-gamma * |x - y|^2) is approximated by z(x) · z(y), where z(x) = sqrt(2 / D) cos(W x + b),
+ * the rows of W are drawn from N(0, 2 * gamma I) and b from U[0, 2 pi). The decision value of the
+ * model becomes a linear function of z(x), whose cost depends on the number of dimensions D and
+ * not on the number of support vectors.
+ *
+ * The weights of the linear function are the projection of the support vectors (the sum of their
+ * features, weighted by their coefficients). Optionally, they are refitted with ridge regression to
+ * reproduce the exact decision values on the support vectors and on points between pairs of them.
+ * The cost of the refit grows with D^2 times the number of support vectors. Instances are
+ * immutable.
+ */
+public class RandomFourierRbfModel {
+	private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	/** Ridge regularization, relative to the average of the diagonal of the normal equations. */
+	private static final double RIDGE = 1e-6;
+	private final CompiledRbfModel exact;
+	private final int dimensions;
+	/** Row k of W, stored in positions k * exact.getDimension() ... (k + 1) * exact.getDimension() - 1. */
+	private final double[] projections;
+	private final double[] offsets;
+	/** Weight of cos(W_k x + b_k), including the sqrt(2 / D) factors. */
+	private final double[] weights;
+	private double intercept;
+
+	private RandomFourierRbfModel(CompiledRbfModel exact, int dimensions, long seed) {
+		this.exact = exact;
+		this.dimensions = dimensions;
+		int inputDimension = exact.getDimension();
+		Random r = new Random(seed);
+		double stdDev = Math.sqrt(2 * exact.getGamma());
+		projections = new double[dimensions * inputDimension];
+		offsets = new double[dimensions];
+		for (int k = 0; k < dimensions; k++) {
+			for (int j = 0; j < inputDimension; j++)
+				projections[k * inputDimension + j] = r.nextGaussian() * stdDev;
+			offsets[k] = r.nextDouble() * 2 * Math.PI;
+		}
+
+		weights = new double[dimensions];
+		double[] z = new double[dimensions];
+		for (int i = 0; i < exact.getSupportVectorCount(); i++) {
+			features(exact.getSupportVector(i), z);
+			for (int k = 0; k < dimensions; k++)
+				weights[k] += exact.getCoef(i) * z[k];
+		}
+		for (int k = 0; k < dimensions; k++)
+			weights[k] *= 2.0 / dimensions;
+		intercept = -exact.getRho();
+	}
+
+	/**
+	 * @param exact
+	 *            the model to approximate.
+	 * @param dimensions
+	 *            the number of random features.
+	 * @param seed
+	 *            the seed of the random features.
+	 * @param refit
+	 *            whether to refit the weights to the exact decision values.
+	 * @return the approximated model.
+	 */
+	public static RandomFourierRbfModel fromModel(CompiledRbfModel exact, int dimensions, long seed, boolean refit) {
+		RandomFourierRbfModel model = new RandomFourierRbfModel(exact, dimensions, seed);
+		if (refit)
+			model.refit(new Random(seed + 1));
+		return model;
+	}
+
+	/**
+	 * Compute cos(W x + b) into z.
+	 */
+	private void features(double[] x, double[] z) {
+		int inputDimension = x.length;
+		for (int k = 0, offset = 0; k < dimensions; k++, offset += inputDimension) {
+			double dot = offsets[k];
+			for (int j = 0; j < inputDimension; j++)
+				dot += projections[offset + j] * x[j];
+			z[k] = Math.cos(dot);
+		}
+	}
+
+	private void refit(Random r) {
+		int l = exact.getSupportVectorCount();
+		int n = dimensions + 1;
+		double[][] a = new double[n][n];
+		double[] b = new double[n];
+		double[] z = new double[n];
+		z[dimensions] = 1.0;
+		for (int p = 0; p < 2 * l; p++) {
+			double[] x = exact.getSupportVector(p % l);
+			if (p >= l) {
+				double[] other = exact.getSupportVector(r.nextInt(l));
+				for (int j = 0; j < x.length; j++)
+					x[j] = (x[j] + other[j]) / 2;
+			}
+			features(x, z);
+			double y = exact.decisionValue(x);
+			for (int i = 0; i < n; i++) {
+				b[i] += z[i] * y;
+				for (int j = i; j < n; j++)
+					a[i][j] += z[i] * z[j];
+			}
+		}
+		double trace = 0;
+		for (int i = 0; i < n; i++)
+			trace += a[i][i];
+		for (int i = 0; i < n; i++) {
+			a[i][i] += RIDGE * trace / n;
+			for (int j = 0; j < i; j++)
+				a[i][j] = a[j][i];
+		}
+		double[] solution;
+		try {
+			solution = new CholeskyDecomposition(new Array2DRowRealMatrix(a, false)).getSolver()
+			        .solve(new ArrayRealVector(b, false)).toArray();
+		} catch (MathIllegalArgumentException e) {
+			LOG.warn("Could not refit the random Fourier features, keeping the projected weights.", e);
+			return;
+		}
+		System.arraycopy(solution, 0, weights, 0, dimensions);
+		intercept = solution[dimensions];
+	}
+
+	/**
+	 * @return the number of random features.
+	 */
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * @param x
+	 *            the candidate, as a dense vector over the columns of the exact model.
+	 * @return the approximated decision value of the model.
+	 */
+	public double decisionValue(double[] x) {
+		int inputDimension = exact.getDimension();
+		double sum = intercept;
+		for (int k = 0, offset = 0; k < dimensions; k++, offset += inputDimension) {
+			double dot = offsets[k];
+			for (int j = 0; j < inputDimension; j++)
+				dot += projections[offset + j] * x[j];
+			sum += weights[k] * Math.cos(dot);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param x
+	 *            the candidate, as a dense vector over the columns of the exact model.
+	 * @return the approximation of the value returned by {@link CompiledRbfModel#predict(double[])}.
+	 */
+	public double predict(double[] x) {
+		return exact.toPrediction(decisionValue(x));
+	}
+}
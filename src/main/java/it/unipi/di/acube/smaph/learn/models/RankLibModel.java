@@ -1,11 +1,13 @@
 package it.unipi.di.acube.smaph.learn.models;
 
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureMatrix;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
 import java.io.IOException;
 import java.net.URL;
 import java.util.List;
+import java.util.Vector;
 
 import org.apache.commons.io.IOUtils;
 
@@ -17,11 +19,14 @@ import ciir.umass.edu.utilities.Sorter;
 
 public class RankLibModel <T>{
 	private Ranker ranker;
+	/** The ranker compiled into flat arrays, null if its type is not supported. */
+	private CompiledTreeEnsemble compiledEnsemble;
 
 	public RankLibModel(URL modelUrl) throws IOException {
 		RankerFactory rFact = new RankerFactory();
 		String modelStr = IOUtils.toString(modelUrl.openStream());
 		ranker = rFact.loadRankerFromString(modelStr);
+		compiledEnsemble = CompiledTreeEnsemble.compile(ranker);
 	}
 
 	public static String ftrVectToString(double[] ftrVect, int rank, int groupid) {
@@ -38,10 +43,36 @@ public class RankLibModel <T>{
 		return new DenseDataPoint(ftrVectToString(features, 1, 1));
 	}
 
-	private double[] getScores(List<FeaturePack<T>> features, FeatureNormalizer fn) {
-		double[] scores = new double[features.size()];
-		for (int j = 0; j < features.size(); j++)
-			scores[j] = ranker.eval(featuresToDatapointString(fn.ftrToNormalizedFtrArray(features.get(j))));
+	private double eval(double[] ftrVect) {
+		if (compiledEnsemble != null)
+			return compiledEnsemble.eval(ftrVect);
+		return ranker.eval(featuresToDatapointString(ftrVect));
+	}
+
+	/**
+	 * @return the normalized features of each feature pack, in order. All feature packs are
+	 *         normalized at once, one feature at a time.
+	 */
+	private static List<double[]> normalize(List<? extends FeaturePack<?>> features, FeatureNormalizer fn) {
+		List<double[]> ftrVects = new Vector<>();
+		if (features.isEmpty())
+			return ftrVects;
+		FeatureMatrix normalized = fn.normalize(FeatureMatrix.of(features));
+		for (int row = 0; row < normalized.rows(); row++)
+			ftrVects.add(normalized.getRow(row));
+		return ftrVects;
+	}
+
+	/**
+	 * @param features a list of feature packs.
+	 * @param fn the feature normalizer.
+	 * @return the scores of the feature packs, in order.
+	 */
+	public double[] getScores(List<FeaturePack<T>> features, FeatureNormalizer fn) {
+		List<double[]> ftrVects = normalize(features, fn);
+		double[] scores = new double[ftrVects.size()];
+		for (int j = 0; j < scores.length; j++)
+			scores[j] = eval(ftrVects.get(j));
 		return scores;
 	}
 
@@ -63,8 +94,34 @@ public class RankLibModel <T>{
 		return getRanking(features, fn)[0];
 	}
 
+	/**
+	 * @param features a list of feature packs.
+	 * @param fn the feature normalizer.
+	 * @return the index of the feature pack with the highest score (the first one, in case of ties),
+	 *         -1 if there is none higher than negative infinity. When the ranker is compiled, most
+	 *         feature packs are discarded before all trees are evaluated.
+	 */
+	public int getBestIndex(List<FeaturePack<T>> features, FeatureNormalizer fn) {
+		if (compiledEnsemble != null)
+			return compiledEnsemble.getBestIndex(normalize(features, fn));
+		double[] scores = getScores(features, fn);
+		int best = -1;
+		for (int i = 0; i < scores.length; i++)
+			if (best == -1 ? scores[i] > Double.NEGATIVE_INFINITY : scores[i] > scores[best])
+				best = i;
+		return best;
+	}
+
 	public double predictScore(FeaturePack<T> featuresArray, FeatureNormalizer fn) {
-		return ranker.eval(featuresToDatapointString(fn.ftrToNormalizedFtrArray(featuresArray)));
+		return eval(fn.ftrToNormalizedFtrArray(featuresArray));
+	}
+
+	/**
+	 * @return the ids of the features read by the model (those tested by its trees), or null if
+	 *         the ranker does not tell them.
+	 */
+	public int[] getUsedFtr() {
+		return ranker.getFeatures();
 	}
 
 }
\ No newline at end of file
@@ -20,6 +20,8 @@ import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
+import java.util.List;
+
 /**
  * An interface to an Entity filter.
  */
@@ -30,4 +32,23 @@ public interface EntityFilter {
 	 * @return true iff the entity should be kept.
 	 */
 	public boolean filterEntity(FeaturePack<Tag> fp, FeatureNormalizer fn);
+
+	/**
+	 * @param fps
+	 *            not-yet-normalized features of the entities of a query.
+	 * @return for each entity, in the order of fps, true iff it should be kept.
+	 */
+	public default boolean[] filterEntities(List<? extends FeaturePack<Tag>> fps, FeatureNormalizer fn) {
+		boolean[] res = new boolean[fps.size()];
+		for (int i = 0; i < res.length; i++)
+			res[i] = filterEntity(fps.get(i), fn);
+		return res;
+	}
+
+	/**
+	 * @return the ids of the features read by the model, or null if it may read any of them.
+	 */
+	public default int[] getUsedFtr() {
+		return null;
+	}
 }
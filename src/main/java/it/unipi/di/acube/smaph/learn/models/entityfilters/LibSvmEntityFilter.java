@@ -23,6 +23,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.URL;
+import java.util.List;
 
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
@@ -66,6 +67,15 @@ public class LibSvmEntityFilter extends LibSvmModel<Tag> implements EntityFilter
 		return result;
 	}
 
+	@Override
+	public boolean[] filterEntities(List<? extends FeaturePack<Tag>> fps, FeatureNormalizer fn) {
+		double[] scores = predictScores(fps, fn);
+		boolean[] res = new boolean[scores.length];
+		for (int i = 0; i < res.length; i++)
+			res[i] = scores[i] > 0.0;
+		return res;
+	}
+
 	public void toFile(File modelFile) {
 		try {
 			ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(modelFile));
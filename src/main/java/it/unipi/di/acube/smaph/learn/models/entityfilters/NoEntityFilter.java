@@ -20,6 +20,9 @@ import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * An entity filter that does nothing (accepts all entities).
  */
@@ -30,4 +33,16 @@ public class NoEntityFilter implements EntityFilter {
 		return true;
 	}
 
+	@Override
+	public boolean[] filterEntities(List<? extends FeaturePack<Tag>> fps, FeatureNormalizer fn) {
+		boolean[] res = new boolean[fps.size()];
+		Arrays.fill(res, true);
+		return res;
+	}
+
+	@Override
+	public int[] getUsedFtr() {
+		return new int[0];
+	}
+
 }
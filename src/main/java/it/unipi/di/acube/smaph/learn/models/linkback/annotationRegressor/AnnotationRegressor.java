@@ -1,10 +1,30 @@
 package it.unipi.di.acube.smaph.learn.models.linkback.annotationRegressor;
 
 import it.unipi.di.acube.batframework.data.Annotation;
+import it.unipi.di.acube.smaph.ParallelExtraction;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
 import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
+import java.util.List;
+
 public interface AnnotationRegressor {
 	public <A extends Annotation> double predictScore(FeaturePack<A> fp, FeatureNormalizer fn);	
 	public double threshold();	
+
+	/**
+	 * @param fps
+	 *            not-yet-normalized features of the annotations of a query.
+	 * @return the scores of the annotations, in the order of fps.
+	 */
+	public default double[] predictScores(List<? extends FeaturePack<? extends Annotation>> fps, FeatureNormalizer fn) {
+		List<Double> scores = ParallelExtraction.map(fps, fp -> predictScore(fp, fn), false);
+		return scores.stream().mapToDouble(Double::doubleValue).toArray();
+	}
+
+	/**
+	 * @return the ids of the features read by the model, or null if it may read any of them.
+	 */
+	public default int[] getUsedFtr() {
+		return null;
+	}
 }
@@ -9,4 +9,24 @@ import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
 public interface BindingRegressor {
 	public double[] getScores(List<FeaturePack<HashSet<Annotation>>> features, FeatureNormalizer fn);
+
+	/**
+	 * @return the index of the binding with the highest score (the first one, in case of ties), -1
+	 *         if there is none higher than negative infinity.
+	 */
+	public default int getBestIndex(List<FeaturePack<HashSet<Annotation>>> features, FeatureNormalizer fn) {
+		double[] scores = getScores(features, fn);
+		int best = -1;
+		for (int i = 0; i < scores.length; i++)
+			if (best == -1 ? scores[i] > Double.NEGATIVE_INFINITY : scores[i] > scores[best])
+				best = i;
+		return best;
+	}
+
+	/**
+	 * @return the ids of the features read by the model, or null if it may read any of them.
+	 */
+	public default int[] getUsedFtr() {
+		return null;
+	}
 }
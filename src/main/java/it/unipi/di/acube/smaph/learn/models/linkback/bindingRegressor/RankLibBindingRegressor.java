@@ -22,10 +22,6 @@ public class RankLibBindingRegressor extends RankLibModel<HashSet<Annotation>> i
 
 	@Override
 	public double[] getScores(List<FeaturePack<HashSet<Annotation>>> features, FeatureNormalizer fn) {
-		double[] scores = new double[features.size()];
-		for (int i = 0; i < features.size(); i++) {
-			scores[i] = super.predictScore(features.get(i), fn);
-		}
-		return scores;
+		return super.getScores(features, fn);
 	}
 }
@@ -1,9 +1,20 @@
 package it.unipi.di.acube.smaph.learn.normalizer;
 
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureMatrix;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureSchema;
 
 public abstract class FeatureNormalizer {
 
+	/**
+	 * @param ftrName
+	 *            a feature name
+	 * @param value
+	 *            the non-normalized value of the feature, NaN if it is not set.
+	 * @return the normalized value for this feature.
+	 */
+	public abstract double normalizeValue(String ftrName, double value);
+
 	/**
 	 * @param fp
 	 *            a feature pack
@@ -11,7 +22,9 @@ public abstract class FeatureNormalizer {
 	 *            a feature name
 	 * @return the normalized value for this feature.
 	 */
-	public abstract double normalizeFeature(FeaturePack<?> fp, String ftrName);
+	public double normalizeFeature(FeaturePack<?> fp, String ftrName) {
+		return normalizeValue(ftrName, fp.getFeature(ftrName));
+	}
 
 	/**
 	 * @param features
@@ -20,11 +33,44 @@ public abstract class FeatureNormalizer {
 	 *         a feature is not provided.
 	 */
 	public double[] ftrToNormalizedFtrArray(FeaturePack<?> fp) {
-		double[] res = new double[fp.getFeatureCount()];
-		for (String featureName : fp.getFeatureNames()) {
-			int ftrPos = fp.ftrNameToArrayPosition(featureName);
-			res[ftrPos] = normalizeFeature(fp, featureName);
+		FeatureSchema schema = fp.getSchema();
+		double[] res = new double[schema.size()];
+		for (int ftrPos = 0; ftrPos < res.length; ftrPos++)
+			res[ftrPos] = normalizeFeature(fp, schema.getName(ftrPos));
+		return res;
+	}
+
+	/**
+	 * Normalize the features of all candidates at once, one feature at a time.
+	 * 
+	 * @param ftrs
+	 *            the non-normalized features.
+	 * @return a matrix of the normalized features, with the same layout as ftrs.
+	 */
+	public FeatureMatrix normalize(FeatureMatrix ftrs) {
+		FeatureMatrix res = new FeatureMatrix(ftrs.getSchema(), ftrs.rows());
+		for (int column = 0; column < ftrs.columns(); column++) {
+			String ftrName = ftrs.getSchema().getName(column);
+			for (int row = 0; row < ftrs.rows(); row++)
+				res.set(row, column, normalizeValue(ftrName, ftrs.get(row, column)));
 		}
 		return res;
 	}
+
+	/**
+	 * Normalize some features of a candidate into a buffer provided by the caller.
+	 * 
+	 * @param ftrs
+	 *            the non-normalized features.
+	 * @param row
+	 *            the row of the candidate in ftrs.
+	 * @param positions
+	 *            the positions (in the schema of ftrs) of the features to normalize.
+	 * @param dst
+	 *            where to write the normalized value of feature positions[i], in position i.
+	 */
+	public void normalize(FeatureMatrix ftrs, int row, int[] positions, double[] dst) {
+		for (int i = 0; i < positions.length; i++)
+			dst[i] = normalizeValue(ftrs.getSchema().getName(positions[i]), ftrs.get(row, positions[i]));
+	}
 }
@@ -1,14 +1,12 @@
 package it.unipi.di.acube.smaph.learn.normalizer;
 
-import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
-
 public class NoFeatureNormalizer extends FeatureNormalizer {
 
 	@Override
-	public double normalizeFeature(FeaturePack fp, String ftrName) {
-		if (!fp.featureIsSet(ftrName))
+	public double normalizeValue(String ftrName, double value) {
+		if (Double.isNaN(value))
 			return 0.0;
-		return fp.getFeature(ftrName);
+		return value;
 	}
 
 }
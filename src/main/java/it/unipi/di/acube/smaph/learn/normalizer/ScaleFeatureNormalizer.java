@@ -40,14 +40,14 @@ public class ScaleFeatureNormalizer extends FeatureNormalizer {
 	}
 
 	@Override
-	public double normalizeFeature(FeaturePack<?> fp, String ftrName) {
-		if (!fp.featureIsSet(ftrName))
+	public double normalizeValue(String ftrName, double value) {
+		if (Double.isNaN(value))
 			return 0.0;
 		if (!max.containsKey(ftrName))
-			return fp.getFeature(ftrName);
+			return value;
 		double rangeMax = max.get(ftrName);
 		double rangeMin = min.get(ftrName);
-		return rangeMax == rangeMin ? 0.0 : (fp.getFeature(ftrName) - rangeMin)
+		return rangeMax == rangeMin ? 0.0 : (value - rangeMin)
 				/ (rangeMax - rangeMin) * 2f - 1;
 	}
 
@@ -11,6 +11,7 @@ import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
@@ -18,7 +19,9 @@ import org.apache.commons.math3.stat.descriptive.moment.StandardDeviation;
 
 import it.unipi.di.acube.smaph.SmaphUtils;
 import it.unipi.di.acube.smaph.learn.ExampleGatherer;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureMatrix;
 import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureSchema;
 
 public class ZScoreFeatureNormalizer extends FeatureNormalizer implements Serializable {
 
@@ -28,6 +31,40 @@ public class ZScoreFeatureNormalizer extends FeatureNormalizer implements Serial
 	private static StandardDeviation stdDevComputer = new StandardDeviation();
 	private double defaultValue = 0.0; // Default value for missing features. 0.0 is the average value.
 	private boolean strict;
+	private transient ConcurrentHashMap<FeatureSchema, CompiledSchema> compiledSchemas;
+
+	/**
+	 * The averages and standard deviations of the features of a schema, indexed by feature
+	 * position. Features that are not normalized have average 0 and standard deviation 1; features
+	 * with standard deviation 0 have standard deviation 1, so that the normalized value of any
+	 * feature is (value - avg) / stdDev, as computed by {@link #normalizeValue(String, double)}.
+	 */
+	private static class CompiledSchema {
+		private final FeatureSchema schema;
+		private final double[] avgs;
+		private final double[] stdDevs;
+		/** Features whose average or standard deviation is NaN. */
+		private final boolean[] unobserved;
+
+		private CompiledSchema(FeatureSchema schema, HashMap<String, Double> avgMap, HashMap<String, Double> stdDevMap) {
+			this.schema = schema;
+			avgs = new double[schema.size()];
+			stdDevs = new double[schema.size()];
+			unobserved = new boolean[schema.size()];
+			for (int pos = 0; pos < schema.size(); pos++) {
+				String ftrName = schema.getName(pos);
+				stdDevs[pos] = 1.0;
+				if (!avgMap.containsKey(ftrName))
+					continue;
+				double avg = avgMap.get(ftrName);
+				double stdDev = stdDevMap.get(ftrName);
+				unobserved[pos] = Double.isNaN(avg) || Double.isNaN(stdDev);
+				avgs[pos] = avg;
+				if (stdDev != 0.0)
+					stdDevs[pos] = stdDev;
+			}
+		}
+	}
 
 	private ZScoreFeatureNormalizer() {
 	}
@@ -74,11 +111,11 @@ public class ZScoreFeatureNormalizer extends FeatureNormalizer implements Serial
 	}
 
 	@Override
-	public double normalizeFeature(FeaturePack<?> fp, String ftrName) {
-		if (!fp.featureIsSet(ftrName))
+	public double normalizeValue(String ftrName, double value) {
+		if (Double.isNaN(value))
 			return defaultValue;
 		if (!avgs.containsKey(ftrName))
-			return fp.getFeature(ftrName);
+			return value;
 		double avg = avgs.get(ftrName);
 		double stdDev = stdDevs.get(ftrName);
 		if (Double.isNaN(avg) || Double.isNaN(stdDev))
@@ -87,8 +124,55 @@ public class ZScoreFeatureNormalizer extends FeatureNormalizer implements Serial
 						"You are trying to normalize feature " + ftrName + " that has never been observed before.");
 			else return defaultValue;
 		if (stdDev == 0.0)
-			return fp.getFeature(ftrName) - avg;
-		return (fp.getFeature(ftrName) - avg) / stdDev;
+			return value - avg;
+		return (value - avg) / stdDev;
+	}
+
+	private CompiledSchema compile(FeatureSchema schema) {
+		if (compiledSchemas == null)
+			synchronized (this) {
+				if (compiledSchemas == null)
+					compiledSchemas = new ConcurrentHashMap<>();
+			}
+		return compiledSchemas.computeIfAbsent(schema, s -> new CompiledSchema(s, avgs, stdDevs));
+	}
+
+	private double normalizeValue(CompiledSchema c, int pos, double value) {
+		if (Double.isNaN(value))
+			return defaultValue;
+		if (c.unobserved[pos])
+			if (strict)
+				throw new RuntimeException(
+				        "You are trying to normalize feature " + c.schema.getName(pos) + " that has never been observed before.");
+			else
+				return defaultValue;
+		return (value - c.avgs[pos]) / c.stdDevs[pos];
+	}
+
+	@Override
+	public double[] ftrToNormalizedFtrArray(FeaturePack<?> fp) {
+		CompiledSchema c = compile(fp.getSchema());
+		double[] res = new double[c.avgs.length];
+		for (int pos = 0; pos < res.length; pos++)
+			res[pos] = normalizeValue(c, pos, fp.getFeature(pos));
+		return res;
+	}
+
+	@Override
+	public FeatureMatrix normalize(FeatureMatrix ftrs) {
+		CompiledSchema c = compile(ftrs.getSchema());
+		FeatureMatrix res = new FeatureMatrix(ftrs.getSchema(), ftrs.rows());
+		for (int row = 0; row < ftrs.rows(); row++)
+			for (int pos = 0; pos < c.avgs.length; pos++)
+				res.set(row, pos, normalizeValue(c, pos, ftrs.get(row, pos)));
+		return res;
+	}
+
+	@Override
+	public void normalize(FeatureMatrix ftrs, int row, int[] positions, double[] dst) {
+		CompiledSchema c = compile(ftrs.getSchema());
+		for (int i = 0; i < positions.length; i++)
+			dst[i] = normalizeValue(c, positions[i], ftrs.get(row, positions[i]));
 	}
 
 	private void load(URL zScoreFile, FeaturePack<?> fp) {
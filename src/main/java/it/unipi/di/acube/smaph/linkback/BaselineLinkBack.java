@@ -73,13 +73,13 @@ public class BaselineLinkBack implements LinkBack {
 		List<String> tokens = SmaphUtils.tokenize(query);
 		int[] tokenPositions = new int[tokens.size()];
 		int lastPos = 0;
+		String queryLC = query.toLowerCase();
 		for (int i = 0; i < tokenPositions.length; i++) {
-			lastPos = query.toLowerCase().indexOf(tokens.get(i), lastPos);
+			lastPos = queryLC.indexOf(tokens.get(i), lastPos);
 			tokenPositions[i] = lastPos;
 		}
-		HashSet<Integer> toCover = new HashSet<>();
-		for (int i = 0; i < tokens.size(); i++)
-			toCover.add(i);
+		BitSet toCover = new BitSet(tokens.size());
+		toCover.set(0, tokens.size());
 
 		// Starting from the token with minimum edit distance, select
 		// annotations until all query tokens are covered or there are no
@@ -92,7 +92,7 @@ public class BaselineLinkBack implements LinkBack {
 			int minPos = -1, maxPos = -1;
 			for (String token : t.getMiddle()) {
 				int pos = tokens.indexOf(token);
-				if (!toCover.contains(pos))
+				if (pos < 0 || !toCover.get(pos))
 					continue;
 				if (pos != -1)
 					if (minPos == -1 || minPos > pos)
@@ -101,8 +101,7 @@ public class BaselineLinkBack implements LinkBack {
 					maxPos = pos;
 			}
 			if (minPos != -1) {
-				for (int j = minPos; j <= maxPos; j++)
-					toCover.remove(j);
+				toCover.clear(minPos, maxPos + 1);
 				int start = tokenPositions[minPos];
 				int end = tokenPositions[maxPos] + tokens.get(maxPos).length();
 				result.add(new ScoredAnnotation(start, end - start, t
@@ -116,4 +115,9 @@ public class BaselineLinkBack implements LinkBack {
 	@Override
 	public void setDebugger(SmaphDebugger debugger) {
 	}
+
+	@Override
+	public Set<String> getUsedFeatures() {
+		return Collections.emptySet();
+	}
 }
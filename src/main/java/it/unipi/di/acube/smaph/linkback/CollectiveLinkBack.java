@@ -5,6 +5,8 @@ import it.unipi.di.acube.batframework.data.ScoredAnnotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.ConcurrentWikipediaInterface;
+import it.unipi.di.acube.smaph.ParallelExtraction;
 import it.unipi.di.acube.smaph.QueryInformation;
 import it.unipi.di.acube.smaph.SmaphDebugger;
 import it.unipi.di.acube.smaph.SmaphUtils;
@@ -41,7 +43,7 @@ public class CollectiveLinkBack implements LinkBack {
 	public CollectiveLinkBack(WikipediaInterface wikiApi, WikipediaToFreebase w2f, EntityToAnchors e2a, BindingGenerator bg,
 	        BindingRegressor lbReg, FeatureNormalizer brFn) throws IOException {
 		this.bindingRegressorModel = lbReg;
-		this.wikiApi = wikiApi;
+		this.wikiApi = ConcurrentWikipediaInterface.of(wikiApi);
 		this.bg = bg;
 		this.brFn = brFn;
 		this.w2f = w2f;
@@ -61,8 +63,14 @@ public class CollectiveLinkBack implements LinkBack {
 				acceptedEntities, wikiApi);
 		LOG.info("Generated {} bindings.", bindings.size());
 
+		// Relatedness among the accepted entities is fetched once for all bindings.
+		if (qi.isFeatureUsed(BindingFeaturePack.RELATEDNESS_FEATURES))
+			qi.getRelatednessMatrix(acceptedEntities.stream().map(e -> e.getConcept()).collect(Collectors.toList()));
+
 		LOG.info("Generating Binding Features.");
-		for (HashSet<Annotation> binding : bindings) {
+		ParallelExtraction.prefetchTitles(wikiApi, acceptedEntities.stream().map(e -> e.getConcept()).collect(Collectors.toList()));
+		// With a debugger attached, bindings are processed in order so that their features are recorded in order.
+		featurePacks.addAll(ParallelExtraction.map(bindings, binding -> {
 			//Discard bindings that have entities w/o anchors
 			/*boolean bad = false;
 			for (Annotation a : binding)
@@ -72,15 +80,14 @@ public class CollectiveLinkBack implements LinkBack {
 				}
 			if (bad) continue;*/
 
-			HashMap<Annotation, HashMap<String, Double>> debugAnnotationFeatures = new HashMap<>();
-			HashMap<String, Double> debugBindingFeatures = new HashMap<>();
+			HashMap<Annotation, HashMap<String, Double>> debugAnnotationFeatures = debugger != null ? new HashMap<>() : null;
+			HashMap<String, Double> debugBindingFeatures = debugger != null ? new HashMap<>() : null;
 			BindingFeaturePack features = new BindingFeaturePack(binding, query,
 					qi, wikiApi, w2f, e2a, debugAnnotationFeatures, debugBindingFeatures);
-			featurePacks.add(new Pair<HashSet<Annotation>, BindingFeaturePack>(binding, features));
 			if (debugger != null)
 				debugger.addLinkbackBindingFeatures(query, binding, debugAnnotationFeatures, debugBindingFeatures);
-
-		}
+			return new Pair<HashSet<Annotation>, BindingFeaturePack>(binding, features);
+		}, debugger != null));
 		LOG.info("Generated Binding Features.");
 
 		return featurePacks;
@@ -92,7 +99,6 @@ public class CollectiveLinkBack implements LinkBack {
 
 		// Predict a score and pick the best-performing
 		HashSet<Annotation> bestBinding = null;
-		double bestScore = Double.NEGATIVE_INFINITY;
 		
 		List<Pair<HashSet<Annotation>, BindingFeaturePack>> bindingFeaturePacks = getBindingFeaturePacks(query, acceptedEntities,
 		        qi, bg, wikiApi, w2f, e2a, debugger);
@@ -100,18 +106,27 @@ public class CollectiveLinkBack implements LinkBack {
 		for (Pair<HashSet<Annotation>, BindingFeaturePack> bindingAndFeatures: bindingFeaturePacks)
 			packs.add(bindingAndFeatures.second);
 		
-		double[] scores = bindingRegressorModel.getScores(packs, brFn);
-		
-		for (int i=0; i<scores.length; i++){
-			if (scores[i] > bestScore) {
-				bestBinding = bindingFeaturePacks.get(i).first;
-				bestScore = scores[i];
-			}
-			if (debugger != null)
+		if (debugger != null) {
+			// The debugger records the score of every binding, so all of them are scored.
+			double bestScore = Double.NEGATIVE_INFINITY;
+			double[] scores = bindingRegressorModel.getScores(packs, brFn);
+			for (int i=0; i<scores.length; i++){
+				if (scores[i] > bestScore) {
+					bestBinding = bindingFeaturePacks.get(i).first;
+					bestScore = scores[i];
+				}
 				debugger.addLinkbackBindingScore(query, bindingFeaturePacks.get(i).first, scores[i]);
+			}
+		} else {
+			int best = bindingRegressorModel.getBestIndex(packs, brFn);
+			if (best != -1)
+				bestBinding = bindingFeaturePacks.get(best).first;
 		}
 
+		// No binding, or no binding scored above negative infinity.
 		HashSet<ScoredAnnotation> scoredBestBinding = new HashSet<>();
+		if (bestBinding == null)
+			return scoredBestBinding;
 		for (Annotation ann : bestBinding) {
 			scoredBestBinding.add(new ScoredAnnotation(ann.getPosition(), ann
 					.getLength(), ann.getConcept(), 1.0f));
@@ -173,4 +188,14 @@ public class CollectiveLinkBack implements LinkBack {
 	public void setDebugger(SmaphDebugger debugger) {
 		this.debugger = debugger;
 	}
+
+	@Override
+	public Set<String> getUsedFeatures() {
+		if (debugger != null)
+			return null;
+		Set<String> res = new BindingFeaturePack().getSchema().getNames(bindingRegressorModel.getUsedFtr());
+		if (res != null)
+			res.addAll(BindingFeaturePack.getAggregatedFeatureNames(res));
+		return res;
+	}
 }
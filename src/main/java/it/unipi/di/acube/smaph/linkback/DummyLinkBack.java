@@ -20,4 +20,9 @@ public class DummyLinkBack implements LinkBack {
 	@Override
 	public void setDebugger(SmaphDebugger debugger) {
 	}
+
+	@Override
+	public Set<String> getUsedFeatures() {
+		return Collections.emptySet();
+	}
 }
@@ -0,0 +1,137 @@
+package it.unipi.di.acube.smaph.linkback;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unipi.di.acube.smaph.EditDistanceMemo;
+import it.unipi.di.acube.smaph.SmaphUtils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * Query-scoped index over the segments of a query, that finds the segments within a given
+ * normalized edit distance (as computed by {@link SmaphUtils#getNormEditDistance(String, String)})
+ * of an anchor without computing the edit distance against all of them. Segments are first
+ * filtered by length and by the number of bigrams they share with the anchor (two strings within
+ * edit distance k share at least max(length) - 1 - 2k bigrams), the remaining ones are verified
+ * with the exact edit distance, so results are the same as a full scan.
+ */
+public class FuzzyAnchorIndex {
+	private static final int Q = 2;
+
+	private final String[] segments;
+	private final EditDistanceMemo memo;
+	private final Int2IntOpenHashMap gramToPosting = new Int2IntOpenHashMap();
+	/** For each bigram, pairs (segment, occurrences of the bigram in the segment). */
+	private final int[][] postings;
+
+	public FuzzyAnchorIndex(List<String> segments) {
+		this(segments, null);
+	}
+
+	/**
+	 * @param memo
+	 *            if not null, the memo through which the distances of the segments passing the
+	 *            filters are computed.
+	 */
+	public FuzzyAnchorIndex(List<String> segments, EditDistanceMemo memo) {
+		this.segments = segments.toArray(new String[segments.size()]);
+		this.memo = memo;
+		gramToPosting.defaultReturnValue(-1);
+		List<IntArrayList> postingLists = new Vector<>();
+		for (int i = 0; i < this.segments.length; i++) {
+			int[] grams = grams(this.segments[i]);
+			for (int j = 0; j < grams.length;) {
+				int count = run(grams, j);
+				int posting = gramToPosting.get(grams[j]);
+				if (posting < 0) {
+					posting = postingLists.size();
+					gramToPosting.put(grams[j], posting);
+					postingLists.add(new IntArrayList());
+				}
+				postingLists.get(posting).add(i);
+				postingLists.get(posting).add(count);
+				j += count;
+			}
+		}
+		postings = new int[postingLists.size()][];
+		for (int i = 0; i < postings.length; i++)
+			postings[i] = postingLists.get(i).toIntArray();
+	}
+
+	/**
+	 * @return the number of indexed segments.
+	 */
+	public int size() {
+		return segments.length;
+	}
+
+	/**
+	 * @return the sorted bigrams of str, each packed in an int.
+	 */
+	private static int[] grams(String str) {
+		if (str.length() < Q)
+			return new int[0];
+		int[] grams = new int[str.length() - Q + 1];
+		for (int i = 0; i < grams.length; i++)
+			grams[i] = (str.charAt(i) << 16) | str.charAt(i + 1);
+		Arrays.sort(grams);
+		return grams;
+	}
+
+	private static int run(int[] sorted, int from) {
+		int to = from + 1;
+		while (to < sorted.length && sorted[to] == sorted[from])
+			to++;
+		return to - from;
+	}
+
+	/**
+	 * Upper bound of the edit distance between two strings whose longest has length maxLength and
+	 * whose normalized edit distance is within threshold. One is added to stay safe of rounding in
+	 * the normalized distance.
+	 */
+	private static int maxEditDistance(int maxLength, double threshold) {
+		return (int) (threshold * maxLength) + 1;
+	}
+
+	/**
+	 * Find the segments whose normalized edit distance from anchor is lower than (or, if
+	 * inclusive, equal to) threshold. Segments already set in matches are not checked again.
+	 *
+	 * @param matches
+	 *            the bitset (indexed as the segments given at construction) where matching
+	 *            segments are set.
+	 */
+	public void match(String anchor, double threshold, boolean inclusive, BitSet matches) {
+		int anchorLength = anchor.length();
+		int[] common = new int[segments.length];
+		int[] grams = grams(anchor);
+		for (int j = 0; j < grams.length;) {
+			int count = run(grams, j);
+			int posting = gramToPosting.get(grams[j]);
+			if (posting >= 0) {
+				int[] p = postings[posting];
+				for (int k = 0; k < p.length; k += 2)
+					common[p[k]] += Math.min(count, p[k + 1]);
+			}
+			j += count;
+		}
+
+		for (int i = matches.nextClearBit(0); i < segments.length; i = matches.nextClearBit(i + 1)) {
+			int segmentLength = segments[i].length();
+			int maxLength = Math.max(anchorLength, segmentLength);
+			int maxEd = maxEditDistance(maxLength, threshold);
+			if (Math.abs(anchorLength - segmentLength) > maxEd)
+				continue;
+			if (common[i] < maxLength - Q + 1 - maxEd * Q)
+				continue;
+			float ed = memo != null ? memo.getNormEditDistance(anchor, segments[i], threshold)
+			        : SmaphUtils.getNormEditDistance(anchor, segments[i], threshold);
+			if (inclusive ? ed <= threshold : ed < threshold)
+				matches.set(i);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package it.unipi.di.acube.smaph.linkback;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -12,7 +13,12 @@ import it.unipi.di.acube.batframework.data.ScoredAnnotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.ConcurrentWikipediaInterface;
+import it.unipi.di.acube.smaph.MentionCoverage;
+import it.unipi.di.acube.smaph.ParallelExtraction;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
+import it.unipi.di.acube.smaph.RelatednessMatrix;
 import it.unipi.di.acube.smaph.SmaphDebugger;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
 import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
@@ -35,7 +41,7 @@ public class GreedyLinkback implements LinkBack {
 			throw new IllegalArgumentException();
 		this.ar = annRegs;
 		this.annFn = fns;
-		this.wikiApi = wikiApi;
+		this.wikiApi = ConcurrentWikipediaInterface.of(wikiApi);
 		this.w2f = w2f;
 		this.edthreshold = edthreshold;
 		this.e2a = e2a;
@@ -45,23 +51,46 @@ public class GreedyLinkback implements LinkBack {
 		return IndividualLinkback.getAnnotations(query, acceptedEntities, anchorMaxED, e2a, wikiApi);
 	}
 
+	public static List<Annotation> getAnnotations(String query, Set<Tag> acceptedEntities, double anchorMaxED, EntityToAnchors e2a, WikipediaInterface wikiApi, QueryInformation qi) {
+		return IndividualLinkback.getAnnotations(query, acceptedEntities, anchorMaxED, e2a, wikiApi, qi);
+	}
+
 	@Override
 	public HashSet<ScoredAnnotation> linkBack(String query, HashSet<Tag> acceptedEntities, QueryInformation qi) {
-		List<Annotation> annotations = getAnnotations(query, acceptedEntities, edthreshold, e2a, wikiApi);
+		List<Annotation> annotations = getAnnotations(query, acceptedEntities, edthreshold, e2a, wikiApi, qi);
 		
+		// Features of the candidates that do not change along the steps are computed once.
+		ParallelExtraction.prefetchTitles(wikiApi, acceptedEntities.stream().map(t -> t.getConcept()).collect(Collectors.toList()));
+		List<HashMap<String, Double>> candidateFtrs = ParallelExtraction.map(annotations,
+		        a -> GreedyFeaturePack.getSolutionIndependentFeatures(a, query, qi, wikiApi, w2f, e2a), false);
+		HashMap<Annotation, HashMap<String, Double>> solutionIndependentFtrs = new HashMap<>();
+		for (int i = 0; i < annotations.size(); i++)
+			solutionIndependentFtrs.put(annotations.get(i), candidateFtrs.get(i));
+
+		RelatednessMatrix relatedness = null;
+		if (qi.isFeatureUsed(GreedyFeaturePack.RELATEDNESS_FEATURES)) {
+			HashSet<Integer> entities = new HashSet<>();
+			for (Annotation a : annotations)
+				entities.add(a.getConcept());
+			relatedness = qi.getRelatednessMatrix(entities);
+		}
+
 		HashSet<ScoredAnnotation> solution = new HashSet<>();
+		QueryTextContext text = qi.getTextContext(query);
+		MentionCoverage coverage = new MentionCoverage(text);
 		for (int i = 0; i < ar.size(); i++) {
-			List<Pair<GreedyFeaturePack, Annotation>> ftrsAndAnnotations = annotations.stream().map(
+			GreedyFeaturePack.PartialSolutionFeatures solutionFtrs = new GreedyFeaturePack.PartialSolutionFeatures(text, relatedness,
+			        solution);
+			List<Pair<GreedyFeaturePack, Annotation>> ftrsAndAnnotations = ParallelExtraction.map(annotations,
 			        a -> new Pair<GreedyFeaturePack, Annotation>(
-			        		new GreedyFeaturePack(a, query, qi, solution, wikiApi, w2f, e2a),
-			                a))
-			        .collect(Collectors.toList());
+			        		new GreedyFeaturePack(GreedyFeaturePack.getFeatures(solutionIndependentFtrs.get(a), a, solutionFtrs)),
+			                a), false);
 			ScoredAnnotation annToAdd = getStepAnnotation(ftrsAndAnnotations, ar.get(i), annFn.get(i));
 			if (annToAdd == null)
 				break;
 			solution.add(annToAdd);
-			annotations = annotations.stream().filter(a -> solution.stream().allMatch(as -> !as.overlaps(a)))
-			        .collect(Collectors.toList());
+			coverage.add(annToAdd);
+			annotations = annotations.stream().filter(a -> !coverage.overlaps(a)).collect(Collectors.toList());
 			if (annotations.isEmpty())
 				break;
 		}
@@ -71,12 +100,14 @@ public class GreedyLinkback implements LinkBack {
 	public static <A extends Annotation, F extends FeaturePack<A>> ScoredAnnotation getStepAnnotation(
 	        List<Pair<F, Annotation>> ftrsAndAnnotations, AnnotationRegressor annotationRegressor,
 	        FeatureNormalizer featureNormalizer) {
+		double[] scores = annotationRegressor.predictScores(
+		        ftrsAndAnnotations.stream().map(p -> p.first).collect(Collectors.toList()), featureNormalizer);
 		double highestScore = Double.NEGATIVE_INFINITY;
 		Annotation bestAnn = null;
-		for (Pair<F, Annotation> ftrsAndAnnotation : ftrsAndAnnotations) {
-			double score = annotationRegressor.predictScore(ftrsAndAnnotation.first, featureNormalizer);
+		for (int i = 0; i < ftrsAndAnnotations.size(); i++) {
+			double score = scores[i];
 			if (score > annotationRegressor.threshold() && score > highestScore) {
-				bestAnn = ftrsAndAnnotation.second;
+				bestAnn = ftrsAndAnnotations.get(i).second;
 				highestScore = score;
 			}
 		}
@@ -90,4 +121,16 @@ public class GreedyLinkback implements LinkBack {
 	public void setDebugger(SmaphDebugger debugger) {
 	}
 
+	@Override
+	public Set<String> getUsedFeatures() {
+		Set<String> res = new HashSet<>();
+		for (AnnotationRegressor annReg : ar) {
+			Set<String> used = new GreedyFeaturePack().getSchema().getNames(annReg.getUsedFtr());
+			if (used == null)
+				return null;
+			res.addAll(used);
+		}
+		return res;
+	}
+
 }
@@ -5,7 +5,11 @@ import it.unipi.di.acube.batframework.data.ScoredAnnotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.ConcurrentWikipediaInterface;
+import it.unipi.di.acube.smaph.MentionCoverage;
+import it.unipi.di.acube.smaph.ParallelExtraction;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
 import it.unipi.di.acube.smaph.SmaphDebugger;
 import it.unipi.di.acube.smaph.SmaphUtils;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
@@ -16,11 +20,13 @@ import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.stream.Collectors;
 
 public class IndividualLinkback implements LinkBack {
 	private AnnotationRegressor ar;
@@ -34,14 +40,25 @@ public class IndividualLinkback implements LinkBack {
 	        WikipediaToFreebase w2f, EntityToAnchors e2a, double edthreshold) throws FileNotFoundException, IOException {
 		this.ar = ar;
 		this.annFn = annFn;
-		this.wikiApi = wikiApi;
+		this.wikiApi = ConcurrentWikipediaInterface.of(wikiApi);
 		this.w2f = w2f;
 		this.edthreshold = edthreshold;
 		this.e2a = e2a;
 	}
 
 	public static List<Annotation> getAnnotations(String query, Set<Tag> acceptedEntities, double anchorMaxED, EntityToAnchors e2a, WikipediaInterface wikiApi) {
-		List<Pair<Integer, Integer>> segments = SmaphUtils.findSegments(query);
+		return getAnnotations(query, acceptedEntities, anchorMaxED, e2a, wikiApi, null);
+	}
+
+	/**
+	 * @param qi
+	 *            if not null, the information of the query, whose text context and edit distance
+	 *            memo are used.
+	 */
+	public static List<Annotation> getAnnotations(String query, Set<Tag> acceptedEntities, double anchorMaxED, EntityToAnchors e2a, WikipediaInterface wikiApi, QueryInformation qi) {
+		QueryTextContext text = qi == null ? new QueryTextContext(query) : qi.getTextContext(query);
+		List<Pair<Integer, Integer>> segments = text.getSegments();
+		FuzzyAnchorIndex index = new FuzzyAnchorIndex(text.getSegmentStrings(), qi == null ? null : qi.getEditDistanceMemo());
 		List<Annotation> annotations = new Vector<>();
 		for (Tag t : acceptedEntities) {
 			//if (!e2a.containsId(t.getConcept()))
@@ -57,11 +74,14 @@ public class IndividualLinkback implements LinkBack {
 				e.printStackTrace();
 				throw new RuntimeException(e);
 			}
-			for (Pair<Integer, Integer> segment : segments) {
-				String segmentStr = query.substring(segment.first, segment.second);
-				if (entityAnchors.stream().anyMatch(anchor -> SmaphUtils.getNormEditDistance(anchor.first, segmentStr) < anchorMaxED))
-					annotations.add(new Annotation(segment.first, segment.second - segment.first, t.getConcept()));
+			BitSet matchingSegments = new BitSet(segments.size());
+			for (Pair<String, Integer> anchor : entityAnchors) {
+				index.match(anchor.first, anchorMaxED, false, matchingSegments);
+				if (matchingSegments.cardinality() == segments.size())
+					break;
 			}
+			for (int i = matchingSegments.nextSetBit(0); i >= 0; i = matchingSegments.nextSetBit(i + 1))
+				annotations.add(new Annotation(segments.get(i).first, segments.get(i).second - segments.get(i).first, t.getConcept()));
 		}
 		return annotations;
 	}
@@ -69,22 +89,34 @@ public class IndividualLinkback implements LinkBack {
 	@Override
 	public HashSet<ScoredAnnotation> linkBack(String query, HashSet<Tag> acceptedEntities, QueryInformation qi) {
 
+		ParallelExtraction.prefetchTitles(wikiApi, acceptedEntities.stream().map(t -> t.getConcept()).collect(Collectors.toList()));
+		List<Annotation> annotations = getAnnotations(query, acceptedEntities, edthreshold, e2a, wikiApi, qi);
+		List<AnnotationFeaturePack> annotationFtrs = ParallelExtraction.map(annotations,
+		        a -> new AnnotationFeaturePack(a, query, qi, wikiApi, w2f, e2a), false);
+		double[] scores = ar.predictScores(annotationFtrs, annFn);
 		List<Pair<Annotation, Double>> scoreAndAnnotations = new Vector<>();
-		for (Annotation a : getAnnotations(query, acceptedEntities, edthreshold, e2a, wikiApi)) {
-			double score = ar.predictScore(new AnnotationFeaturePack(a, query, qi, wikiApi, w2f, e2a),
-					annFn);
-			scoreAndAnnotations.add(new Pair<Annotation, Double>(a, score));
-		}
+		for (int i = 0; i < annotations.size(); i++)
+			scoreAndAnnotations.add(new Pair<Annotation, Double>(annotations.get(i), scores[i]));
 
-		return getResult(scoreAndAnnotations, ar.threshold());
+		return getResult(scoreAndAnnotations, ar.threshold(), qi.getTextContext(query));
 		
 	}
 	
 	public static HashSet<ScoredAnnotation> getResult(List<Pair<Annotation, Double>> annotationsAndScore, double threshold){
+		return getResult(annotationsAndScore, threshold, null);
+	}
+
+	/**
+	 * @param text
+	 *            if not null, the text context of the query, used to check overlaps through token
+	 *            masks.
+	 */
+	public static HashSet<ScoredAnnotation> getResult(List<Pair<Annotation, Double>> annotationsAndScore, double threshold, QueryTextContext text){
 		Collections.sort(annotationsAndScore, new SmaphUtils.ComparePairsBySecondElement<Annotation, Double>());
 		Collections.reverse(annotationsAndScore);
 
 		HashSet<ScoredAnnotation> res = new HashSet<>();
+		MentionCoverage coverage = new MentionCoverage(text);
 		
 		for (Pair<Annotation, Double> pair : annotationsAndScore){
 			Annotation annI = pair.first;
@@ -92,14 +124,9 @@ public class IndividualLinkback implements LinkBack {
 			
 			if (score < threshold) break;
 			
-			boolean overlap = false;
-			for (ScoredAnnotation ann : res)
-				if (annI.overlaps(ann)) {
-					overlap = true;
-					break;
-				}
-			if (!overlap){
+			if (!coverage.overlaps(annI)){
 				res.add(new ScoredAnnotation(annI.getPosition(), annI.getLength(), annI.getConcept(), (float)score));
+				coverage.add(annI);
 			}
 		}
 
@@ -113,4 +140,9 @@ public class IndividualLinkback implements LinkBack {
 	public void setDebugger(SmaphDebugger debugger) {
 	}
 
+	@Override
+	public Set<String> getUsedFeatures() {
+		return new AnnotationFeaturePack().getSchema().getNames(ar.getUsedFtr());
+	}
+
 }
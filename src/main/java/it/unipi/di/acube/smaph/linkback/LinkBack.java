@@ -6,10 +6,19 @@ import it.unipi.di.acube.smaph.QueryInformation;
 import it.unipi.di.acube.smaph.SmaphDebugger;
 
 import java.util.HashSet;
+import java.util.Set;
 
 public interface LinkBack {
 	public HashSet<ScoredAnnotation> linkBack(String query,
 			HashSet<Tag> acceptedEntities, QueryInformation qi);
 
 	public void setDebugger(SmaphDebugger debugger);
+
+	/**
+	 * @return the names of the features read by the models of this linkback, or null if they may
+	 *         read any feature (e.g. when a debugger is attached).
+	 */
+	public default Set<String> getUsedFeatures() {
+		return null;
+	}
 }
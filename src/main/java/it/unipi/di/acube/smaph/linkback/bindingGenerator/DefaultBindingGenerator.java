@@ -4,10 +4,14 @@ import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.Pair;
 import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.smaph.EditDistanceMemo;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.QueryTextContext;
 import it.unipi.di.acube.smaph.SmaphUtils;
+import it.unipi.di.acube.smaph.linkback.FuzzyAnchorIndex;
 
 import java.lang.invoke.MethodHandles;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,12 +26,14 @@ public class DefaultBindingGenerator implements BindingGenerator {
 	private static final int MAX_SEGMENTATIONS = 1000;
 	private static final int MAX_SEGMENTATIONS_AFTER_FILTER = 150;//150;
 	private static final int MAX_BINDINGS_PER_SEGMENTATION = 50;//50;
+	private static final double MAX_BOLD_ED = 0.4;
 
-	private List<HashSet<Annotation>> getAllBindings(String query,
-			HashMap<Tag, String[]> entityToBolds, HashMap<Tag, String> entitiesToTitles, Set<Tag> acceptedEntities) {
+	private List<HashSet<Annotation>> getAllBindings(QueryTextContext text,
+			HashMap<Tag, String[]> entityToBolds, HashMap<Tag, String> entitiesToTitles, Set<Tag> acceptedEntities, EditDistanceMemo memo) {
 		HashSet<HashSet<Annotation>> insertedAnnotationSets = new HashSet<>();
 		List<HashSet<Annotation>> annotationSets = new Vector<>();
-		List<List<Pair<Integer, Integer>>> segmentations = pruneSegmentations(query, entityToBolds, entitiesToTitles);
+		List<List<Pair<Integer, Integer>>> segmentations = pruneSegmentations(text, entityToBolds, entitiesToTitles, memo);
+		HashMap<Pair<Integer, Integer>, Set<Tag>> segmentToBoldMatches = getBoldMatches(text, entityToBolds, acceptedEntities, memo);
 		
 		for (List<Pair<Integer, Integer>> segmentation : segmentations) {
 			HashSet<Tag> assignedTags = new HashSet<>();
@@ -37,17 +43,12 @@ public class DefaultBindingGenerator implements BindingGenerator {
 				candidatesForSegmentation.add(candidatesForSegment);
 				// This segment may not be linked to any entity.
 				candidatesForSegment.add(new Tag(-1));
+				Set<Tag> boldMatches = segmentToBoldMatches.get(segment);
+				String segmentStr = text.getSegmentString(text.getSegmentId(segment));
 				for (Tag tag : entityToBolds.keySet())
-					if (acceptedEntities.contains(tag)) {
-						double minEditDistance = 1.0;
-						for (String tagText : entityToBolds.get(tag))
-							minEditDistance = Math.min(
-							        SmaphUtils.getNormEditDistanceLC(query.substring(segment.first, segment.second), tagText),
-							        minEditDistance);
-						if (minEditDistance <= 0.4) {
-							candidatesForSegment.add(tag);
-							assignedTags.add(tag);
-						}
+					if (boldMatches.contains(tag)) {
+						candidatesForSegment.add(tag);
+						assignedTags.add(tag);
 					}
 				/*for (Tag tag : entityToBoldS2S3.keySet()) {
 					if (candidatesForSegment.contains(tag))
@@ -69,7 +70,7 @@ public class DefaultBindingGenerator implements BindingGenerator {
 					if (acceptedEntities.contains(tag)) {
 						if (candidatesForSegment.contains(tag))
 							continue;
-						if (SmaphUtils.getMinEditDist(entitiesToTitles.get(tag), query.substring(segment.first, segment.second)) <= 0.7) {
+						if (memo.getMinEditDist(entitiesToTitles.get(tag), segmentStr) <= 0.7) {
 							candidatesForSegment.add(tag);
 							assignedTags.add(tag);
 						}
@@ -138,15 +139,41 @@ public class DefaultBindingGenerator implements BindingGenerator {
 	}
 	
 
-	private List<List<Pair<Integer, Integer>>> pruneSegmentations(String query,
-			HashMap<Tag, String[]> entityToBoldsS1, HashMap<Tag, String> entitiesToTitles){
+	/**
+	 * For each segment of the query, find the accepted entities having a bold within normalized
+	 * edit distance {@link #MAX_BOLD_ED} from it (after lower-casing).
+	 */
+	private static HashMap<Pair<Integer, Integer>, Set<Tag>> getBoldMatches(QueryTextContext text, HashMap<Tag, String[]> entityToBolds,
+	        Set<Tag> acceptedEntities, EditDistanceMemo memo) {
+		List<Pair<Integer, Integer>> segments = text.getSegments();
+		HashMap<Pair<Integer, Integer>, Set<Tag>> res = new HashMap<>();
+		for (Pair<Integer, Integer> segment : segments)
+			res.put(segment, new HashSet<Tag>());
+		FuzzyAnchorIndex index = new FuzzyAnchorIndex(text.getSegmentLCForms(), memo);
+		for (Tag tag : entityToBolds.keySet())
+			if (acceptedEntities.contains(tag)) {
+				BitSet matchingSegments = new BitSet(segments.size());
+				for (String bold : entityToBolds.get(tag)) {
+					index.match(SmaphUtils.getLCForm(bold), MAX_BOLD_ED, true, matchingSegments);
+					if (matchingSegments.cardinality() == segments.size())
+						break;
+				}
+				for (int i = matchingSegments.nextSetBit(0); i >= 0; i = matchingSegments.nextSetBit(i + 1))
+					res.get(segments.get(i)).add(tag);
+			}
+		return res;
+	}
+
+	private List<List<Pair<Integer, Integer>>> pruneSegmentations(QueryTextContext text,
+			HashMap<Tag, String[]> entityToBoldsS1, HashMap<Tag, String> entitiesToTitles, EditDistanceMemo memo){
 		//Do an initial pruning of segmentations and entities: if the bold (or title) of an entity found with source1 matches a substring in the query, fix it 
-				List<Pair<Integer, Integer>> segments = SmaphUtils.findSegments(query);
+				List<Pair<Integer, Integer>> segments = text.getSegments();
 				
 				HashMap<Pair<Integer, Integer>, List<Tag>> segmentFixedCandidates = new HashMap<>();
 				HashSet<Tag> fixedCandidates =  new HashSet<>();
 				// link all entities to segments with edit-distance <0.1
-				for (Pair<Integer, Integer> segment : segments) {
+				for (int segmentId = 0; segmentId < segments.size(); segmentId++) {
+					Pair<Integer, Integer> segment = segments.get(segmentId);
 /*					for (Tag tag : entityToBoldsS1.keySet()) {
 						double minEditDistance = 1.0;
 						for (String tagText : entityToBoldsS1.get(tag))
@@ -165,8 +192,8 @@ public class DefaultBindingGenerator implements BindingGenerator {
 						if (segmentFixedCandidates.containsKey(segment)
 								&& segmentFixedCandidates.get(segment).contains(tag))
 							continue;
-						if (SmaphUtils.getMinEditDist(entitiesToTitles.get(tag),
-								query.substring(segment.first, segment.second)) <= 0.1) {
+						if (memo.getMinEditDist(entitiesToTitles.get(tag),
+								text.getSegmentString(segmentId)) <= 0.1) {
 							if (!segmentFixedCandidates.containsKey(segment))
 								segmentFixedCandidates.put(segment, new Vector<Tag>());
 							segmentFixedCandidates.get(segment).add(tag);
@@ -178,7 +205,7 @@ public class DefaultBindingGenerator implements BindingGenerator {
 					
 				
 				List<List<Pair<Integer, Integer>>> allSegmentations = SmaphUtils
-						.getSegmentations(query, MAX_SEGMENTATIONS);
+						.getSegmentations(text.getTokenPositions(), MAX_SEGMENTATIONS);
 				
 				//If a fixed segment is included into another and they point to the same set of entities, delete segmentations that include the inner one (this is safe).
 				HashSet<Pair<Integer, Integer>> fixedSegmentsToRemove = new HashSet<>();
@@ -254,7 +281,7 @@ public class DefaultBindingGenerator implements BindingGenerator {
 		entityToBolds = SmaphUtils.getEntitiesToBoldsList(qi.entityToBoldsSA,
 				qi.allCandidates());
 		HashMap<Tag, String> entitiesToTitles = SmaphUtils.getEntitiesToTitles(acceptedEntities, wikiApi);
-		return getAllBindings(query, entityToBolds, entitiesToTitles, acceptedEntities);
+		return getAllBindings(qi.getTextContext(query), entityToBolds, entitiesToTitles, acceptedEntities, qi.getEditDistanceMemo());
 		
 	}
 }
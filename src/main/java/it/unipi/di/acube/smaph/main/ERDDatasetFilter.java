@@ -46,8 +46,7 @@ public class ERDDatasetFilter implements A2WDataset {
 	}
 
 	public static boolean entityIsNE(WikipediaInterface wikiApi, WikipediaToFreebase w2f, int wid) throws IOException {
-		String title = wikiApi.getTitlebyId(wid);
-		return entityIsNE(wikiApi, w2f, title);
+		return w2f.hasEntity(wid, wikiApi);
 	}
 
 	public static boolean entityIsNE(WikipediaInterface wikiApi, WikipediaToFreebase w2f, String title) throws IOException {
@@ -64,12 +63,11 @@ public class ERDDatasetFilter implements A2WDataset {
 			HashSet<Mention> filteredMentions = new HashSet<>();
 			ERDMentions.add(filteredMentions);
 			for (Annotation ann : anns) {
-				String title = wikiApi.getTitlebyId(ann.getConcept());
-				if (!entityIsNE(wikiApi, w2f, ann.getConcept())) {
-					LOG.info("Discarding title={}", title);
+				boolean isNE = entityIsNE(wikiApi, w2f, ann.getConcept());
+				if (LOG.isDebugEnabled())
+					LOG.debug("{} title={}", isNE ? "Including" : "Discarding", wikiApi.getTitlebyId(ann.getConcept()));
+				if (!isNE)
 					continue;
-				}
-				LOG.info("Including title={}", title);
 				filteredAnns.add(ann);
 				filteredMentions.add(new Mention(ann.getPosition(), ann.getLength()));
 			}
@@ -83,12 +81,11 @@ public class ERDDatasetFilter implements A2WDataset {
 			HashSet<Tag> erdTags = new HashSet<>();
 			ERDTopics.add(erdTags);
 			for (Tag t : tags) {
-				String title = wikiApi.getTitlebyId(t.getConcept());
-				if (!entityIsNE(wikiApi, w2f, t.getConcept())) {
-					LOG.info("Discarding title={}", title);
+				boolean isNE = entityIsNE(wikiApi, w2f, t.getConcept());
+				if (LOG.isDebugEnabled())
+					LOG.debug("{} title={}", isNE ? "Including" : "Discarding", wikiApi.getTitlebyId(t.getConcept()));
+				if (!isNE)
 					continue;
-				}
-				LOG.info("Including title={}", title);
 				erdTags.add(new Tag(t.getConcept()));
 			}
 		}
@@ -0,0 +1,130 @@
+package it.unipi.di.acube.smaph.main.experiments;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+import it.unipi.di.acube.batframework.data.Annotation;
+import it.unipi.di.acube.batframework.data.Tag;
+import it.unipi.di.acube.batframework.datasetPlugins.DatasetBuilder;
+import it.unipi.di.acube.batframework.problems.A2WDataset;
+import it.unipi.di.acube.batframework.systemPlugins.CachedWAT2Annotator;
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+import it.unipi.di.acube.batframework.utils.WikipediaInterfaceWAT;
+import it.unipi.di.acube.smaph.SmaphAnnotator;
+import it.unipi.di.acube.smaph.SmaphBuilder;
+import it.unipi.di.acube.smaph.SmaphBuilder.SmaphVersion;
+import it.unipi.di.acube.smaph.SmaphBuilder.Websearch;
+import it.unipi.di.acube.smaph.SmaphConfig;
+import it.unipi.di.acube.smaph.WATRelatednessComputer;
+import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
+import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
+import it.unipi.di.acube.smaph.learn.ExampleGatherer;
+import it.unipi.di.acube.smaph.learn.GenerateTrainingAndTest;
+import it.unipi.di.acube.smaph.learn.featurePacks.EntityFeaturePack;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeaturePack;
+import it.unipi.di.acube.smaph.learn.featurePacks.GreedyFeaturePack;
+import it.unipi.di.acube.smaph.learn.models.LibSvmModel;
+import it.unipi.di.acube.smaph.learn.models.entityfilters.LibSvmEntityFilter;
+import it.unipi.di.acube.smaph.learn.models.linkback.annotationRegressor.LibSvmAnnotationRegressor;
+import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
+import it.unipi.di.acube.smaph.learn.normalizer.ZScoreFeatureNormalizer;
+
+/**
+ * Reports, for the entity filter and the annotation regressor models, how well the random Fourier
+ * approximation of their kernel (see {@link SmaphBuilder#setKernelApproximation(int, boolean)})
+ * agrees with the exact model on the candidates of the GERDAQ test set, and how long scoring
+ * takes. Arguments are the numbers of random features to test (default: 128 512 2048).
+ */
+public class KernelApproximationAgreement {
+	private static final Locale LOCALE = Locale.US;
+
+	public static void main(String[] args) throws Exception {
+		java.security.Security.setProperty("networkaddress.cache.ttl", "0");
+		Locale.setDefault(LOCALE);
+
+		SmaphConfig c = SmaphConfig.fromConfigFile("smaph-config.xml");
+		SmaphBuilder.initialize(c.getWatGcubeToken());
+		CachedWAT2Annotator.setCache("wat2.cache");
+		WATRelatednessComputer.setGcubeToken(c.getWatGcubeToken());
+		WATRelatednessComputer.setCache("relatedness_wat2.cache");
+		WikipediaInterface wikiApi = new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(c.getWatGcubeToken()).cache().build();
+		WikipediaToFreebase w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage(), c.getDefaultNamedEntitiesBitset());
+		EntityToAnchors e2a = EntityToAnchors.fromDB(c.getDefaultEntityToAnchorsStorage());
+
+		int[] dimensions = new int[] { 128, 512, 2048 };
+		if (args.length > 0) {
+			dimensions = new int[args.length];
+			for (int i = 0; i < args.length; i++)
+				dimensions[i] = Integer.parseInt(args[i]);
+		}
+
+		Websearch ws = SmaphBuilder.DEFAULT_WEBSEARCH;
+		A2WDataset ds = DatasetBuilder.getGerdaqTest(wikiApi);
+		SmaphAnnotator smaphGatherer = SmaphBuilder.getSmaphGatherer(wikiApi, w2f, e2a, true, true, true, ws, c);
+		ExampleGatherer<Tag, HashSet<Tag>> efGatherer = new ExampleGatherer<>();
+		ExampleGatherer<Annotation, HashSet<Annotation>> arGatherer = new ExampleGatherer<>();
+		GenerateTrainingAndTest.gatherExamples(smaphGatherer, ds, efGatherer, arGatherer, null, null, -1, null, false,
+		        new HashMap<>());
+
+		URL efModel = getModel(SmaphVersion.ENTITY_FILTER, ws);
+		if (efModel != null) {
+			LibSvmEntityFilter ef = LibSvmEntityFilter.fromUrl(efModel);
+			FeatureNormalizer efFn = ZScoreFeatureNormalizer.fromUrl(getZscoreNormalizer(SmaphVersion.ENTITY_FILTER, ws),
+			        new EntityFeaturePack(), false);
+			report("Entity filter", ef, efGatherer.getAllFeaturePacks(), efFn, 0.0, dimensions);
+		}
+
+		URL arModel = getModel(SmaphVersion.ANNOTATION_REGRESSOR, ws);
+		if (arModel != null) {
+			LibSvmAnnotationRegressor ar = LibSvmAnnotationRegressor.fromUrl(arModel);
+			FeatureNormalizer arFn = ZScoreFeatureNormalizer.fromUrl(
+			        getZscoreNormalizer(SmaphVersion.ANNOTATION_REGRESSOR, ws), new GreedyFeaturePack(), false);
+			report("Annotation regressor", ar, arGatherer.getAllFeaturePacks(), arFn, ar.threshold(), dimensions);
+		}
+	}
+
+	private static URL getModel(SmaphVersion v, Websearch ws) {
+		return SmaphBuilder.getModel(v, ws, SmaphBuilder.DEFAULT_NORMALSEARCH_RESULTS, SmaphBuilder.DEFAULT_WIKISEARCH_RESULTS,
+		        SmaphBuilder.DEFAULT_ANNOTATED_SNIPPETS, -1);
+	}
+
+	private static URL getZscoreNormalizer(SmaphVersion v, Websearch ws) {
+		return SmaphBuilder.getZscoreNormalizer(v, ws, SmaphBuilder.DEFAULT_NORMALSEARCH_RESULTS,
+		        SmaphBuilder.DEFAULT_WIKISEARCH_RESULTS, SmaphBuilder.DEFAULT_ANNOTATED_SNIPPETS, -1);
+	}
+
+	private static <T> void report(String name, LibSvmModel<T> model, List<FeaturePack<T>> fps, FeatureNormalizer fn,
+	        double threshold, int[] dimensions) {
+		model.setKernelApproximation(0, SmaphBuilder.KERNEL_APPROXIMATION_SEED, false);
+		long start = System.nanoTime();
+		double[] exactScores = model.predictScores(fps, fn);
+		double exactMs = (System.nanoTime() - start) / 1e6;
+		System.out.printf("%s: %d candidates, exact model scored them in %.1f ms.%n", name, fps.size(), exactMs);
+
+		for (int d : dimensions)
+			for (boolean refit : new boolean[] { false, true }) {
+				start = System.nanoTime();
+				model.setKernelApproximation(d, SmaphBuilder.KERNEL_APPROXIMATION_SEED, refit);
+				double buildMs = (System.nanoTime() - start) / 1e6;
+				start = System.nanoTime();
+				double[] scores = model.predictScores(fps, fn);
+				double scoreMs = (System.nanoTime() - start) / 1e6;
+
+				int agreements = 0;
+				double absErrSum = 0;
+				for (int i = 0; i < scores.length; i++) {
+					if ((scores[i] > threshold) == (exactScores[i] > threshold))
+						agreements++;
+					absErrSum += Math.abs(scores[i] - exactScores[i]);
+				}
+				System.out.printf("%s, D=%d%s: decision agreement %.4f, mean absolute score difference %.4f, "
+				        + "built in %.1f ms, scored in %.1f ms.%n", name, d, refit ? " (refit)" : "",
+				        scores.length == 0 ? 1.0 : (double) agreements / scores.length,
+				        scores.length == 0 ? 0.0 : absErrSum / scores.length, buildMs, scoreMs);
+			}
+		model.setKernelApproximation(0, SmaphBuilder.KERNEL_APPROXIMATION_SEED, false);
+	}
+}
@@ -83,7 +83,7 @@ public class RunBenchmark {
 		CachedWAT2Annotator.setCache("wat2.cache");
 		WATRelatednessComputer.setCache("relatedness_wat2.cache");
 		WikipediaInterface wikiApi = new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(c.getWatGcubeToken()).cache().build();
-		WikipediaToFreebase w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage());
+		WikipediaToFreebase w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage(), c.getDefaultNamedEntitiesBitset());
 		EntityToAnchors e2a = EntityToAnchors.fromDB(c.getDefaultEntityToAnchorsStorage());
 
 		A2WDataset ds = DatasetBuilder.getGerdaqTest(wikiApi);
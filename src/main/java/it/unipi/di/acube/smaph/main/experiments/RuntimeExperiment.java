@@ -35,7 +35,7 @@ public class RuntimeExperiment {
 		WATRelatednessComputer.setGcubeToken(c.getWatGcubeToken());
 		WATRelatednessComputer.setCache("relatedness_wat2.cache");
 		WikipediaInterface wikiApi = new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(c.getWatGcubeToken()).cache().build();
-		WikipediaToFreebase w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage());
+		WikipediaToFreebase w2f = WikipediaToFreebase.open(c.getDefaultWikipediaToFreebaseStorage(), c.getDefaultNamedEntitiesBitset());
 		EntityToAnchors e2a = EntityToAnchors.fromDB(c.getDefaultEntityToAnchorsStorage());
 
 		A2WDataset ds = DatasetBuilder.getGerdaqDevel(wikiApi);
@@ -24,6 +24,7 @@ import org.glassfish.jersey.servlet.ServletContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import it.unipi.di.acube.smaph.SmaphBuilder;
 import it.unipi.di.acube.smaph.servlet.SmaphContextListener;
 
 public class ServerMain {
@@ -36,6 +37,20 @@ public class ServerMain {
 	 * @throws ProcessingException
 	 */
 	public static void startServer(String serverUri, Path storageBase, String watGcubeToken) throws ProcessingException, URISyntaxException {
+		startServer(serverUri, storageBase, watGcubeToken, 0, true);
+	}
+
+	/**
+	 * Starts Grizzly HTTP server exposing SMAPH JAX-RS resources.
+	 * 
+	 * @param kernelApproximationDimensions
+	 *            the number of random features approximating the kernel of the SVM models, 0 to
+	 *            evaluate them exactly (see {@link SmaphBuilder#setKernelApproximation(int, boolean)}).
+	 * @param kernelApproximationRefit
+	 *            whether to refit the approximation to the decision values of the exact models.
+	 */
+	public static void startServer(String serverUri, Path storageBase, String watGcubeToken, int kernelApproximationDimensions,
+	        boolean kernelApproximationRefit) throws ProcessingException, URISyntaxException {
 		LOG.info("Initializing SMAPH services.");
 		LOG.info("Storage path: {}", storageBase.toAbsolutePath());
 
@@ -48,9 +63,14 @@ public class ServerMain {
 		registration.addMapping("/smaph/*");
 		context.addListener(SmaphContextListener.class);
 		context.setInitParameter(SmaphContextListener.WIKI_PAGES_DB, storageBase.resolve("mapdb/wikipedia_pages.db").toString());
+		context.setInitParameter(SmaphContextListener.WIKI_PAGES_INDEX, storageBase.resolve("mapdb/wikipedia_pages.idx").toString());
 		context.setInitParameter(SmaphContextListener.FREEBASE_DIR, storageBase.resolve("mapdb/freebase.db").toString());
+		context.setInitParameter(SmaphContextListener.FREEBASE_WID_INDEX, storageBase.resolve("mapdb/freebase_wid.idx").toString());
+		context.setInitParameter(SmaphContextListener.NAMED_ENTITIES_BITSET, storageBase.resolve("mapdb/named_entities.bits").toString());
 		context.setInitParameter(SmaphContextListener.ENTITY_TO_ANCHORS_DB, storageBase.resolve("mapdb/e2a.db").toString());
 		context.setInitParameter(SmaphContextListener.WAT_GCUBE_TOKEN, watGcubeToken);
+		context.setInitParameter(SmaphContextListener.KERNEL_APPROXIMATION_DIMENSIONS, Integer.toString(kernelApproximationDimensions));
+		context.setInitParameter(SmaphContextListener.KERNEL_APPROXIMATION_REFIT, Boolean.toString(kernelApproximationRefit));
 		context.deploy(httpServer);
 		try {
 			httpServer.start();
@@ -84,11 +104,17 @@ public class ServerMain {
 		options.addOption("p", "port", true, "TCP port to listen.");
 		options.addOption("s", "storage_path", true, "Storage path.");
 		options.addOption("w", "wat_gcube_token", true, "WAT gcube authentication token");
+		options.addOption("k", "kernel_approximation", true,
+		        "Approximate the kernel of the SVM models with this many random features (default: 0, exact evaluation).");
+		options.addOption("r", "kernel_approximation_refit", true,
+		        "Refit the kernel approximation to the decision values of the exact models (true or false, default: true).");
 		CommandLine line = parser.parse(options, args);
 
 		String serverUri = String.format("http://%s:%d/smaph", line.getOptionValue("host", "localhost"),
 		        Integer.parseInt(line.getOptionValue("port", "8080")));
 		Path storage = Paths.get(line.getOptionValue("storage_path"));
-		startServer(serverUri, storage, line.getOptionValue("wat_gcube_token"));
+		startServer(serverUri, storage, line.getOptionValue("wat_gcube_token"),
+		        Integer.parseInt(line.getOptionValue("kernel_approximation", "0")),
+		        Boolean.parseBoolean(line.getOptionValue("kernel_approximation_refit", "true")));
 	}
 }
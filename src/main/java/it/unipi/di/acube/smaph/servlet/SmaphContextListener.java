@@ -1,7 +1,15 @@
 package it.unipi.di.acube.smaph.servlet;
 
+import java.io.File;
 import java.lang.invoke.MethodHandles;
 import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -14,35 +22,123 @@ import org.slf4j.LoggerFactory;
 
 import it.unipi.di.acube.batframework.utils.WikipediaInterfaceWAT;
 import it.unipi.di.acube.smaph.SmaphBuilder;
+import it.unipi.di.acube.smaph.datasets.wikipages.MappedWikipediaInterface;
 import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
 import it.unipi.di.acube.smaph.datasets.wikitofreebase.WikipediaToFreebase;
 
 public class SmaphContextListener implements ServletContextListener {
 	private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 	public final static String WIKI_PAGES_DB = "it.unipi.di.acube.smaph.wiki-pages-db";
+	public final static String WIKI_PAGES_INDEX = "it.unipi.di.acube.smaph.wiki-pages-index";
 	public final static String FREEBASE_DIR = "it.unipi.di.acube.smaph.wiki-to-freebase-db";
+	public final static String FREEBASE_WID_INDEX = "it.unipi.di.acube.smaph.wid-to-freebase-index";
+	public final static String NAMED_ENTITIES_BITSET = "it.unipi.di.acube.smaph.named-entities-bitset";
 	public final static String  ENTITY_TO_ANCHORS_DB = "it.unipi.di.acube.smaph.entity-to-anchors-db";
 	public final static String  WAT_GCUBE_TOKEN = "it.unipi.di.acube.smaph.wat-gcube-token";
+	public final static String KERNEL_APPROXIMATION_DIMENSIONS = "it.unipi.di.acube.smaph.kernel-approximation-dimensions";
+	public final static String KERNEL_APPROXIMATION_REFIT = "it.unipi.di.acube.smaph.kernel-approximation-refit";
+	public final static String READY_ATTRIBUTE = "smaph-ready";
+	public final static String LOAD_FAILED_ATTRIBUTE = "smaph-load-failed";
+	private Thread loader;
+	private ExecutorService executor;
+
+	/**
+	 * Open the data stores and load all models concurrently, in the background. Once everything is
+	 * loaded {@link #READY_ATTRIBUTE} is set; until then the servlet refuses requests. If a resource
+	 * cannot be loaded, {@link #LOAD_FAILED_ATTRIBUTE} is set to the resources that failed. Only the
+	 * models of {@link SmaphBuilder#DEFAULT_WEBSEARCH}, the only backend the servlet serves, are
+	 * preloaded.
+	 */
 	@Override
 	public void contextInitialized(ServletContextEvent e) {
 		LOG.info("Creating Smaph context.");
+		long start = System.currentTimeMillis();
 		ServletContext context = e.getServletContext();
 		context.setAttribute("nif-parser", new TurtleNIFDocumentParser());
 		context.setAttribute("nif-creator", new TurtleNIFDocumentCreator());
 		String watGcubeToken = context.getInitParameter(WAT_GCUBE_TOKEN);
 		SmaphBuilder.initialize(watGcubeToken);
-		try {
-			context.setAttribute("wikipedia-api", new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(watGcubeToken).build());
-		} catch (URISyntaxException e1) {
-			e1.printStackTrace();
+		String kernelApproximationDimensions = context.getInitParameter(KERNEL_APPROXIMATION_DIMENSIONS);
+		if (kernelApproximationDimensions != null && !kernelApproximationDimensions.isEmpty()) {
+			String refit = context.getInitParameter(KERNEL_APPROXIMATION_REFIT);
+			LOG.info("Approximating the SVM kernels with {} random features.", kernelApproximationDimensions);
+			SmaphBuilder.setKernelApproximation(Integer.parseInt(kernelApproximationDimensions),
+			        refit == null || refit.isEmpty() || Boolean.parseBoolean(refit));
 		}
-		
-		context.setAttribute("wiki-to-freebase", WikipediaToFreebase.open(context.getInitParameter(FREEBASE_DIR)));
-		context.setAttribute("entity-to-anchors", EntityToAnchors.fromDB(context.getInitParameter(ENTITY_TO_ANCHORS_DB)));
+
+		Map<String, Runnable> loaders = new LinkedHashMap<>();
+		loaders.put("wikipedia-api", () -> {
+			String wikiPagesIndex = context.getInitParameter(WIKI_PAGES_INDEX);
+			if (wikiPagesIndex != null && new File(wikiPagesIndex).exists()) {
+				LOG.info("Using local Wikipedia pages index {}", wikiPagesIndex);
+				context.setAttribute("wikipedia-api", MappedWikipediaInterface.open(wikiPagesIndex));
+			} else
+				try {
+					context.setAttribute("wikipedia-api", new WikipediaInterfaceWAT.WikipediaInterfaceWATBuilder().gcubeToken(watGcubeToken).build());
+				} catch (URISyntaxException e1) {
+					throw new RuntimeException(e1);
+				}
+		});
+		loaders.put("wiki-to-freebase", () -> {
+			WikipediaToFreebase w2f = WikipediaToFreebase.open(context.getInitParameter(FREEBASE_DIR));
+			String widIndex = context.getInitParameter(FREEBASE_WID_INDEX);
+			if (widIndex != null && new File(widIndex).exists()) {
+				LOG.info("Using page-ID to Freebase index {}", widIndex);
+				w2f.withWidIndex(widIndex);
+			}
+			String neBitset = context.getInitParameter(NAMED_ENTITIES_BITSET);
+			if (neBitset != null && new File(neBitset).exists()) {
+				LOG.info("Using named-entity bitset {}", neBitset);
+				w2f.withNamedEntityBitset(neBitset);
+			}
+			context.setAttribute("wiki-to-freebase", w2f);
+		});
+		loaders.put("entity-to-anchors",
+		        () -> context.setAttribute("entity-to-anchors", EntityToAnchors.fromDB(context.getInitParameter(ENTITY_TO_ANCHORS_DB))));
+		loaders.putAll(SmaphBuilder.getModelLoaders(SmaphBuilder.DEFAULT_WEBSEARCH));
+
+		executor = Executors.newFixedThreadPool(Math.min(loaders.size(), Runtime.getRuntime().availableProcessors()));
+		loader = new Thread(() -> {
+			Map<String, Future<?>> futures = new LinkedHashMap<>();
+			for (Map.Entry<String, Runnable> resource : loaders.entrySet())
+				futures.put(resource.getKey(), executor.submit(() -> {
+					long loadStart = System.currentTimeMillis();
+					resource.getValue().run();
+					LOG.info("Loaded {} in {} ms.", resource.getKey(), System.currentTimeMillis() - loadStart);
+				}));
+			Vector<String> failed = new Vector<>();
+			try {
+				for (Map.Entry<String, Future<?>> future : futures.entrySet())
+					try {
+						future.getValue().get();
+					} catch (ExecutionException e1) {
+						LOG.error("Could not load " + future.getKey(), e1.getCause());
+						failed.add(future.getKey());
+					}
+			} catch (InterruptedException e1) {
+				LOG.info("Smaph context loading interrupted.");
+				return;
+			} finally {
+				executor.shutdownNow();
+			}
+			if (!failed.isEmpty()) {
+				LOG.error("Could not load: {}", failed);
+				context.setAttribute(LOAD_FAILED_ATTRIBUTE, failed);
+				return;
+			}
+			context.setAttribute(READY_ATTRIBUTE, Boolean.TRUE);
+			LOG.info("Smaph context created in {} ms ({} resources).", System.currentTimeMillis() - start, loaders.size());
+		}, "smaph-context-loader");
+		loader.setDaemon(true);
+		loader.start();
 	}
 
 	@Override
 	public void contextDestroyed(ServletContextEvent arg0) {
 		LOG.info("Destroying Smaph context.");
+		if (loader != null)
+			loader.interrupt();
+		if (executor != null)
+			executor.shutdownNow();
 	}
 }
@@ -62,6 +62,8 @@ public class SmaphServlet {
 	@Produces({ MediaType.APPLICATION_JSON })
 	public Response debugSmaph(@QueryParam("Text") String text, @QueryParam("google-cse-id") String cseId,
 	        @QueryParam("google-api-key") String apiKey, @QueryParam("exclude-s2") String excludeS2) {
+		if (!isReady())
+			return notReady();
 		WikipediaInterface wikiApi = (WikipediaInterface) context.getAttribute("wikipedia-api");
 		SmaphDebugger debugger = new SmaphDebugger();
 		SmaphConfig c = getSmaphConfig(cseId, apiKey);
@@ -80,6 +82,8 @@ public class SmaphServlet {
 	public Response annotateNif(String request, @QueryParam("q") String q,
 	        @QueryParam("annotator") @DefaultValue("default") String annotator, @QueryParam("google-cse-id") String cseId,
 	        @QueryParam("google-api-key") String apiKey, @QueryParam("exclude-s2") String excludeS2) {
+		if (!isReady())
+			return notReady();
 		if (q == null)
 			return Response.serverError().entity("Parameter q required.").build();
 		if (cseId == null)
@@ -95,6 +99,8 @@ public class SmaphServlet {
 	@Produces({ MediaType.APPLICATION_JSON })
 	public Response annotateDefault(@QueryParam("q") String q, @QueryParam("annotator") @DefaultValue("default") String annotator,
 	        @QueryParam("google-cse-id") String cseId, @QueryParam("google-api-key") String apiKey, @QueryParam("exclude-s2") String excludeS2) {
+		if (!isReady())
+			return notReady();
 		if (q == null)
 			return Response.serverError().entity("Parameter q required.").build();
 		if (cseId == null)
@@ -106,8 +112,19 @@ public class SmaphServlet {
 		return Response.ok(encodeResponseJson(ann.solveSa2W(q), ann)).build();
 	}
 
+	private boolean isReady() {
+		return context.getAttribute(SmaphContextListener.READY_ATTRIBUTE) != null;
+	}
+
+	private Response notReady() {
+		Object failed = context.getAttribute(SmaphContextListener.LOAD_FAILED_ATTRIBUTE);
+		if (failed != null)
+			return Response.serverError().entity("Smaph could not load: " + failed).build();
+		return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Smaph is still loading, retry later.").build();
+	}
+
 	private SmaphConfig getSmaphConfig(String cseId, String apiKey) {
-		return new SmaphConfig(null, null, null, apiKey, cseId, null, null, null, null, null, null);
+		return new SmaphConfig(null, null, null, apiKey, cseId, null, null, null, null, null, null, null);
 	}
 
 	private SmaphAnnotator getAnnotatorByName(String annotator, boolean excludeS2, SmaphConfig c) {
@@ -215,7 +232,7 @@ public class SmaphServlet {
 				e.printStackTrace();
 				throw new RuntimeException(e);
 			}
-			String mid = wikiToFreeb.getFreebaseId(title);
+			String mid = wikiToFreeb.getFreebaseId(wid, title);
 			annToTitle.put(a, title);
 			if (mid == null)
 				continue;
@@ -246,7 +263,7 @@ public class SmaphServlet {
 				e.printStackTrace();
 				throw new RuntimeException(e);
 			}
-			String mid = wikiToFreeb.getFreebaseId(title);
+			String mid = wikiToFreeb.getFreebaseId(wid, title);
 			annToTitle.put(a, title);
 			if (mid == null)
 				continue;
@@ -0,0 +1,126 @@
+package it.unipi.di.acube.smaph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.unipi.di.acube.batframework.utils.WikipediaInterface;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentWikipediaInterfaceTest {
+	/**
+	 * A backend that counts its lookups. Lookups of page 1 wait for {@link #release}.
+	 */
+	private static class CountingWikipediaInterface extends WikipediaInterface {
+		final AtomicInteger lookups = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Integer> prefetched = new Vector<>();
+
+		@Override
+		public String getTitlebyId(int wid) throws IOException {
+			lookups.incrementAndGet();
+			if (wid < 0)
+				throw new IOException("Unknown page " + wid);
+			if (wid == 1)
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			return wid == 0 ? null : "Page " + wid;
+		}
+
+		@Override
+		public int getIdByTitle(String title) throws IOException {
+			lookups.incrementAndGet();
+			return title.length();
+		}
+
+		@Override
+		public int dereference(int wid) throws IOException {
+			lookups.incrementAndGet();
+			return wid + 1;
+		}
+
+		@Override
+		public boolean isRedirect(int wid) throws IOException {
+			lookups.incrementAndGet();
+			return wid % 2 == 0;
+		}
+
+		@Override
+		public void prefetchTitles(List<String> titlesToPrefetch) {
+		}
+
+		@Override
+		public void prefetchWids(List<Integer> widsToPrefetch) {
+			prefetched.addAll(widsToPrefetch);
+		}
+
+		@Override
+		public void flush() throws IOException {
+		}
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		CountingWikipediaInterface backend = new CountingWikipediaInterface();
+		WikipediaInterface wikiApi = ConcurrentWikipediaInterface.of(backend);
+		assertSame(wikiApi, ConcurrentWikipediaInterface.of(wikiApi));
+		backend.release.countDown();
+
+		for (int k = 0; k < 3; k++) {
+			assertEquals("Page 5", wikiApi.getTitlebyId(5));
+			assertNull(wikiApi.getTitlebyId(0));
+			assertEquals(3, wikiApi.getIdByTitle("abc"));
+			assertEquals(6, wikiApi.dereference(5));
+			assertTrue(wikiApi.isRedirect(4));
+		}
+		assertEquals(5, backend.lookups.get());
+
+		// Failures are not cached.
+		for (int k = 0; k < 2; k++)
+			try {
+				wikiApi.getTitlebyId(-1);
+				fail();
+			} catch (IOException e) {
+			}
+		assertEquals(7, backend.lookups.get());
+
+		wikiApi.prefetchWids(Arrays.asList(5, 6, 0, 7));
+		assertEquals(Arrays.asList(6, 7), backend.prefetched);
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		CountingWikipediaInterface backend = new CountingWikipediaInterface();
+		WikipediaInterface wikiApi = ConcurrentWikipediaInterface.of(backend);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> slow = new Vector<>();
+			for (int k = 0; k < 4; k++)
+				slow.add(executor.submit(() -> wikiApi.getTitlebyId(1)));
+			// Lookups of other pages are not blocked by the pending lookup of page 1.
+			assertEquals("Page 2", wikiApi.getTitlebyId(2));
+			backend.release.countDown();
+			for (Future<String> title : slow)
+				assertEquals("Page 1", title.get(10, TimeUnit.SECONDS));
+			assertEquals(2, backend.lookups.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package it.unipi.di.acube.smaph;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EditDistanceTest {
+
+	private static int naiveLevenshtein(String s, String t) {
+		int[][] d = new int[s.length() + 1][t.length() + 1];
+		for (int i = 0; i <= s.length(); i++)
+			d[i][0] = i;
+		for (int j = 0; j <= t.length(); j++)
+			d[0][j] = j;
+		for (int i = 1; i <= s.length(); i++)
+			for (int j = 1; j <= t.length(); j++)
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+				        d[i - 1][j - 1] + (s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1));
+		return d[s.length()][t.length()];
+	}
+
+	private static String randomString(Random r, String alphabet, int maxLength) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = r.nextInt(maxLength + 1); i > 0; i--)
+			sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
+		return sb.toString();
+	}
+
+	@Test
+	public void testLevenshtein() {
+		assertEquals(0, EditDistance.levenshtein("", ""));
+		assertEquals(3, EditDistance.levenshtein("", "abc"));
+		assertEquals(3, EditDistance.levenshtein("kitten", "sitting"));
+		assertEquals(3, EditDistance.levenshtein("sitting", "kitten"));
+		assertEquals(6, EditDistance.levenshtein("armstrong", "moon"));
+
+		assertEquals(3, EditDistance.levenshtein("kitten", "sitting", 3));
+		assertEquals(-1, EditDistance.levenshtein("kitten", "sitting", 2));
+		assertEquals(-1, EditDistance.levenshtein("abc", "abcdef", 2));
+		assertEquals(-1, EditDistance.levenshtein("abc", "abc", -1));
+	}
+
+	@Test
+	public void testLevenshteinAsNaive() {
+		Random r = new Random(42);
+		for (int i = 0; i < 5000; i++) {
+			String s = randomString(r, "abcd", 30);
+			String t = randomString(r, "abcd", 30);
+			int expected = naiveLevenshtein(s, t);
+			assertEquals(s + " " + t, expected, EditDistance.levenshtein(s, t));
+			int bound = r.nextInt(20);
+			assertEquals(s + " " + t + " " + bound, expected <= bound ? expected : -1, EditDistance.levenshtein(s, t, bound));
+		}
+	}
+
+	@Test
+	public void testLevenshteinLongAndNonAscii() {
+		Random r = new Random(43);
+		for (int i = 0; i < 2000; i++) {
+			String s = randomString(r, i % 2 == 0 ? "ab c" : "ab\u00e8\u4e2d", 130);
+			String t = randomString(r, "ab c\u00e8", 130);
+			int expected = naiveLevenshtein(s, t);
+			assertEquals(s + " " + t, expected, EditDistance.levenshtein(s, t));
+			int bound = r.nextInt(100);
+			assertEquals(s + " " + t + " " + bound, expected <= bound ? expected : -1, EditDistance.levenshtein(s, t, bound));
+		}
+		String word = "abcdefghijklmnopqrstuvwxyzabcdefghijklmnopqrstuvwxyzabcdefghijkl";
+		assertEquals(64, word.length());
+		assertEquals(0, EditDistance.levenshtein(word, word));
+		assertEquals(1, EditDistance.levenshtein(word, word.substring(1)));
+		assertEquals(1, EditDistance.levenshtein(word, word + "m"));
+		assertEquals(64, EditDistance.levenshtein(word, word.toUpperCase()));
+	}
+
+	@Test
+	public void testMemo() {
+		EditDistanceMemo memo = new EditDistanceMemo();
+		assertEquals(SmaphUtils.getNormEditDistance("armstrong", "moon"), memo.getNormEditDistance("armstrong", "moon"), 0.0);
+		assertEquals(SmaphUtils.getNormEditDistance("armstrong", "moon"), memo.getNormEditDistance("moon", "armstrong"), 0.0);
+		assertEquals(SmaphUtils.getNormEditDistanceLC("Moon!", "moon"), memo.getNormEditDistanceLC("Moon!", "moon"), 0.0);
+		assertEquals(SmaphUtils.getMinEditDist("armstrong moon", "moon landing"),
+		        memo.getMinEditDist("armstrong moon", "moon landing"), 0.0);
+		assertEquals(SmaphUtils.getMinEditDist("moon landing", "armstrong moon"),
+		        memo.getMinEditDist("moon landing", "armstrong moon"), 0.0);
+		assertEquals(1, memo.getHits());
+		assertEquals(4, memo.getMisses());
+	}
+
+	@Test
+	public void testMemoBounded() {
+		EditDistanceMemo memo = new EditDistanceMemo();
+		// Within the bound, the exact distance is stored and then found by the unbounded lookup.
+		assertEquals(SmaphUtils.getNormEditDistance("armstrong", "armstrung"), memo.getNormEditDistance("armstrong", "armstrung", 0.3), 0.0);
+		assertEquals(SmaphUtils.getNormEditDistance("armstrong", "armstrung"), memo.getNormEditDistance("armstrung", "armstrong"), 0.0);
+		assertEquals(1, memo.getHits());
+		assertEquals(1, memo.getMisses());
+		// Beyond the bound, the computation gives up and nothing is stored.
+		assertEquals(1, memo.getNormEditDistance("armstrong", "moon", 0.3), 0.0);
+		assertEquals(SmaphUtils.getNormEditDistance("armstrong", "moon"), memo.getNormEditDistance("armstrong", "moon"), 0.0);
+		assertEquals(1, memo.getHits());
+		assertEquals(3, memo.getMisses());
+		// An exact distance in the memo is bounded as well.
+		assertEquals(1, memo.getNormEditDistance("moon", "armstrong", 0.3), 0.0);
+		assertEquals(2, memo.getHits());
+
+		Random r = new Random(44);
+		for (int i = 0; i < 2000; i++) {
+			String s = randomString(r, "abc", 10);
+			String t = randomString(r, "abc", 10);
+			double maxDistance = r.nextInt(11) / 10.0;
+			float expected = SmaphUtils.getNormEditDistance(s, t);
+			assertEquals(s + " " + t + " " + maxDistance, expected <= maxDistance ? expected : 1,
+			        memo.getNormEditDistance(s, t, maxDistance), 0.0);
+			assertEquals(s + " " + t, expected, memo.getNormEditDistance(s, t), 0.0);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package it.unipi.di.acube.smaph;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server answering the relatedness and link probability requests of
+ * {@link WATRelatednessComputer} with {@link #jaccard(int, int)}, {@link #mw(int, int)} and
+ * {@link #lp(String)}, so that tests do not depend on the WAT service. The computer queries it
+ * until {@link #close()} is called.
+ */
+public class FakeWatServer implements AutoCloseable {
+	private final HttpServer server;
+	private final String previousBaseUri;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final List<String> requestedPairs = new Vector<>();
+
+	public FakeWatServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/relatedness/graph", this::relatedness);
+		server.createContext("/sf/sf", this::linkProbability);
+		server.start();
+		previousBaseUri = WATRelatednessComputer.getBaseUri();
+		WATRelatednessComputer.setBaseUri("http://localhost:" + server.getAddress().getPort());
+	}
+
+	/**
+	 * @return a (symmetric) fake Jaccard relatedness between the two entities.
+	 */
+	public static double jaccard(int wid1, int wid2) {
+		return 1.0 / (1 + Math.abs(wid1 - wid2));
+	}
+
+	/**
+	 * @return a (symmetric) fake MW relatedness between the two entities.
+	 */
+	public static double mw(int wid1, int wid2) {
+		return ((wid1 + wid2) % 10) / 10.0;
+	}
+
+	/**
+	 * @return a fake link probability of the anchor.
+	 */
+	public static double lp(String anchor) {
+		return (anchor.length() % 8) / 8.0;
+	}
+
+	/**
+	 * @return the number of relatedness requests served so far.
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * @return the pairs requested so far, as "wid1 wid2 relatedness".
+	 */
+	public List<String> getRequestedPairs() {
+		return requestedPairs;
+	}
+
+	private void relatedness(HttpExchange exchange) throws IOException {
+		int wid1 = -1, wid2 = -1;
+		String relatedness = null;
+		for (String param : exchange.getRequestURI().getQuery().split("&")) {
+			String[] keyValue = param.split("=", 2);
+			if (keyValue[0].equals("ids") && wid1 < 0)
+				wid1 = Integer.parseInt(keyValue[1]);
+			else if (keyValue[0].equals("ids"))
+				wid2 = Integer.parseInt(keyValue[1]);
+			else if (keyValue[0].equals("relatedness"))
+				relatedness = keyValue[1];
+		}
+		requests.incrementAndGet();
+		requestedPairs.add(wid1 + " " + wid2 + " " + relatedness);
+		double rel = relatedness.equals("mw") ? mw(wid1, wid2) : jaccard(wid1, wid2);
+		respond(exchange, String.format("{\"pairs\":[{\"relatedness\":%s}]}", Double.toString(rel)));
+	}
+
+	private void linkProbability(HttpExchange exchange) throws IOException {
+		String anchor = null;
+		for (String param : exchange.getRequestURI().getRawQuery().split("&"))
+			if (param.startsWith("text="))
+				anchor = URLDecoder.decode(param.substring("text=".length()), "utf-8");
+		respond(exchange, String.format("{\"link_probability\":%s}", Double.toString(lp(anchor))));
+	}
+
+	private static void respond(HttpExchange exchange, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		WATRelatednessComputer.setBaseUri(previousBaseUri);
+		server.stop(0);
+	}
+}
@@ -0,0 +1,85 @@
+package it.unipi.di.acube.smaph;
+
+import static org.junit.Assert.*;
+
+import it.unipi.di.acube.batframework.data.Mention;
+import it.unipi.di.acube.batframework.utils.Pair;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class QueryTextContextTest {
+	private static final String[] QUERIES = { "", "   ", "armstrong moon", "  ;;;Aaa bbb   ,., ccc", "neil armstrong's\tmoon landing 1969 ",
+	        "a" };
+
+	@Test
+	public void testTokens() {
+		for (String query : QUERIES) {
+			QueryTextContext text = new QueryTextContext(query);
+			assertEquals(query, SmaphUtils.tokenize(query).size(), text.getTokenCount());
+			for (int start = 0; start <= query.length(); start++)
+				for (int end = start; end <= query.length(); end++)
+					assertEquals(query + " " + start + " " + end, SmaphUtils.tokenize(query.substring(start, end)).size(),
+					        text.getTokenCount(start, end));
+			assertEquals(SmaphUtils.findTokensPosition(query), text.getTokenPositions());
+		}
+	}
+
+	@Test
+	public void testSegments() {
+		for (String query : QUERIES) {
+			QueryTextContext text = new QueryTextContext(query);
+			List<Pair<Integer, Integer>> segments = SmaphUtils.findSegments(query);
+			assertEquals(segments, text.getSegments());
+			assertEquals(segments.size(), text.getSegmentCount());
+			for (int i = 0; i < segments.size(); i++) {
+				Pair<Integer, Integer> segment = segments.get(i);
+				String segmentStr = query.substring(segment.first, segment.second);
+				assertEquals(i, text.getSegmentId(segment));
+				assertEquals(segmentStr, text.getSegmentString(i));
+				assertEquals(SmaphUtils.getLCForm(segmentStr), text.getSegmentLCForm(i));
+			}
+			assertEquals(-1, text.getSegmentId(new Pair<Integer, Integer>(-1, 0)));
+			assertEquals(SmaphUtils.findSegmentsStrings(query.toLowerCase()), text.getLowerCaseSegmentStrings());
+		}
+	}
+
+	@Test
+	public void testTokenMask() {
+		QueryTextContext text = new QueryTextContext("  ;;;Aaa bbb   ,., ccc");
+		assertEquals(0b001L, text.getTokenMask(5, 8));
+		assertEquals(0b110L, text.getTokenMask(9, 22));
+		assertEquals(0L, text.getTokenMask(4, 8));
+		assertEquals(0L, text.getTokenMask(9, 11));
+		assertEquals(0L, text.getTokenMask(9, 8));
+
+		StringBuilder longQuery = new StringBuilder();
+		for (int i = 0; i < 70; i++)
+			longQuery.append("w").append(i).append(' ');
+		text = new QueryTextContext(longQuery.toString());
+		List<Pair<Integer, Integer>> tokens = text.getTokenPositions();
+		assertEquals(-1L, text.getTokenMask(tokens.get(0).first, tokens.get(63).second));
+		assertEquals(1L << 63, text.getTokenMask(tokens.get(63).first, tokens.get(63).second));
+		assertEquals(0L, text.getTokenMask(tokens.get(63).first, tokens.get(64).second));
+	}
+
+	@Test
+	public void testMentionCoverage() {
+		for (String query : QUERIES) {
+			QueryTextContext text = new QueryTextContext(query);
+			List<Pair<Integer, Integer>> segments = text.getSegments();
+			for (int i = 0; i < segments.size(); i++) {
+				Mention added = new Mention(segments.get(i).first, segments.get(i).second - segments.get(i).first);
+				MentionCoverage coverage = new MentionCoverage(text);
+				coverage.add(added);
+				// a mention that is not aligned to tokens.
+				coverage.add(new Mention(0, 1));
+				for (Pair<Integer, Integer> segment : segments) {
+					Mention m = new Mention(segment.first, segment.second - segment.first);
+					assertEquals(query + " " + i, added.overlaps(m) || m.overlaps(new Mention(0, 1)), coverage.overlaps(m));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package it.unipi.di.acube.smaph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class RelatednessMatrixTest {
+	private static FakeWatServer wat;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		wat = new FakeWatServer();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		wat.close();
+	}
+
+	private static void assertMatrix(RelatednessMatrix matrix, List<Integer> wids) {
+		for (int wid1 : wids)
+			for (int wid2 : wids) {
+				int id1 = matrix.getId(wid1), id2 = matrix.getId(wid2);
+				assertEquals(wid1 == wid2 ? 1.0 : FakeWatServer.jaccard(wid1, wid2), matrix.getJaccardRelatedness(id1, id2), 0.0);
+				assertEquals(wid1 == wid2 ? 1.0 : FakeWatServer.mw(wid1, wid2), matrix.getMwRelatedness(id1, id2), 0.0);
+			}
+	}
+
+	@Test
+	public void testSymmetricFill() throws Exception {
+		List<Integer> wids = Arrays.asList(930003, 930001, 930002, 930001);
+		int requests = wat.getRequests();
+		RelatednessMatrix matrix = new RelatednessMatrix(wids);
+		assertEquals(3, matrix.size());
+		assertEquals(-1, matrix.getId(930004));
+		assertTrue(matrix.containsAll(wids));
+		assertFalse(matrix.containsAll(Arrays.asList(930001, 930004)));
+		assertMatrix(matrix, wids);
+		// Each pair is fetched once (Jaccard and MW), with the lowest id first.
+		assertEquals(requests + 6, wat.getRequests());
+		for (String pair : wat.getRequestedPairs().subList(requests, wat.getRequests())) {
+			String[] widsAndRel = pair.split(" ");
+			assertTrue(pair, Integer.parseInt(widsAndRel[0]) < Integer.parseInt(widsAndRel[1]));
+		}
+
+		// The pairs are now cached.
+		assertMatrix(new RelatednessMatrix(Arrays.asList(930002, 930003)), Arrays.asList(930002, 930003));
+		assertEquals(requests + 6, wat.getRequests());
+	}
+
+	@Test
+	public void testLegacyReversedKeys() throws Exception {
+		WATRelatednessComputer.putCachedRelatedness(930102, 930101, 0.75, 0.25);
+		int requests = wat.getRequests();
+		RelatednessMatrix matrix = new RelatednessMatrix(Arrays.asList(930101, 930102));
+		int id1 = matrix.getId(930101), id2 = matrix.getId(930102);
+		assertEquals(0.75, matrix.getJaccardRelatedness(id1, id2), 0.0);
+		assertEquals(0.75, matrix.getJaccardRelatedness(id2, id1), 0.0);
+		assertEquals(0.25, matrix.getMwRelatedness(id1, id2), 0.0);
+		assertEquals(0.25, matrix.getMwRelatedness(id2, id1), 0.0);
+		assertEquals(0.75, WATRelatednessComputer.getJaccardRelatedness(930101, 930102), 0.0);
+		assertEquals(0.25, WATRelatednessComputer.getMwRelatedness(930102, 930101), 0.0);
+		assertEquals(requests, wat.getRequests());
+	}
+
+	@Test
+	public void testFetchOnlyMissing() throws Exception {
+		new RelatednessMatrix(Arrays.asList(930201, 930202));
+		// Only the Jaccard relatedness of (930202, 930203) is cached.
+		WATRelatednessComputer.getJaccardRelatedness(930203, 930202);
+
+		int[] wids = new int[] { 930201, 930202, 930203 };
+		double[] jaccard = new double[9], mw = new double[9];
+		IntArrayList misses = WATRelatednessComputer.copyCachedRelatedness(wids, jaccard, mw);
+		assertEquals(new HashSet<>(Arrays.asList(0 * 3 + 2, 1 * 3 + 2)), new HashSet<>(misses));
+		assertEquals(FakeWatServer.jaccard(930201, 930202), jaccard[0 * 3 + 1], 0.0);
+		assertEquals(FakeWatServer.jaccard(930201, 930202), jaccard[1 * 3 + 0], 0.0);
+		assertEquals(FakeWatServer.jaccard(930202, 930203), jaccard[2 * 3 + 1], 0.0);
+		assertEquals(FakeWatServer.mw(930201, 930202), mw[1 * 3 + 0], 0.0);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(1.0, jaccard[i * 3 + i], 0.0);
+			assertEquals(1.0, mw[i * 3 + i], 0.0);
+		}
+
+		int requests = wat.getRequests();
+		assertMatrix(new RelatednessMatrix(Arrays.asList(930201, 930202, 930203)), Arrays.asList(930201, 930202, 930203));
+		// Only the measures missing from the cache are fetched.
+		assertEquals(requests + 3, wat.getRequests());
+		assertEquals(new HashSet<>(Arrays.asList("930201 930203 jaccard", "930201 930203 mw", "930202 930203 mw")),
+		        new HashSet<>(wat.getRequestedPairs().subList(requests, wat.getRequests())));
+	}
+}
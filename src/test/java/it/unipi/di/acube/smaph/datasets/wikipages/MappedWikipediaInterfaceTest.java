@@ -0,0 +1,70 @@
+package it.unipi.di.acube.smaph.datasets.wikipages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedWikipediaInterfaceTest {
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+	private static MappedWikipediaInterface wikiApi;
+
+	@BeforeClass
+	public static void buildIndex() throws IOException {
+		File titles = folder.newFile("titles_wid.tsv");
+		File redirects = folder.newFile("redirect_wid.tsv");
+		File index = new File(folder.getRoot(), "wikipedia_pages.idx");
+		Files.write(titles.toPath(), Arrays.asList("Barack Obama\t534366", "Neil Armstrong\t21247", "Zürich\t34061", "Moon\t19331"),
+		        StandardCharsets.UTF_8);
+		Files.write(redirects.toPath(), Arrays.asList("Obama\t2297\t534366", "Armstrong (astronaut)\t7510\t21247"),
+		        StandardCharsets.UTF_8);
+		IndexWikipediaPages.main(new String[] { titles.getPath(), redirects.getPath(), index.getPath() });
+		wikiApi = MappedWikipediaInterface.open(index.getPath());
+	}
+
+	@Test
+	public void testTitles() throws Exception {
+		assertEquals(534366, wikiApi.getIdByTitle("Barack Obama"));
+		assertEquals(534366, wikiApi.getIdByTitle("barack_Obama"));
+		assertEquals(34061, wikiApi.getIdByTitle("Zürich"));
+		assertEquals(2297, wikiApi.getIdByTitle("Obama"));
+		assertEquals(-1, wikiApi.getIdByTitle("Barack obama"));
+		assertEquals(-1, wikiApi.getIdByTitle("Mars"));
+		assertEquals(-1, wikiApi.getIdByTitle(""));
+
+		assertEquals("Neil Armstrong", wikiApi.getTitlebyId(21247));
+		assertEquals("Armstrong (astronaut)", wikiApi.getTitlebyId(7510));
+		assertNull(wikiApi.getTitlebyId(42));
+	}
+
+	@Test
+	public void testRedirects() throws Exception {
+		assertEquals(534366, wikiApi.dereference(2297));
+		assertEquals(21247, wikiApi.dereference(7510));
+		assertEquals(19331, wikiApi.dereference(19331));
+		assertEquals(-1, wikiApi.dereference(42));
+		assertTrue(wikiApi.isRedirect(2297));
+		assertFalse(wikiApi.isRedirect(19331));
+		assertFalse(wikiApi.isRedirect(42));
+	}
+
+	@Test
+	public void testNormalizeTitle() {
+		assertEquals("Barack Obama", MappedWikipediaInterface.normalizeTitle("barack__Obama"));
+		assertEquals("Moon", MappedWikipediaInterface.normalizeTitle("Moon"));
+		assertEquals("Über alles ", MappedWikipediaInterface.normalizeTitle("über_alles_"));
+		assertEquals("", MappedWikipediaInterface.normalizeTitle(""));
+	}
+}
@@ -0,0 +1,82 @@
+package it.unipi.di.acube.smaph.datasets.wikitofreebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.unipi.di.acube.smaph.datasets.wikipages.IndexWikipediaPages;
+import it.unipi.di.acube.smaph.datasets.wikipages.MappedWikipediaInterface;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+public class NamedEntityBitsetTest {
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		File file = folder.newFile("named_entities.bits");
+		NamedEntityBitset.write(file.getPath(), new int[] { 0, 5, 63, 64, 127, 1000, 5 });
+		NamedEntityBitset bitset = NamedEntityBitset.open(file.getPath());
+		for (int wid : new int[] { 0, 5, 63, 64, 127, 1000 })
+			assertTrue(bitset.contains(wid));
+		for (int wid : new int[] { 1, 62, 65, 126, 128, 999, 1001, 1024, -1, Integer.MAX_VALUE, Integer.MIN_VALUE })
+			assertFalse(bitset.contains(wid));
+
+		File empty = folder.newFile("empty.bits");
+		NamedEntityBitset.write(empty.getPath(), new int[0]);
+		assertFalse(NamedEntityBitset.open(empty.getPath()).contains(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeWid() throws IOException {
+		NamedEntityBitset.write(folder.newFile("negative.bits").getPath(), new int[] { 3, -2 });
+	}
+
+	@Test
+	public void testSameAsTitleCheck() throws IOException {
+		File titles = folder.newFile("titles_wid.tsv");
+		File redirects = folder.newFile("redirect_wid.tsv");
+		File pages = new File(folder.getRoot(), "wikipedia_pages.idx");
+		Files.write(titles.toPath(), Arrays.asList("Barack Obama\t534366", "Neil Armstrong\t21247", "Zürich\t34061", "Moon\t19331",
+		        "Armstrong (crater)\t64"), StandardCharsets.UTF_8);
+		Files.write(redirects.toPath(), Arrays.asList("Obama\t2297\t534366"), StandardCharsets.UTF_8);
+		IndexWikipediaPages.main(new String[] { titles.getPath(), redirects.getPath(), pages.getPath() });
+		MappedWikipediaInterface wikiApi = MappedWikipediaInterface.open(pages.getPath());
+
+		File freebase = new File(folder.getRoot(), "freebase.db");
+		DB db = DBMaker.fileDB(freebase).make();
+		Map<String, String> index = db.hashMap("index", Serializer.STRING, Serializer.STRING).createOrOpen();
+		index.put("Barack_Obama", "/m/02mjmr");
+		index.put("Zürich", "/m/08966");
+		index.put("Armstrong_(crater)", "/m/0c3xw9");
+		db.hashMap("label", Serializer.STRING, Serializer.STRING).createOrOpen();
+		db.commit();
+		db.close();
+		// The builder keeps its copy of the database open.
+		File freebaseCopy = new File(folder.getRoot(), "freebase-copy.db");
+		Files.copy(freebase.toPath(), freebaseCopy.toPath());
+
+		File bits = new File(folder.getRoot(), "title_named_entities.bits");
+		NamedEntityBitset.main(new String[] { titles.getPath(), freebase.getPath(), bits.getPath() });
+		WikipediaToFreebase w2f = WikipediaToFreebase.open(freebaseCopy.getPath(), bits.getPath());
+
+		for (int wid : new int[] { 534366, 21247, 34061, 19331, 64, 2297, 42 }) {
+			String title = wikiApi.getTitlebyId(wid);
+			assertEquals(title != null && w2f.hasEntity(title), w2f.hasEntity(wid, wikiApi));
+		}
+		assertTrue(w2f.hasEntity(64, wikiApi));
+		assertFalse(w2f.hasEntity(21247, wikiApi));
+	}
+}
@@ -0,0 +1,108 @@
+package it.unipi.di.acube.smaph.datasets.wikitofreebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.ClassRule;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WidToFreebaseTest {
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] MIDS = new String[] { "/m/0", "/m/_", "/m/0d6lp", "/m/02mjmr", "/m/0c3xw9", "/m/04n7gc6",
+	        "/m/0_____", "/m/0zzzzzzzzz", "/m/__________", "/m/0123456789", "/m/abcdefghij", "/m/klmnopqrst", "/m/uvwxyz_0_9" };
+
+	@Test
+	public void testMidRoundTrip() {
+		for (String mid : MIDS) {
+			long packed = WidToFreebase.encodeMid(mid);
+			assertTrue(mid, packed > 0);
+			assertEquals(mid, WidToFreebase.decodeMid(packed));
+			assertEquals(packed, WidToFreebase.encodeMid("m" + mid.substring(2)));
+			assertEquals(packed, WidToFreebase.encodeMid("m." + mid.substring(3)));
+		}
+		assertEquals(WidToFreebase.encodeMid("/m/0d6lp"), WidToFreebase.encodeMid("m.0d6lp"));
+		assertTrue(WidToFreebase.encodeMid("/m/0d6lp") != WidToFreebase.encodeMid("/m/0d6lp0"));
+	}
+
+	@Test
+	public void testMidNotPackable() {
+		for (String mid : new String[] { "", "/m/", "m.", "/m/0123456789a", "/m/0D6lp", "/m/0d-lp", "/g/11b6vkf3rs", "0d6lp",
+		        "/m/0d6lp/", "/m/0 d6lp" })
+			assertEquals(mid, -1, WidToFreebase.encodeMid(mid));
+	}
+
+	@Test
+	public void testFileRoundTrip() throws IOException {
+		int[] wids = new int[] { 0, 12, 534366, 534367, Integer.MAX_VALUE };
+		String[] mids = new String[] { "/m/0", "/m/0d6lp", "/m/02mjmr", "/m/__________", "/m/0zzzzzzzzz" };
+		String[] labels = new String[] { "Zero", "Diego Maradona", null, "Zürich", "Diego Maradona" };
+		long[] packed = new long[mids.length];
+		for (int i = 0; i < mids.length; i++)
+			packed[i] = WidToFreebase.encodeMid(mids[i]);
+		File file = folder.newFile("freebase_wid.idx");
+		WidToFreebase.write(file.getPath(), wids, packed, labels);
+
+		WidToFreebase index = WidToFreebase.open(file.getPath());
+		assertEquals(wids.length, index.size());
+		for (int i = 0; i < wids.length; i++) {
+			assertEquals(wids[i], index.widAt(i));
+			assertTrue(index.hasEntity(wids[i]));
+			assertEquals(mids[i], index.getFreebaseId(wids[i]));
+			assertEquals(labels[i], index.getLabel(wids[i]));
+		}
+		for (int wid : new int[] { -1, 1, 11, 13, 534365, 534368, Integer.MAX_VALUE - 1 }) {
+			assertFalse(index.hasEntity(wid));
+			assertNull(index.getFreebaseId(wid));
+			assertNull(index.getLabel(wid));
+		}
+
+		File empty = folder.newFile("empty.idx");
+		WidToFreebase.write(empty.getPath(), new int[0], new long[0], new String[0]);
+		assertEquals(0, WidToFreebase.open(empty.getPath()).size());
+		assertFalse(WidToFreebase.open(empty.getPath()).hasEntity(0));
+
+		try {
+			WidToFreebase.write(folder.newFile("unsorted.idx").getPath(), new int[] { 5, 3 }, new long[] { 1, 2 },
+			        new String[] { null, null });
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void testFreebaseIdFromTitle() throws IOException {
+		File dbFile = new File(folder.getRoot(), "freebase.db");
+		DB db = DBMaker.fileDB(dbFile).make();
+		db.hashMap("index", Serializer.STRING, Serializer.STRING).createOrOpen().put("Diego_Maradona", "/m/0d6lp");
+		db.hashMap("label", Serializer.STRING, Serializer.STRING).createOrOpen().put("/m/0d6lp", "Diego Maradona");
+		db.commit();
+		db.close();
+		WikipediaToFreebase w2f = WikipediaToFreebase.open(dbFile.getPath());
+
+		// Without a page-ID index, the title is looked up.
+		assertEquals("/m/0d6lp", w2f.getFreebaseId(12, "Diego Maradona"));
+		assertNull(w2f.getFreebaseId(12, "Zürich"));
+		assertNull(w2f.getFreebaseId(12, (String) null));
+
+		// With a page-ID index, the title is ignored.
+		File index = folder.newFile("freebase_wid_title.idx");
+		WidToFreebase.write(index.getPath(), new int[] { 12 }, new long[] { WidToFreebase.encodeMid("/m/02mjmr") },
+		        new String[] { "Zürich" });
+		w2f.withWidIndex(index.getPath());
+		assertEquals("/m/02mjmr", w2f.getFreebaseId(12, "Diego Maradona"));
+		assertEquals("/m/02mjmr", w2f.getFreebaseId(12, (String) null));
+		assertNull(w2f.getFreebaseId(13, "Diego Maradona"));
+	}
+}
@@ -0,0 +1,147 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.unipi.di.acube.batframework.data.Annotation;
+import it.unipi.di.acube.batframework.utils.Pair;
+import it.unipi.di.acube.smaph.FakeWatServer;
+import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.SmaphUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BindingFeaturePackTest {
+	private static FakeWatServer wat;
+	private static final String QUERY = "Neil Armstrong moon landing";
+	private static final List<Annotation> ANNOTATIONS = Arrays.asList(new Annotation(0, 14, 920001),
+	        new Annotation(5, 9, 920002), new Annotation(15, 4, 920003), new Annotation(20, 7, 920004));
+	private static final String[] QUERY_FEATURES = new String[] { "query_tokens", "segments_lp_sum", "segments_lp_avg",
+	        "webtotal", "bolds_number", "distinct_bolds", "bolds_query_mined_avg" };
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		wat = new FakeWatServer();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		wat.close();
+	}
+
+	/**
+	 * @return query information whose annotation features (which would need the Wikipedia and
+	 *         anchor indexes) are already computed.
+	 */
+	private static QueryInformation getQueryInformation(List<String> bolds) {
+		QueryInformation qi = new QueryInformation();
+		qi.webTotalNS = 123456.0;
+		qi.allBoldsNS = bolds;
+		for (Annotation a : ANNOTATIONS) {
+			HashMap<String, Double> ftrs = new HashMap<>();
+			ftrs.put("commonness", 1.0 / (a.getLength() + 1));
+			ftrs.put("found_s1", 1.0);
+			putAnnotationFeatures(qi, a, ftrs);
+		}
+		return qi;
+	}
+
+	private static void putAnnotationFeatures(QueryInformation qi, Annotation a, HashMap<String, Double> ftrs) {
+		qi.getAnnotationFeatures(a, () -> new SparseFeatureVector(ftrs, new AnnotationFeaturePack().getSchema()));
+	}
+
+	@Test
+	public void testQueryFeatures() throws Exception {
+		List<String> bolds = Arrays.asList("Neil Armstrong", "armstrong", "Moon Landing", "armstrong", "Apollo");
+		QueryInformation qi = getQueryInformation(bolds);
+
+		// Query features as they were computed for each binding, before being hoisted.
+		Map<String, Double> expected = new HashMap<>();
+		expected.put("query_tokens", (double) SmaphUtils.tokenize(QUERY).size());
+		Pair<Double, Double> lpSumAvg = BindingFeaturePack.getLpSumAvg(QUERY);
+		expected.put("segments_lp_sum", lpSumAvg.first);
+		expected.put("segments_lp_avg", lpSumAvg.second);
+		expected.put("webtotal", 123456.0);
+		expected.put("bolds_number", 5.0);
+		expected.put("distinct_bolds", 4.0);
+		double minEdSum = 0;
+		for (String bold : bolds)
+			minEdSum += SmaphUtils.getMinEditDist(QUERY, bold.toLowerCase());
+		expected.put("bolds_query_mined_avg", minEdSum / bolds.size());
+
+		for (List<Annotation> binding : Arrays.asList(ANNOTATIONS.subList(0, 1), ANNOTATIONS.subList(1, 4),
+		        Arrays.asList(ANNOTATIONS.get(0), ANNOTATIONS.get(3)), ANNOTATIONS.subList(0, 0))) {
+			BindingFeaturePack features = new BindingFeaturePack(new HashSet<>(binding), QUERY, qi, null, null, null, null, null);
+			for (String ftr : QUERY_FEATURES)
+				assertEquals(ftr, expected.get(ftr), features.getFeature(ftr), 1e-12);
+		}
+		assertSame(BindingFeaturePack.getQueryFeatures(QUERY, qi), BindingFeaturePack.getQueryFeatures(QUERY, qi));
+	}
+
+	@Test
+	public void testCollapseFeatures() throws Exception {
+		QueryInformation qi = getQueryInformation(null);
+		Annotation a1 = new Annotation(0, 4, 920011), a2 = new Annotation(5, 9, 920012), a3 = new Annotation(15, 4, 920013);
+		HashMap<String, Double> ftrs1 = new HashMap<>();
+		ftrs1.put("found_s1", 1.0);
+		ftrs1.put("found_s2", 1.0);
+		ftrs1.put("commonness", 0.2);
+		ftrs1.put("link_prob", 0.5);
+		putAnnotationFeatures(qi, a1, ftrs1);
+		HashMap<String, Double> ftrs2 = new HashMap<>();
+		ftrs2.put("found_s1", 1.0);
+		ftrs2.put("commonness", 0.6);
+		putAnnotationFeatures(qi, a2, ftrs2);
+		HashMap<String, Double> ftrs3 = new HashMap<>();
+		ftrs3.put("found_s3", 1.0);
+		ftrs3.put("commonness", 0.4);
+		ftrs3.put("link_prob", 0.3);
+		putAnnotationFeatures(qi, a3, ftrs3);
+
+		BindingFeaturePack features = new BindingFeaturePack(new HashSet<>(Arrays.asList(a1, a2, a3)), QUERY, qi, null, null,
+		        null, null, null);
+		// Source features are counted.
+		assertEquals(2.0, features.getFeature("count_found_s1"), 0.0);
+		assertEquals(1.0, features.getFeature("count_found_s2"), 0.0);
+		assertEquals(1.0, features.getFeature("count_found_s3"), 0.0);
+		// The others are aggregated over the annotations that have them.
+		assertEquals(0.2, features.getFeature("min_commonness"), 1e-12);
+		assertEquals(0.6, features.getFeature("max_commonness"), 1e-12);
+		assertEquals(0.4, features.getFeature("avg_commonness"), 1e-12);
+		assertEquals(0.3, features.getFeature("min_link_prob"), 1e-12);
+		assertEquals(0.5, features.getFeature("max_link_prob"), 1e-12);
+		assertEquals(0.4, features.getFeature("avg_link_prob"), 1e-12);
+		// Features no annotation has are not set.
+		assertTrue(Double.isNaN(features.getFeature("min_edit_distance_title")));
+		assertTrue(Double.isNaN(features.getFeature("max_edit_distance_title")));
+		assertTrue(Double.isNaN(features.getFeature("avg_edit_distance_title")));
+		assertEquals(3.0, features.getFeature("annotation_count"), 0.0);
+
+		// In an empty binding, sources are counted 0 times and no other feature is set.
+		BindingFeaturePack empty = new BindingFeaturePack(new HashSet<>(), QUERY, qi, null, null, null, null, null);
+		assertEquals(0.0, empty.getFeature("count_found_s1"), 0.0);
+		assertTrue(Double.isNaN(empty.getFeature("min_commonness")));
+		assertTrue(Double.isNaN(empty.getFeature("max_commonness")));
+		assertTrue(Double.isNaN(empty.getFeature("avg_commonness")));
+		assertEquals(0.0, empty.getFeature("annotation_count"), 0.0);
+	}
+
+	@Test
+	public void testQueryFeaturesWithoutBolds() throws Exception {
+		QueryInformation qi = getQueryInformation(null);
+		BindingFeaturePack features = new BindingFeaturePack(new HashSet<>(ANNOTATIONS.subList(0, 2)), QUERY, qi, null, null,
+		        null, null, null);
+		assertEquals((double) SmaphUtils.tokenize(QUERY).size(), features.getFeature("query_tokens"), 0.0);
+		assertTrue(Double.isNaN(features.getFeature("bolds_number")));
+		assertTrue(Double.isNaN(features.getFeature("distinct_bolds")));
+		assertTrue(Double.isNaN(features.getFeature("bolds_query_mined_avg")));
+	}
+}
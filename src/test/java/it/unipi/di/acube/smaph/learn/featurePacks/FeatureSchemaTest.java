@@ -0,0 +1,91 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import it.unipi.di.acube.smaph.learn.normalizer.FeatureNormalizer;
+import it.unipi.di.acube.smaph.learn.normalizer.NoFeatureNormalizer;
+
+import org.junit.Test;
+
+public class FeatureSchemaTest {
+
+	@Test
+	public void testSchema() {
+		FeatureSchema schema = new FeatureSchema(new String[] { "f_a", "f_b", "f_c" });
+		assertEquals(3, schema.size());
+		assertEquals(0, schema.getPosition("f_a"));
+		assertEquals(2, schema.getPosition("f_c"));
+		assertEquals(-1, schema.getPosition("f_d"));
+		assertEquals("f_b", schema.getName(1));
+		assertEquals(new HashSet<>(Arrays.asList("f_a", "f_c")), schema.getNames(new int[] { 1, 3, 4 }));
+		assertNull(schema.getNames(null));
+
+		HashMap<String, Double> features = new HashMap<>();
+		features.put("f_c", 3.0);
+		features.put("f_a", 1.0);
+		assertArrayEquals(new double[] { 1.0, Double.NaN, 3.0 }, schema.toArray(features), 0.0);
+		schema.check(features);
+
+		features.put("f_d", 4.0);
+		assertArrayEquals(new double[] { 1.0, Double.NaN, 3.0 }, schema.toArray(features), 0.0);
+		try {
+			schema.check(features);
+			fail();
+		} catch (RuntimeException e) {
+		}
+	}
+
+	@Test
+	public void testSparseVector() {
+		FeatureSchema schema = new FeatureSchema(new String[] { "f_a", "f_b", "f_c" });
+		HashMap<String, Double> features = new HashMap<>();
+		features.put("f_c", 3.0);
+		features.put("f_a", 1.0);
+		SparseFeatureVector vector = new SparseFeatureVector(features, schema);
+		assertEquals(2, vector.size());
+		assertEquals(features, vector.getFeatures());
+		double[] values = new double[schema.size()];
+		for (int i = 0; i < vector.size(); i++)
+			values[vector.getPosition(i)] = vector.getValue(i);
+		assertArrayEquals(new double[] { 1.0, 0.0, 3.0 }, values, 0.0);
+
+		features.put("f_d", 4.0);
+		try {
+			new SparseFeatureVector(features, schema);
+			fail();
+		} catch (RuntimeException e) {
+		}
+	}
+
+	@Test
+	public void testFeatureMatrix() {
+		HashMap<String, Double> features1 = new HashMap<>();
+		features1.put("f_a", 1.0);
+		features1.put("f_c", 3.0);
+		HashMap<String, Double> features2 = new HashMap<>();
+		features2.put("f_b", -2.0);
+		List<TestFeaturePack> fps = Arrays.asList(new TestFeaturePack(features1), new TestFeaturePack(features2));
+
+		FeatureMatrix matrix = FeatureMatrix.of(fps);
+		assertEquals(2, matrix.rows());
+		assertEquals(5, matrix.columns());
+		assertArrayEquals(new double[] { 1.0, Double.NaN, 3.0, Double.NaN, Double.NaN }, matrix.getRow(0), 0.0);
+		assertArrayEquals(new double[] { Double.NaN, -2.0, Double.NaN, Double.NaN, Double.NaN }, matrix.getRow(1), 0.0);
+
+		FeatureNormalizer fn = new NoFeatureNormalizer();
+		FeatureMatrix normalized = fn.normalize(matrix);
+		for (int i = 0; i < fps.size(); i++)
+			assertArrayEquals(fn.ftrToNormalizedFtrArray(fps.get(i)), normalized.getRow(i), 0.0);
+
+		try {
+			new FeatureMatrix(new FeatureSchema(new String[] { "f_a" }), fps);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.unipi.di.acube.batframework.data.Annotation;
+import it.unipi.di.acube.batframework.utils.Pair;
+import it.unipi.di.acube.smaph.FakeWatServer;
+import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.RelatednessMatrix;
+import it.unipi.di.acube.smaph.learn.featurePacks.GreedyFeaturePack.PartialSolutionFeatures;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class GreedyFeaturePackTest {
+	private static FakeWatServer wat;
+	private static final String QUERY = "neil armstrong moon landing apollo 11";
+	private static final List<Annotation> CANDIDATES = Arrays.asList(new Annotation(0, 14, 910001),
+	        new Annotation(5, 9, 910002), new Annotation(15, 4, 910003), new Annotation(15, 12, 910004),
+	        new Annotation(20, 7, 910005), new Annotation(28, 9, 910006), new Annotation(28, 6, 910006));
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		wat = new FakeWatServer();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		wat.close();
+	}
+
+	/**
+	 * @return query information whose annotation features (which would need the Wikipedia and
+	 *         anchor indexes) and segment link probabilities are already computed.
+	 */
+	private static QueryInformation getQueryInformation() {
+		QueryInformation qi = new QueryInformation();
+		qi.getSegmentsLpSumAvg(() -> new Pair<Double, Double>(1.25, 0.25));
+		for (Annotation a : CANDIDATES) {
+			HashMap<String, Double> ftrs = new HashMap<>();
+			ftrs.put("commonness", 1.0 / (a.getLength() + 1));
+			ftrs.put("edit_distance_title", a.getPosition() / 40.0);
+			ftrs.put("found_s1", 1.0);
+			qi.getAnnotationFeatures(a, () -> new SparseFeatureVector(ftrs, new AnnotationFeaturePack().getSchema()));
+		}
+		return qi;
+	}
+
+	@Test
+	public void testIncrementalEqualsFull() throws Exception {
+		// Incremental extraction, as done by GreedyLinkback: the solution-independent features and
+		// the relatedness of all candidates are computed once, the partial solution once per step.
+		QueryInformation qiIncremental = getQueryInformation();
+		HashMap<Annotation, HashMap<String, Double>> solutionIndependentFtrs = new HashMap<>();
+		for (Annotation a : CANDIDATES)
+			solutionIndependentFtrs.put(a, GreedyFeaturePack.getSolutionIndependentFeatures(a, QUERY, qiIncremental, null, null, null));
+		HashSet<Integer> entities = new HashSet<>();
+		for (Annotation a : CANDIDATES)
+			entities.add(a.getConcept());
+		RelatednessMatrix relatedness = qiIncremental.getRelatednessMatrix(entities);
+
+		// Full extraction, on a fresh query information, for each candidate at each step.
+		QueryInformation qiFull = getQueryInformation();
+
+		HashSet<Annotation> partialSolution = new HashSet<>();
+		for (Annotation added : Arrays.asList(CANDIDATES.get(2), CANDIDATES.get(0), CANDIDATES.get(5), null)) {
+			PartialSolutionFeatures ps = new PartialSolutionFeatures(qiIncremental.getTextContext(QUERY), relatedness,
+			        partialSolution);
+			for (Annotation a : CANDIDATES) {
+				if (partialSolution.contains(a))
+					continue;
+				HashMap<String, Double> incremental = GreedyFeaturePack.getFeatures(solutionIndependentFtrs.get(a), a, ps);
+				HashMap<String, Double> full = GreedyFeaturePack.getFeaturesStatic(a, QUERY, qiFull, partialSolution, null,
+				        null, null);
+				String step = "step " + partialSolution.size() + ", " + a.getConcept() + ": ";
+				assertEquals(step + "feature names", full.keySet(), incremental.keySet());
+				for (String ftr : full.keySet())
+					assertEquals(step + ftr, full.get(ftr), incremental.get(ftr), 1e-12);
+			}
+			if (added != null)
+				partialSolution.add(added);
+		}
+	}
+
+	@Test
+	public void testIncrementalEqualsFullWithoutRelatedness() throws Exception {
+		QueryInformation qiIncremental = getQueryInformation();
+		qiIncremental.setUsedFeatures(new HashSet<>(Arrays.asList("covered_tokens_after", "segments_lp_ratio")));
+		QueryInformation qiFull = getQueryInformation();
+		qiFull.setUsedFeatures(new HashSet<>(Arrays.asList("covered_tokens_after", "segments_lp_ratio")));
+		int requests = wat.getRequests();
+
+		HashSet<Annotation> partialSolution = new HashSet<>(Arrays.asList(CANDIDATES.get(1), CANDIDATES.get(4)));
+		PartialSolutionFeatures ps = new PartialSolutionFeatures(qiIncremental.getTextContext(QUERY), null, partialSolution);
+		for (Annotation a : Arrays.asList(CANDIDATES.get(2), CANDIDATES.get(5))) {
+			HashMap<String, Double> incremental = GreedyFeaturePack.getFeatures(
+			        GreedyFeaturePack.getSolutionIndependentFeatures(a, QUERY, qiIncremental, null, null, null), a, ps);
+			HashMap<String, Double> full = GreedyFeaturePack.getFeaturesStatic(a, QUERY, qiFull, partialSolution, null, null, null);
+			assertEquals(full.keySet(), incremental.keySet());
+			for (String ftr : full.keySet())
+				assertEquals(ftr, full.get(ftr), incremental.get(ftr), 1e-12);
+			for (String ftr : GreedyFeaturePack.RELATEDNESS_FEATURES)
+				assertTrue(Double.isNaN(incremental.get(ftr)));
+		}
+		assertEquals(requests, wat.getRequests());
+	}
+
+	@Test
+	public void testNoBoldFeatures() throws Exception {
+		QueryInformation qi = getQueryInformation();
+		qi.allBoldsNS = Arrays.asList("Neil Armstrong", "apollo 11");
+		HashSet<Annotation> partialSolution = new HashSet<>(Arrays.asList(CANDIDATES.get(0)));
+		for (Annotation a : CANDIDATES.subList(1, CANDIDATES.size())) {
+			HashMap<String, Double> features = GreedyFeaturePack.getFeaturesStatic(a, QUERY, qi, partialSolution, null, null, null);
+			for (String ftr : new String[] { "bolds_number", "distinct_bolds", "bolds_query_mined_avg" })
+				assertFalse(ftr, features.containsKey(ftr));
+		}
+		// The query features of the binding pack, that include the bold features, were not computed.
+		boolean[] computed = new boolean[1];
+		qi.getQueryFeatures(() -> {
+			computed[0] = true;
+			return new HashMap<String, Double>();
+		});
+		assertTrue(computed[0]);
+		assertFalse(Arrays.asList(GreedyFeaturePack.getFeatureNamesStatic()).contains("bolds_query_mined_avg"));
+	}
+}
@@ -0,0 +1,42 @@
+package it.unipi.di.acube.smaph.learn.featurePacks;
+
+import java.util.HashMap;
+
+/**
+ * A feature pack with features f_a, f_b, f_c, f_d, f_e, shared by the tests of feature packs and
+ * normalizers.
+ */
+public class TestFeaturePack extends FeaturePack<String> {
+	private static final long serialVersionUID = 1L;
+	public static final String[] FEATURE_NAMES = new String[] { "f_a", "f_b", "f_c", "f_d", "f_e" };
+
+	public TestFeaturePack(HashMap<String, Double> features) {
+		super(features);
+	}
+
+	/**
+	 * @param values
+	 *            the values of the first features, in order, NaN for the features that are not
+	 *            set.
+	 */
+	public TestFeaturePack(double... values) {
+		this(toMap(values));
+	}
+
+	private static HashMap<String, Double> toMap(double... values) {
+		HashMap<String, Double> features = new HashMap<>();
+		for (int i = 0; i < values.length; i++)
+			if (!Double.isNaN(values[i]))
+				features.put(FEATURE_NAMES[i], values[i]);
+		return features;
+	}
+
+	@Override
+	public void checkFeatures(HashMap<String, Double> features) {
+	}
+
+	@Override
+	public String[] getFeatureNames() {
+		return FEATURE_NAMES;
+	}
+}
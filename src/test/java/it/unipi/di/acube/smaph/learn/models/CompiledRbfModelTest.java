@@ -0,0 +1,125 @@
+package it.unipi.di.acube.smaph.learn.models;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import libsvm.svm;
+import libsvm.svm_model;
+import libsvm.svm_node;
+import libsvm.svm_parameter;
+
+public class CompiledRbfModelTest {
+
+	private static svm_node node(int index, double value) {
+		svm_node node = new svm_node();
+		node.index = index;
+		node.value = value;
+		return node;
+	}
+
+	/**
+	 * @return a model with support vectors over features 1..maxFtr, each missing some of them.
+	 */
+	private static svm_model randomModel(Random r, int svmType, int maxFtr) {
+		svm_model model = new svm_model();
+		model.param = new svm_parameter();
+		model.param.svm_type = svmType;
+		model.param.kernel_type = svm_parameter.RBF;
+		model.param.gamma = 0.1 + r.nextDouble();
+		model.l = 50;
+		model.nr_class = 2;
+		model.SV = new svm_node[model.l][];
+		model.sv_coef = new double[1][model.l];
+		for (int i = 0; i < model.l; i++) {
+			Vector<svm_node> sv = new Vector<>();
+			for (int ftrId = 1; ftrId <= maxFtr; ftrId++)
+				if (i == 0 || r.nextInt(4) > 0)
+					sv.add(node(ftrId, r.nextGaussian()));
+			model.SV[i] = sv.toArray(new svm_node[] {});
+			model.sv_coef[0][i] = r.nextGaussian();
+		}
+		model.rho = new double[] { r.nextGaussian() * 0.1 };
+		model.label = new int[] { 1, -1 };
+		model.nSV = new int[] { 20, 30 };
+		return model;
+	}
+
+	private static void assertSameAsLibSvm(Random r, svm_model model, int[] ftrIds) {
+		CompiledRbfModel compiled = CompiledRbfModel.compile(model);
+		assertNotNull(compiled);
+		for (int k = 0; k < 200; k++) {
+			svm_node[] nodes = new svm_node[ftrIds.length];
+			double[] x = new double[compiled.getDimension()];
+			for (int i = 0; i < ftrIds.length; i++) {
+				double value = r.nextInt(10) == 0 ? 0.0 : r.nextGaussian();
+				nodes[i] = node(ftrIds[i], value);
+				x[compiled.getColumn(ftrIds[i])] = value;
+			}
+			assertEquals(svm.svm_predict(model, nodes), compiled.predict(x), 0.0);
+		}
+	}
+
+	@Test
+	public void testRegression() {
+		Random r = new Random(42);
+		svm_model model = randomModel(r, svm_parameter.EPSILON_SVR, 12);
+		assertSameAsLibSvm(r, model, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+		// Candidates that provide only some of the features.
+		assertSameAsLibSvm(r, model, new int[] { 2, 5, 11 });
+	}
+
+	@Test
+	public void testClassifier() {
+		Random r = new Random(43);
+		svm_model model = randomModel(r, svm_parameter.C_SVC, 8);
+		assertSameAsLibSvm(r, model, new int[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+	}
+
+	@Test
+	public void testUnsupported() {
+		Random r = new Random(44);
+		svm_model model = randomModel(r, svm_parameter.EPSILON_SVR, 5);
+		model.param.kernel_type = svm_parameter.LINEAR;
+		assertNull(CompiledRbfModel.compile(model));
+
+		model = randomModel(r, svm_parameter.C_SVC, 5);
+		model.nr_class = 3;
+		assertNull(CompiledRbfModel.compile(model));
+
+		model = randomModel(r, svm_parameter.EPSILON_SVR, 5);
+		model.SV[3] = new svm_node[] { node(2, 1.0), node(1, 1.0) };
+		assertNull(CompiledRbfModel.compile(model));
+	}
+
+	@Test
+	public void testRandomFourierApproximation() {
+		Random r = new Random(45);
+		svm_model model = randomModel(r, svm_parameter.EPSILON_SVR, 4);
+		model.param.gamma = 0.2;
+		CompiledRbfModel exact = CompiledRbfModel.compile(model);
+		RandomFourierRbfModel projected = RandomFourierRbfModel.fromModel(exact, 2000, 42, false);
+		RandomFourierRbfModel refitted = RandomFourierRbfModel.fromModel(exact, 300, 42, true);
+		assertEquals(2000, projected.getDimensions());
+
+		double exactAbsSum = 0, projectedErrSum = 0, refittedErrSum = 0;
+		for (int k = 0; k < 200; k++) {
+			double[] x = new double[exact.getDimension()];
+			for (int j = 0; j < x.length; j++)
+				x[j] = r.nextGaussian() * 0.5;
+			double value = exact.decisionValue(x);
+			exactAbsSum += Math.abs(value);
+			projectedErrSum += Math.abs(projected.decisionValue(x) - value);
+			refittedErrSum += Math.abs(refitted.decisionValue(x) - value);
+			assertEquals(projected.decisionValue(x), projected.predict(x), 0.0);
+		}
+		assertTrue(projectedErrSum < 0.2 * exactAbsSum);
+		assertTrue(refittedErrSum < 0.05 * exactAbsSum);
+
+		double[] x = new double[exact.getDimension()];
+		assertEquals(refitted.decisionValue(x), RandomFourierRbfModel.fromModel(exact, 300, 42, true).decisionValue(x), 0.0);
+	}
+}
@@ -0,0 +1,134 @@
+package it.unipi.di.acube.smaph.learn.models;
+
+import static java.lang.Thread.currentThread;
+import static org.junit.Assert.*;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.Test;
+
+import ciir.umass.edu.learning.DenseDataPoint;
+import ciir.umass.edu.learning.Ranker;
+import ciir.umass.edu.learning.RankerFactory;
+
+public class CompiledTreeEnsembleTest {
+	private static final float[] THRESHOLDS = new float[] { 0.0f, 0.5f, 0.6f, 0.7f, 0.8f };
+
+	/**
+	 * @return a value close to one of the thresholds of the model, or to a number halfway between
+	 *         two floats, or a random one.
+	 */
+	private static double randomValue(Random r) {
+		float threshold = THRESHOLDS[r.nextInt(THRESHOLDS.length)];
+		switch (r.nextInt(8)) {
+		case 0:
+			return threshold;
+		case 1:
+			return Math.nextUp((double) threshold);
+		case 2:
+			return Math.nextDown((double) threshold);
+		case 3:
+			return ((double) threshold + Math.nextUp(threshold)) / 2;
+		case 4:
+			return Math.nextDown(((double) threshold + Math.nextDown(threshold)) / 2);
+		case 5:
+			return r.nextGaussian() * 1e-9;
+		case 6:
+			return Double.NaN;
+		default:
+			return r.nextDouble() * 1.2 - 0.1;
+		}
+	}
+
+	@Test
+	public void testSameAsRankLib() throws Exception {
+		Ranker ranker = new RankerFactory().loadRankerFromFile(
+		        Paths.get(currentThread().getContextClassLoader().getResource("ranklib_lm_model").toURI()).toString());
+		CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(ranker);
+		assertNotNull(compiled);
+		assertEquals(1, compiled.getTreeCount());
+
+		Random r = new Random(42);
+		for (int k = 0; k < 2000; k++) {
+			double[] ftrVect = new double[] { randomValue(r), randomValue(r) };
+			assertEquals(ranker.eval(new DenseDataPoint(RankLibModel.ftrVectToString(ftrVect, 1, 1))), compiled.eval(ftrVect),
+			        0.0);
+		}
+	}
+
+	private static void appendSplit(StringBuilder sb, Random r, int depth) {
+		if (depth == 0 || r.nextInt(5) == 0) {
+			sb.append(String.format("<output> %s </output>%n", r.nextGaussian()));
+			return;
+		}
+		sb.append(String.format("<feature> %d </feature>%n<threshold> %s </threshold>%n", 1 + r.nextInt(5), (float) r.nextGaussian()));
+		for (String pos : new String[] { "left", "right" }) {
+			sb.append(String.format("<split pos=\"%s\">%n", pos));
+			appendSplit(sb, r, depth - 1);
+			sb.append(String.format("</split>%n"));
+		}
+	}
+
+	/**
+	 * @return a random LambdaMART model in the format written by RankLib.
+	 */
+	private static String randomModel(Random r, int trees) {
+		StringBuilder sb = new StringBuilder(String.format("## LambdaMART%n<ensemble>%n"));
+		for (int t = 0; t < trees; t++) {
+			sb.append(String.format("<tree id=\"%d\" weight=\"0.1\">%n<split>%n", t + 1));
+			appendSplit(sb, r, 4);
+			sb.append(String.format("</split>%n</tree>%n"));
+		}
+		return sb.append(String.format("</ensemble>%n")).toString();
+	}
+
+	@Test
+	public void testBestIndex() {
+		Random r = new Random(44);
+		CompiledTreeEnsemble compiled = CompiledTreeEnsemble.compile(new RankerFactory().loadRankerFromString(randomModel(r, 200)));
+		assertNotNull(compiled);
+		assertEquals(200, compiled.getTreeCount());
+		assertEquals(-1, compiled.getBestIndex(new Vector<>()));
+
+		for (int k = 0; k < 100; k++) {
+			List<double[]> ftrVects = new Vector<>();
+			for (int i = 0, size = 1 + r.nextInt(50); i < size; i++) {
+				if (i > 0 && r.nextInt(4) == 0)
+					// An exact tie with a previous candidate.
+					ftrVects.add(ftrVects.get(r.nextInt(i)).clone());
+				else
+					ftrVects.add(new double[] { r.nextGaussian(), r.nextGaussian(), r.nextGaussian(), r.nextGaussian(),
+					        r.nextGaussian() });
+			}
+			int best = 0;
+			for (int i = 1; i < ftrVects.size(); i++)
+				if (compiled.eval(ftrVects.get(i)) > compiled.eval(ftrVects.get(best)))
+					best = i;
+			assertEquals(best, compiled.getBestIndex(ftrVects));
+		}
+	}
+
+	@Test
+	public void testToRankLibValue() {
+		Random r = new Random(43);
+		for (int k = 0; k < 20000; k++) {
+			double value;
+			switch (r.nextInt(4)) {
+			case 0:
+				float f = (float) (r.nextGaussian() * Math.pow(10, r.nextInt(12) - 4));
+				value = ((double) f + Math.nextUp(f)) / 2 + (r.nextInt(5) - 2) * Math.ulp((double) f);
+				break;
+			case 1:
+				value = r.nextGaussian() * 1e-12;
+				break;
+			default:
+				value = r.nextGaussian() * Math.pow(10, r.nextInt(12) - 4);
+			}
+			assertEquals(Float.parseFloat(String.format("%.16f", value)), CompiledTreeEnsemble.toRankLibValue(value), 0.0f);
+		}
+		assertEquals(0.0f, CompiledTreeEnsemble.toRankLibValue(Double.NaN), 0.0f);
+	}
+}
@@ -74,6 +74,26 @@ public class RankLibModelTest {
 		assertEquals(2, r.getHighestRank(l2, fn));
 	}
 
+	@Test
+	public void testBatchScores() throws Exception {
+		FeatureNormalizer fn = new NoFeatureNormalizer();
+		List<FeaturePack> l = new Vector<>(l2);
+		l.add(f2_4);
+		double[] scores = r.getScores(l, fn);
+		assertEquals(l.size(), scores.length);
+		for (int i = 0; i < l.size(); i++)
+			assertEquals(r.predictScore(l.get(i), fn), scores[i], 0.0);
+		assertEquals(2, r.getBestIndex(l, fn));
+
+		assertEquals(0, r.getScores(new Vector<>(), fn).length);
+		assertEquals(-1, r.getBestIndex(new Vector<>(), fn));
+	}
+
+	@Test
+	public void testUsedFtr() throws Exception {
+		assertArrayEquals(new int[] { 1, 2 }, r.getUsedFtr());
+	}
+
 	public static class TestFeaturePack extends FeaturePack<Object>{
 		private static final long serialVersionUID = 1L;
 
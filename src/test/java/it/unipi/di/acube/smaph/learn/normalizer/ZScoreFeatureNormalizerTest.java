@@ -0,0 +1,71 @@
+package it.unipi.di.acube.smaph.learn.normalizer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureMatrix;
+import it.unipi.di.acube.smaph.learn.featurePacks.TestFeaturePack;
+
+public class ZScoreFeatureNormalizerTest {
+	private static final String[] FEATURE_NAMES = TestFeaturePack.FEATURE_NAMES;
+
+	private static ZScoreFeatureNormalizer getNormalizer(boolean strict) throws IOException {
+		File zscoreFile = File.createTempFile("zscore", ".txt");
+		zscoreFile.deleteOnExit();
+		try (FileWriter wr = new FileWriter(zscoreFile)) {
+			// f_c has zero standard deviation, f_d has never been observed, f_e is not normalized.
+			wr.write("f_a 0.3 1.7\nf_b -2.5 0.1\nf_c 4.0 0.0\nf_d NaN NaN\n");
+		}
+		return ZScoreFeatureNormalizer.fromUrl(zscoreFile.toURI().toURL(), new TestFeaturePack(), strict);
+	}
+
+	@Test
+	public void testCompiledAsPerFeature() throws IOException {
+		ZScoreFeatureNormalizer fn = getNormalizer(false);
+		List<TestFeaturePack> fps = Arrays.asList(new TestFeaturePack(1.1, 0.7, 3.3, 2.0, -1.3),
+		        new TestFeaturePack(Double.NaN, 1e-3, 4.0, Double.NaN, 0.0), new TestFeaturePack(-8.9));
+		FeatureMatrix normalized = fn.normalize(FeatureMatrix.of(fps));
+		int[] positions = new int[] { 4, 0, 2 };
+		double[] selected = new double[positions.length];
+		for (int row = 0; row < fps.size(); row++) {
+			double[] expected = new double[FEATURE_NAMES.length];
+			for (int pos = 0; pos < FEATURE_NAMES.length; pos++)
+				expected[pos] = fn.normalizeFeature(fps.get(row), FEATURE_NAMES[pos]);
+			assertArrayEquals(expected, fn.ftrToNormalizedFtrArray(fps.get(row)), 0.0);
+			assertArrayEquals(expected, normalized.getRow(row), 0.0);
+			fn.normalize(FeatureMatrix.of(fps), row, positions, selected);
+			for (int i = 0; i < positions.length; i++)
+				assertEquals(expected[positions[i]], selected[i], 0.0);
+		}
+		assertEquals((1.1 - 0.3) / 1.7, normalized.get(0, 0), 0.0);
+		assertEquals(3.3 - 4.0, normalized.get(0, 2), 0.0);
+		assertEquals(0.0, normalized.get(0, 3), 0.0);
+		assertEquals(-1.3, normalized.get(0, 4), 0.0);
+		assertEquals(0.0, normalized.get(1, 0), 0.0);
+	}
+
+	@Test
+	public void testStrict() throws IOException {
+		ZScoreFeatureNormalizer fn = getNormalizer(true);
+		FeatureMatrix ftrs = FeatureMatrix.of(Arrays.asList(new TestFeaturePack(1.0, 2.0, 3.0, 4.0)));
+		double[] selected = new double[2];
+		fn.normalize(ftrs, 0, new int[] { 0, 1 }, selected);
+		try {
+			fn.normalize(ftrs, 0, new int[] { 3 }, selected);
+			fail();
+		} catch (RuntimeException e) {
+		}
+		try {
+			fn.normalize(ftrs);
+			fail();
+		} catch (RuntimeException e) {
+		}
+	}
+}
@@ -4,11 +4,16 @@ import it.unipi.di.acube.batframework.data.Annotation;
 import it.unipi.di.acube.batframework.data.Tag;
 import it.unipi.di.acube.batframework.utils.WikipediaApiInterface;
 import it.unipi.di.acube.smaph.QueryInformation;
+import it.unipi.di.acube.smaph.learn.featurePacks.BindingFeaturePack;
+import it.unipi.di.acube.smaph.learn.featurePacks.FeatureSchema;
+import it.unipi.di.acube.smaph.learn.models.linkback.bindingRegressor.RankLibBindingRegressor;
+import it.unipi.di.acube.smaph.learn.normalizer.NoFeatureNormalizer;
 import it.unipi.di.acube.smaph.linkback.bindingGenerator.BindingGenerator;
 import it.unipi.di.acube.smaph.linkback.bindingGenerator.DefaultBindingGenerator;
 
 import java.util.*;
 
+import static java.lang.Thread.currentThread;
 import static org.junit.Assert.*;
 
 import org.junit.Test;
@@ -97,4 +102,17 @@ public class CollectiveLinkBackTest {
 
 	}
 
+	@Test
+	public void testUsedFeatures() throws Exception {
+		CollectiveLinkBack linkBack = new CollectiveLinkBack(null, null, null, new DefaultBindingGenerator(),
+		        RankLibBindingRegressor.fromUrl(currentThread().getContextClassLoader().getResource("ranklib_lm_model")),
+		        new NoFeatureNormalizer());
+		Set<String> used = linkBack.getUsedFeatures();
+		assertNotNull(used);
+		FeatureSchema schema = new BindingFeaturePack().getSchema();
+		assertTrue(used.contains(schema.getName(0)));
+		assertTrue(used.contains(schema.getName(1)));
+		assertFalse(used.contains(schema.getName(2)));
+	}
+
 }
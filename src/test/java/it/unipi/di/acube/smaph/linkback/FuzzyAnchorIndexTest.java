@@ -0,0 +1,78 @@
+package it.unipi.di.acube.smaph.linkback;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import it.unipi.di.acube.smaph.EditDistanceMemo;
+import it.unipi.di.acube.smaph.SmaphUtils;
+
+import org.junit.Test;
+
+public class FuzzyAnchorIndexTest {
+
+	private static BitSet scan(List<String> segments, String anchor, double threshold, boolean inclusive) {
+		BitSet res = new BitSet();
+		for (int i = 0; i < segments.size(); i++) {
+			float ed = SmaphUtils.getNormEditDistance(anchor, segments.get(i));
+			if (inclusive ? ed <= threshold : ed < threshold)
+				res.set(i);
+		}
+		return res;
+	}
+
+	@Test
+	public void testMatch() {
+		List<String> segments = Arrays.asList("armstrong", "moon", "landing", "armstrong moon", "moon landing",
+		        "armstrong moon landing");
+		FuzzyAnchorIndex index = new FuzzyAnchorIndex(segments);
+		assertEquals(6, index.size());
+
+		BitSet matches = new BitSet();
+		index.match("armstrong", 0.7, false, matches);
+		assertTrue(matches.get(0));
+		assertFalse(matches.get(2));
+
+		matches = new BitSet();
+		index.match("moon landings", 0.1, true, matches);
+		assertEquals(BitSet.valueOf(new long[] { 1 << 4 }), matches);
+
+		matches = new BitSet();
+		index.match("", 0.7, false, matches);
+		assertTrue(matches.isEmpty());
+	}
+
+	@Test
+	public void testMatchAsScan() {
+		Random r = new Random(42);
+		String alphabet = "abcde ";
+		List<String> segments = new Vector<>();
+		for (int i = 0; i < 50; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = r.nextInt(12); j >= 0; j--)
+				sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
+			segments.add(sb.toString());
+		}
+		FuzzyAnchorIndex index = new FuzzyAnchorIndex(segments);
+		FuzzyAnchorIndex memoIndex = new FuzzyAnchorIndex(segments, new EditDistanceMemo());
+		for (int i = 0; i < 500; i++) {
+			StringBuilder sb = new StringBuilder();
+			for (int j = r.nextInt(14); j > 0; j--)
+				sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
+			String anchor = sb.toString();
+			for (double threshold : new double[] { 0.1, 0.4, 0.5, 0.7 })
+				for (boolean inclusive : new boolean[] { false, true }) {
+					BitSet matches = new BitSet();
+					index.match(anchor, threshold, inclusive, matches);
+					assertEquals(anchor + " " + threshold, scan(segments, anchor, threshold, inclusive), matches);
+					matches = new BitSet();
+					memoIndex.match(anchor, threshold, inclusive, matches);
+					assertEquals(anchor + " " + threshold, scan(segments, anchor, threshold, inclusive), matches);
+				}
+		}
+	}
+}
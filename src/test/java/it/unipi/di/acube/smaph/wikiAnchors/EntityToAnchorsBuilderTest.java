@@ -0,0 +1,105 @@
+package it.unipi.di.acube.smaph.wikiAnchors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.unipi.di.acube.batframework.utils.Pair;
+import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchors;
+import it.unipi.di.acube.smaph.datasets.wikiAnchors.EntityToAnchorsBuilder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EntityToAnchorsBuilderTest {
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] ANCHORS = new String[] { "Berlusconi", "berlusconi", "Silvio Berlusconi", "Moon", "moon",
+	        "Neil Armstrong", "armstrong", "Apollo 11", "Zürich", "zurich" };
+
+	private static EntityToAnchors build(File input, int threads, int runSize) throws Exception {
+		File tmpDir = folder.newFolder();
+		File output = new File(folder.getRoot(), "e2a-" + threads + "-" + runSize + ".db");
+		new EntityToAnchorsBuilder(tmpDir, threads, runSize).build(input.getPath(), output.getPath());
+		// Runs are deleted once merged.
+		assertEquals(0, tmpDir.list().length);
+		return EntityToAnchors.fromDB(output.getPath());
+	}
+
+	private static List<String> anchors(List<Pair<String, Integer>> anchorsAndFreqs) {
+		List<String> res = new Vector<>();
+		for (Pair<String, Integer> p : anchorsAndFreqs)
+			res.add(p.first + "\t" + p.second);
+		return res;
+	}
+
+	private static Map<String, Integer> toMap(List<Pair<String, Integer>> anchorsAndFreqs) {
+		Map<String, Integer> res = new HashMap<>();
+		for (Pair<String, Integer> p : anchorsAndFreqs)
+			assertEquals(null, res.put(p.first, p.second));
+		return res;
+	}
+
+	@Test
+	public void testBuildAsInMemory() throws Exception {
+		// Anchors are lower-cased, so lines with the same anchor and page-id are summed.
+		Random r = new Random(42);
+		List<String> lines = new Vector<>();
+		Map<Integer, Map<String, Integer>> entityToAnchors = new HashMap<>();
+		Map<String, Integer> anchorToOccurrences = new HashMap<>();
+		for (int i = 0; i < 300; i++) {
+			String anchor = ANCHORS[r.nextInt(ANCHORS.length)];
+			int wid = 1 + r.nextInt(20);
+			int freq = 1 + r.nextInt(50);
+			lines.add(anchor + "\t" + wid + "\t" + freq);
+			entityToAnchors.computeIfAbsent(wid, w -> new HashMap<>()).merge(anchor.toLowerCase(), freq, Integer::sum);
+			anchorToOccurrences.merge(anchor.toLowerCase(), freq, Integer::sum);
+		}
+		File input = folder.newFile("anchors.tsv");
+		Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+
+		// A single run sorted in memory, several small runs merged at once, and more runs than
+		// the merge fan-in, that need intermediate merges.
+		EntityToAnchors inMemory = build(input, 1, lines.size());
+		assertTrue(lines.size() > EntityToAnchorsBuilder.MAX_FAN_IN);
+		for (EntityToAnchors e2a : Arrays.asList(inMemory, build(input, 3, 7), build(input, 2, 1))) {
+			for (int wid = 0; wid <= 21; wid++) {
+				assertEquals(entityToAnchors.containsKey(wid), e2a.containsId(wid));
+				if (!e2a.containsId(wid))
+					continue;
+				assertEquals(entityToAnchors.get(wid), toMap(e2a.getAnchors(wid)));
+				// Anchor-IDs, hence the order of anchors, do not depend on the runs.
+				assertEquals(anchors(inMemory.getAnchors(wid)), anchors(e2a.getAnchors(wid)));
+				for (Map.Entry<String, Integer> anchorAndFreq : entityToAnchors.get(wid).entrySet())
+					assertEquals(anchorAndFreq.getValue() / (double) anchorToOccurrences.get(anchorAndFreq.getKey()),
+					        e2a.getCommonness(anchorAndFreq.getKey(), wid), 1e-12);
+			}
+			for (Map.Entry<String, Integer> anchorAndOccurrences : anchorToOccurrences.entrySet())
+				assertEquals((int) anchorAndOccurrences.getValue(), e2a.getAnchorGlobalOccurrences(anchorAndOccurrences.getKey()));
+			assertEquals(0.0, e2a.getCommonness("Moon", 1), 0.0);
+		}
+	}
+
+	@Test
+	public void testMalformedLine() throws Exception {
+		File input = folder.newFile("malformed.tsv");
+		Files.write(input.toPath(), Arrays.asList("moon\t1\t3", "moon\t2"), StandardCharsets.UTF_8);
+		try {
+			build(input, 1, 1);
+			fail();
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().contains("moon\t2"));
+		}
+	}
+}